@@ -0,0 +1,90 @@
+package benchmarks;
+
+import help.CoOccurrenceCounter;
+import help.Utilities;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link CoOccurrenceCounter}, which "ecn" and "qee" use to count the entities co-occurring with an
+ * entity in its pseudo-document, against the linear search for every mention which was used before. Each invocation
+ * counts "size" entity mentions, some of them in uppercase, of which about half are of the entities to count.
+ * Before the measurements, the setup checks that both give the same counts and fails the trial if not.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoOccurrenceBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private final ArrayList<String> mentions = new ArrayList<>();
+    private final ArrayList<String> entityList = new ArrayList<>();
+    private final Set<String> entitySet = new HashSet<>();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        int distinct = Math.max(10, size / 10);
+        for (int i = 0; i < distinct; i += 2) {
+            entityList.add("entity_" + i);
+        }
+        entitySet.addAll(entityList);
+        for (int i = 0; i < size; i++) {
+            // Skewed towards the first entities, as the entities of a pseudo-document are
+            String mention = "entity_" + (int) (distinct * Math.pow(random.nextDouble(), 2));
+            mentions.add(random.nextInt(10) == 0 ? mention.toUpperCase() : mention);
+        }
+        if (!CoOccurrenceCounter.count(mentions, entitySet).equals(quadratic(mentions, entityList))) {
+            throw new IllegalStateException("CoOccurrenceCounter gives other counts than the linear search");
+        }
+    }
+
+    @Benchmark
+    public HashMap<String, Integer> hashed() {
+        return CoOccurrenceCounter.count(mentions, entitySet);
+    }
+
+    @Benchmark
+    public HashMap<String, Integer> linearSearch() {
+        return quadratic(mentions, entityList);
+    }
+
+    /**
+     * Count the mentions the way it used to be done: a linear search for every mention, O(n^2) time.
+     */
+    @NotNull
+    private static HashMap<String, Integer> quadratic(@NotNull ArrayList<String> mentions,
+                                                      @NotNull List<String> entities) {
+        HashMap<String, Integer> freqMap = new HashMap<>();
+        for (String e : mentions) {
+            if (entities.contains(e)) {
+                freqMap.put(e, Utilities.frequency(e, mentions));
+            }
+        }
+        return freqMap;
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import help.EntityRMExpand;
+import help.PseudoDocument;
+import help.RM3Expand;
+import help.Utilities;
+import lucene.RAMIndex;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the query expansion of the features over the query-entity pairs of the {@link SyntheticData}:
+ * finding the RM3 expansion terms in an in-memory index of the pseudo-document of the entity (as done by the
+ * query expansion with words feature), building the expanded query from them, and building the query expanded
+ * with the entities of the pseudo-document (as done by the query expansion with entities feature).
+ * Each invocation expands the query of one query-entity pair; the pairs are taken in turn.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpansionBenchmark {
+    private static final int MAX_PAIRS = 200;
+    private static final int TAKE_K_TERMS = 50;
+    private static final int TAKE_K_DOCS = 100;
+    private static final int TAKE_K_ENTITIES = 20;
+
+    private SyntheticData data;
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final List<String> queries = new ArrayList<>();
+    private final List<IndexWriter> writers = new ArrayList<>();
+    private final List<IndexSearcher> searchers = new ArrayList<>();
+    private final List<List<Map.Entry<String, Float>>> relevanceModels = new ArrayList<>();
+    private final List<List<Map.Entry<String, Integer>>> expansionEntities = new ArrayList<>();
+
+    /**
+     * Position of a thread in the list of query-entity pairs.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData();
+        IndexSearcher searcher = data.openSearcher();
+        for (int q = 0; q < SyntheticData.QUERIES && queries.size() < MAX_PAIRS; q++) {
+            String queryStr = Utilities.processQuery(data.getQueryIds().get(q));
+            for (PseudoDocument d : data.getPseudoDocuments(q, searcher)) {
+                IndexWriter iw = RAMIndex.createWriter(analyzer);
+                RAMIndex.createIndex(d.getDocumentList(), iw);
+                IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
+                queries.add(queryStr);
+                writers.add(iw);
+                searchers.add(is);
+                relevanceModels.add(RM3Expand.getExpansionTerms(is, TAKE_K_TERMS, TAKE_K_DOCS, queryStr, false, analyzer));
+                expansionEntities.add(contextEntities(d));
+            }
+        }
+        searcher.getIndexReader().close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (int i = 0; i < writers.size(); i++) {
+            searchers.get(i).getIndexReader().close();
+            RAMIndex.close(writers.get(i));
+        }
+        data.delete();
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Float>> rm3ExpansionTerms(Cursor cursor) throws IOException {
+        int j = cursor.i++ % queries.size();
+        return RM3Expand.getExpansionTerms(searchers.get(j), TAKE_K_TERMS, TAKE_K_DOCS, queries.get(j), false, analyzer);
+    }
+
+    @Benchmark
+    public BooleanQuery rm3Query(Cursor cursor) throws IOException {
+        int j = cursor.i++ % queries.size();
+        return RM3Expand.toRm3Query(queries.get(j), relevanceModels.get(j), analyzer);
+    }
+
+    @Benchmark
+    public BooleanQuery entityRmQuery(Cursor cursor) throws IOException {
+        int j = cursor.i++ % queries.size();
+        return EntityRMExpand.toEntityRmQuery(queries.get(j), expansionEntities.get(j), false, "text", analyzer);
+    }
+
+    /**
+     * The entities of a pseudo-document with their frequencies, most frequent first.
+     */
+    private static List<Map.Entry<String, Integer>> contextEntities(PseudoDocument d) {
+        HashMap<String, Integer> freq = new HashMap<>();
+        for (String e : d.getEntityList()) {
+            freq.merge(e, 1, Integer::sum);
+        }
+        List<Map.Entry<String, Integer>> entities = new ArrayList<>(Utilities.sortByValueDescending(freq).entrySet());
+        return entities.subList(0, Math.min(TAKE_K_ENTITIES, entities.size()));
+    }
+}
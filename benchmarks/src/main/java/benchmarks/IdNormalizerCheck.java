@@ -0,0 +1,80 @@
+package benchmarks;
+
+import help.IdNormalizer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Check that the {@link IdNormalizer} gives exactly the IDs of the old way (String.replaceAll and
+ * String.toLowerCase) on random IDs, including IDs with non-ASCII letters, underscores and partial "%2" sequences.
+ * The IdNormalizer decides how to convert to lowercase from the default locale when it is loaded, so the locale is
+ * given on the command line and set before the check starts:
+ *
+ *      java -cp target/benchmarks.jar benchmarks.IdNormalizerCheck [number of IDs] [locale]
+ *
+ * e.g. "benchmarks.IdNormalizerCheck 2000000" and "benchmarks.IdNormalizerCheck 2000000 tr" (Turkish, which has
+ * special rules for 'I'). The number of IDs defaults to 2000000. The program exits with status 1 if an ID differs.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class IdNormalizerCheck {
+    // ASCII and some letters with special case rules (dotted and dotless I, sharp s, sigma)
+    private static final String CHARS = "abcxyzABCXYZIi019_%2 :()-'.\u0130\u0131\u00df\u00c9\u00e9\u03a3\u03c3";
+
+    public static void main(@NotNull String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        if (args.length > 1) {
+            Locale.setDefault(Locale.forLanguageTag(args[1]));
+        }
+        Random random = new Random(42);
+        int mismatches = 0;
+        for (int i = 0; i < n; i++) {
+            String id = randomId(random);
+            mismatches += check(id, "entity", IdNormalizer.normalize(id, '_', true), old(id, "_", true));
+            mismatches += check(id, "query", IdNormalizer.normalize(id, ' ', true), old(id, " ", true));
+            mismatches += check(id, "title", IdNormalizer.normalize(id, ' ', false), old(id, " ", false));
+            // EntityRMExpand turns the normalized entity into the text of its words
+            mismatches += check(id, "expansion", IdNormalizer.normalize(id, '_', true).replace('_', ' '),
+                    old(id, "_", true).replaceAll("_", " "));
+            if (mismatches > 10) {
+                break;
+            }
+        }
+        System.out.println("Checked " + n + " IDs in the locale \"" + Locale.getDefault().toLanguageTag() + "\": "
+                + (mismatches == 0 ? "all the same." : mismatches + " differ."));
+        if (mismatches != 0) {
+            System.exit(1);
+        }
+    }
+
+    @NotNull
+    private static String randomId(@NotNull Random random) {
+        StringBuilder id = new StringBuilder(random.nextBoolean() ? "enwiki:" : "");
+        int length = random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(6) == 0) {
+                id.append("%20");
+            } else {
+                id.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+        }
+        return id.toString();
+    }
+
+    @NotNull
+    private static String old(@NotNull String id, @NotNull String separator, boolean lowerCase) {
+        String s = id.substring(id.indexOf(":") + 1).replaceAll("%20", separator);
+        return lowerCase ? s.toLowerCase() : s;
+    }
+
+    private static int check(String id, String kind, @NotNull String actual, String expected) {
+        if (actual.equals(expected)) {
+            return 0;
+        }
+        System.out.println("Different " + kind + " of \"" + id + "\": \"" + actual + "\" instead of \"" + expected
+                + "\"");
+        return 1;
+    }
+}
@@ -0,0 +1,144 @@
+package benchmarks;
+
+import lucene.ParagraphIdColumn;
+import lucene.ParagraphIds;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of getting the paragraph IDs of the top 100 hits of a search (as done when making the run strings):
+ * loading the whole documents, loading only the stored ID field, or reading the IDs from the sorted doc values of the
+ * ID field (see {@link ParagraphIds}), or from the {@link ParagraphIdColumn} of the index. The hits are 100 random
+ * paragraphs of the {@link SyntheticData}, in random order as the hits of a search are.
+ * The other direction, finding the docIDs of 100 paragraphs by their IDs (as done when getting the paragraphs of a run
+ * from the index), is benchmarked with a term query per paragraph and with the minimal perfect hash of the column.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParagraphIdBenchmark {
+    private static final int HITS = 100;
+    private static final int SETS = 64;
+
+    private SyntheticData data;
+    private IndexSearcher searcher;
+    private ParagraphIdColumn column;
+    private final ScoreDoc[][] hits = new ScoreDoc[SETS][];
+    private final String[][] paraIds = new String[SETS][];
+
+    /**
+     * Position of a thread in the sets of hits.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData(4);
+        searcher = data.openSearcher();
+        int maxDoc = searcher.getIndexReader().maxDoc();
+        Random random = new Random(42);
+        for (int s = 0; s < SETS; s++) {
+            hits[s] = new ScoreDoc[HITS];
+            for (int i = 0; i < HITS; i++) {
+                hits[s][i] = new ScoreDoc(random.nextInt(maxDoc), HITS - i);
+            }
+        }
+        ParagraphIdColumn.build(data.getIndexDir(), "id");
+        column = ParagraphIdColumn.open(data.getIndexDir());
+        for (int s = 0; s < SETS; s++) {
+            paraIds[s] = ParagraphIds.get(hits[s], "id", searcher);
+        }
+        // Warm the stored fields and doc values of every segment
+        searcher.search(new MatchAllDocsQuery(), 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        searcher.getIndexReader().close();
+        data.delete();
+    }
+
+    @Benchmark
+    public String[] wholeDocuments(Cursor cursor) throws IOException {
+        ScoreDoc[] scoreDocs = hits[cursor.i++ % SETS];
+        String[] ids = new String[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            ids[i] = searcher.doc(scoreDocs[i].doc).getField("id").stringValue();
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public String[] storedField(Cursor cursor) throws IOException {
+        ScoreDoc[] scoreDocs = hits[cursor.i++ % SETS];
+        IndexReader reader = searcher.getIndexReader();
+        String[] ids = new String[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            ids[i] = ParagraphIds.stored(reader, scoreDocs[i].doc, "id");
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public String[] docValues(Cursor cursor) throws IOException {
+        return ParagraphIds.get(hits[cursor.i++ % SETS], "id", searcher);
+    }
+
+    @Benchmark
+    public String[] column(Cursor cursor) {
+        ScoreDoc[] scoreDocs = hits[cursor.i++ % SETS];
+        String[] ids = new String[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            ids[i] = column.get(scoreDocs[i].doc);
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public int[] lookupTermQuery(Cursor cursor) throws IOException {
+        String[] ids = paraIds[cursor.i++ % SETS];
+        int[] docs = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ScoreDoc[] top = searcher.search(new TermQuery(new Term("id", ids[i])), 1).scoreDocs;
+            docs[i] = top.length == 0 ? -1 : top[0].doc;
+        }
+        return docs;
+    }
+
+    @Benchmark
+    public int[] lookupColumn(Cursor cursor) {
+        String[] ids = paraIds[cursor.i++ % SETS];
+        int[] docs = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            docs[i] = column.docId(ids[i]);
+        }
+        return docs;
+    }
+}
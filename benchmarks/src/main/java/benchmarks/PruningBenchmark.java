@@ -0,0 +1,197 @@
+package benchmarks;
+
+import help.EntityRMExpand;
+import help.PseudoDocument;
+import help.RM3Expand;
+import help.Utilities;
+import lucene.Index;
+import lucene.QueryPruner;
+import lucene.RAMIndex;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the latency of one search of the paragraph index for the top 100 hits with an expanded query
+ * (including the pruning of the query, see {@link QueryPruner}): the query expanded with up to 63 RM3 terms
+ * ("kind" = rm3) or with the names of the 20 entities which co-occur most often with the entity ("kind" = entities).
+ * The pruning is switched off ("pruning" = off), only merges the clauses of the same term (merge), or also drops
+ * terms below 5% of the largest weight (min-weight=0.05), keeps at most 16 clauses (max-clauses=16) or keeps the
+ * postings of a query within 20000 (postings=20000).
+ * The trade-off in effectiveness is printed when a trial starts: the number of clauses and postings of the queries
+ * before and after pruning, and the share of the top 100 hits of the unpruned queries which the pruned queries also
+ * find.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PruningBenchmark {
+    private static final int TAKE_K_TERMS = 63;
+    private static final int TAKE_K_DOCS = 100;
+    private static final int TAKE_K_ENTITIES = 20;
+    private static final int TOP_N = 100;
+
+    @Param({"rm3", "entities"})
+    public String kind;
+
+    @Param({"off", "merge", "min-weight=0.05", "max-clauses=16", "postings=20000"})
+    public String pruning;
+
+    private SyntheticData data;
+    private IndexSearcher searcher;
+    private final List<BooleanQuery> queries = new ArrayList<>();
+
+    /**
+     * Position of a thread in the list of queries.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        // The options of the pruning are read once, so they are set before it is first used
+        if (!pruning.equals("off")) {
+            System.setProperty("support.passage.prune", "true");
+            if (pruning.contains("=")) {
+                String[] option = pruning.split("=");
+                System.setProperty("support.passage.prune-" + option[0], option[1]);
+            }
+        }
+        data = new SyntheticData();
+        searcher = data.openSearcher();
+        searcher.setSimilarity(new BM25Similarity());
+
+        // Expand every query using the pseudo-document of its first entity
+        Analyzer analyzer = new EnglishAnalyzer();
+        for (int q = 0; q < SyntheticData.QUERIES; q++) {
+            String queryStr = Utilities.processQuery(data.getQueryIds().get(q));
+            List<PseudoDocument> pseudoDocuments = data.getPseudoDocuments(q, searcher);
+            if (pseudoDocuments.isEmpty()) {
+                continue;
+            }
+            PseudoDocument d = pseudoDocuments.get(0);
+            if (kind.equals("entities")) {
+                queries.add(EntityRMExpand.toEntityRmQuery(queryStr, contextEntities(d), false, "text", analyzer));
+                continue;
+            }
+            IndexWriter iw = RAMIndex.createWriter(analyzer);
+            RAMIndex.createIndex(d.getDocumentList(), iw);
+            IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
+            queries.add(RM3Expand.toRm3Query(queryStr,
+                    RM3Expand.getExpansionTerms(is, TAKE_K_TERMS, TAKE_K_DOCS, queryStr, false, analyzer), analyzer));
+            is.getIndexReader().close();
+            RAMIndex.close(iw);
+        }
+        report();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.clearProperty("support.passage.prune");
+        System.clearProperty("support.passage.prune-min-weight");
+        System.clearProperty("support.passage.prune-max-clauses");
+        System.clearProperty("support.passage.prune-postings");
+        searcher.getIndexReader().close();
+        data.delete();
+    }
+
+    @Benchmark
+    public TopDocs search(Cursor cursor) throws IOException {
+        return Index.Search.searchIndex(queries.get(cursor.i++ % queries.size()), TOP_N, searcher);
+    }
+
+    /**
+     * Print the clauses and postings of the queries before and after pruning, and the share of the top hits
+     * of the unpruned queries which the pruned queries also find.
+     */
+    private void report() throws IOException {
+        long clausesIn = 0, clausesOut = 0, postingsIn = 0, postingsOut = 0, hits = 0, kept = 0;
+        for (BooleanQuery query : queries) {
+            BooleanQuery pruned = QueryPruner.enabled()
+                    ? QueryPruner.prune(query, searcher.getIndexReader())
+                    : query;
+            clausesIn += query.clauses().size();
+            clausesOut += pruned.clauses().size();
+            postingsIn += postings(query);
+            postingsOut += postings(pruned);
+            Set<Integer> found = new HashSet<>();
+            for (ScoreDoc scoreDoc : searcher.search(pruned, TOP_N).scoreDocs) {
+                found.add(scoreDoc.doc);
+            }
+            for (ScoreDoc scoreDoc : searcher.search(query, TOP_N).scoreDocs) {
+                hits++;
+                kept += found.contains(scoreDoc.doc) ? 1 : 0;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%n%s, %s: %d queries, clauses %d -> %d, postings %d -> %d, "
+                        + "top %d hits kept %.1f%%%n", kind, pruning, queries.size(), clausesIn, clausesOut,
+                postingsIn, postingsOut, TOP_N, 100.0 * kept / Math.max(1, hits));
+    }
+
+    /**
+     * Postings of the term clauses of a query (a term with several clauses is counted for every clause).
+     */
+    private long postings(BooleanQuery query) throws IOException {
+        long postings = 0;
+        for (BooleanClause clause : query.clauses()) {
+            Query q = clause.getQuery();
+            if (q instanceof BoostQuery) {
+                q = ((BoostQuery) q).getQuery();
+            }
+            if (q instanceof TermQuery) {
+                postings += searcher.getIndexReader().docFreq(((TermQuery) q).getTerm());
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * The entities of a pseudo-document with their frequencies, most frequent first.
+     */
+    private static List<Map.Entry<String, Integer>> contextEntities(PseudoDocument d) {
+        HashMap<String, Integer> freq = new HashMap<>();
+        for (String e : d.getEntityList()) {
+            freq.merge(e, 1, Integer::sum);
+        }
+        List<Map.Entry<String, Integer>> entities = new ArrayList<>(Utilities.sortByValueDescending(freq).entrySet());
+        return entities.subList(0, Math.min(TAKE_K_ENTITIES, entities.size()));
+    }
+}
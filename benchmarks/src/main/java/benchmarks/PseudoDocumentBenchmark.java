@@ -0,0 +1,84 @@
+package benchmarks;
+
+import help.PseudoDocument;
+import help.Utilities;
+import lucene.EntityPostings;
+import org.apache.lucene.search.IndexSearcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link Utilities#createPseudoDocument} over the query-entity pairs of the {@link SyntheticData}:
+ * from the paragraph IDs of the query (each paragraph is looked up in the index by its ID) and from the docIDs of
+ * the paragraphs (as given by a {@link lucene.Workload}). Each invocation builds the pseudo-document of one
+ * query-entity pair; the pairs are taken in turn.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PseudoDocumentBenchmark {
+    private SyntheticData data;
+    private IndexSearcher searcher;
+    private final ArrayList<String> entities = new ArrayList<>();
+    private final ArrayList<ArrayList<String>> paraLists = new ArrayList<>();
+    private final ArrayList<int[]> docIds = new ArrayList<>();
+
+    /**
+     * Position of a thread in the list of query-entity pairs.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData();
+        searcher = data.openSearcher();
+        for (int q = 0; q < SyntheticData.QUERIES; q++) {
+            ArrayList<String> paraList = new ArrayList<>(data.getParaList(q));
+            int[] candidates = EntityPostings.lookup(paraList, "id", searcher);
+            for (String entity : data.getEntityList(q)) {
+                entities.add(entity);
+                paraLists.add(paraList);
+                docIds.add(candidates);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        searcher.getIndexReader().close();
+        data.delete();
+    }
+
+    @Benchmark
+    public PseudoDocument fromParaIds(Cursor cursor) {
+        int j = cursor.i++ % entities.size();
+        return Utilities.createPseudoDocument(entities.get(j), paraLists.get(j), searcher);
+    }
+
+    @Benchmark
+    public PseudoDocument fromDocIds(Cursor cursor) {
+        int j = cursor.i++ % entities.size();
+        return Utilities.createPseudoDocument(entities.get(j), docIds.get(j), searcher);
+    }
+}
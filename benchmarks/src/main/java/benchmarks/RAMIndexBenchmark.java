@@ -0,0 +1,102 @@
+package benchmarks;
+
+import help.PseudoDocument;
+import help.Utilities;
+import lucene.RAMIndex;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the in-memory indexes of {@link RAMIndex} as used by the pseudo-document retrieval score feature:
+ * the pseudo-documents of the entities of a query of the {@link SyntheticData} are indexed, and the index is
+ * searched with the query. Each invocation does one query; the queries are taken in turn.
+ * "createIndex" only builds (and releases) the index, "createIndexAndSearch" also searches it.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RAMIndexBenchmark {
+    private SyntheticData data;
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final List<String> queries = new ArrayList<>();
+    private final List<List<Document>> documents = new ArrayList<>();
+
+    /**
+     * Position of a thread in the list of queries.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData();
+        IndexSearcher searcher = data.openSearcher();
+        for (int q = 0; q < SyntheticData.QUERIES; q++) {
+            List<Document> queryDocs = new ArrayList<>();
+            for (PseudoDocument d : data.getPseudoDocuments(q, searcher)) {
+                queryDocs.add(Utilities.pseudoDocToDoc(d));
+            }
+            if (!queryDocs.isEmpty()) {
+                queries.add(Utilities.processQuery(data.getQueryIds().get(q)));
+                documents.add(queryDocs);
+            }
+        }
+        searcher.getIndexReader().close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        data.delete();
+    }
+
+    @Benchmark
+    public IndexWriter createIndex(Cursor cursor) throws IOException {
+        int j = cursor.i++ % documents.size();
+        IndexWriter iw = RAMIndex.createWriter(analyzer);
+        RAMIndex.createIndex(documents.get(j), iw);
+        RAMIndex.close(iw);
+        return iw;
+    }
+
+    @Benchmark
+    public HashMap<Document, Float> createIndexAndSearch(Cursor cursor) throws IOException {
+        int j = cursor.i++ % documents.size();
+        IndexWriter iw = RAMIndex.createWriter(analyzer);
+        RAMIndex.createIndex(documents.get(j), iw);
+        IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
+        QueryParser qp = RAMIndex.createParser("text", analyzer);
+        HashMap<Document, Float> results = RAMIndex.searchIndex(queries.get(j), 100, is, qp);
+        is.getIndexReader().close();
+        RAMIndex.close(iw);
+        return results;
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import help.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of reading run files with {@link Utilities#getRankings(String)} (the ranked IDs of every query) and
+ * {@link Utilities#getRankings(String, HashMap)} (the ranked IDs with their scores). Each invocation reads the
+ * paragraph run file of the {@link SyntheticData} ({@value SyntheticData#QUERIES} queries with
+ * {@value SyntheticData#PARAS_PER_QUERY} paragraphs each).
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingsBenchmark {
+    private SyntheticData data;
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        data.delete();
+    }
+
+    @Benchmark
+    public HashMap<String, ArrayList<String>> rankings() {
+        return Utilities.getRankings(data.getParaRunFile());
+    }
+
+    @Benchmark
+    public HashMap<String, LinkedHashMap<String, Double>> rankingsWithScores() {
+        HashMap<String, LinkedHashMap<String, Double>> rankings = new HashMap<>();
+        Utilities.getRankings(data.getParaRunFile(), rankings);
+        return rankings;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import help.RunLineFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark comparing the formatting of run strings using string concatenation (the old way) against the
+ * {@link RunLineFormatter}. Each invocation formats one run string.
+ * Run with "-prof gc" to see the allocation rate per run string ("gc.alloc.rate.norm").
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunLineBenchmark {
+    private static final int N = 1024;
+
+    private final String[] queryIds = new String[N];
+    private final String[] entityIds = new String[N];
+    private final String[] paraIds = new String[N];
+    private final float[] scores = new float[N];
+    private final RunLineFormatter formatter = new RunLineFormatter(1 << 16);
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int j = 0; j < N; j++) {
+            queryIds[j] = "enwiki:Query%20" + random.nextInt(100000);
+            entityIds[j] = "enwiki:Entity%20" + random.nextInt(100000);
+            paraIds[j] = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+            scores[j] = random.nextFloat() * 20;
+        }
+    }
+
+    @Benchmark
+    public void concatenation(Blackhole bh) {
+        int j = i++ & (N - 1);
+        String query = queryIds[j] + "+" + entityIds[j];
+        String runFileString = query + " Q0 " + paraIds[j] + " " + (j + 1) + " " + scores[j] + " " + "QEE";
+        bh.consume(runFileString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void formatter(Blackhole bh) {
+        int j = i++ & (N - 1);
+        if (j == 0) {
+            formatter.reset();
+        }
+        formatter.line(queryIds[j], entityIds[j], paraIds[j], j + 1, scores[j], "QEE");
+        bh.consume(formatter.length());
+    }
+}
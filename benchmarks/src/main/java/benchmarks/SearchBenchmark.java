@@ -0,0 +1,120 @@
+package benchmarks;
+
+import help.PseudoDocument;
+import help.RM3Expand;
+import help.TaskRunner;
+import help.Utilities;
+import lucene.Index;
+import lucene.RAMIndex;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the latency of one search of the paragraph index with an expanded query (as done by the query
+ * expansion with words feature: the query terms and up to 63 RM3 expansion terms as SHOULD clauses), with the
+ * segments of the index searched on the calling thread ("threads" = 0) or in slices on a number of threads
+ * (see {@link Index.Setup#newSearcher(IndexReader, ExecutorService)}). The index of the {@link SyntheticData}
+ * has 16 segments; a slice has at most "sliceSegments" of them.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int SEGMENTS = 16;
+    private static final int TAKE_K_TERMS = 63;
+    private static final int TAKE_K_DOCS = 100;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"1", "5"})
+    public int sliceSegments;
+
+    private SyntheticData data;
+    private IndexReader reader;
+    private IndexSearcher searcher;
+    private ExecutorService executor;
+    private final List<BooleanQuery> queries = new ArrayList<>();
+
+    /**
+     * Position of a thread in the list of queries.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData(SEGMENTS);
+        reader = DirectoryReader.open(FSDirectory.open(Paths.get(data.getIndexDir())));
+        System.setProperty("support.passage.slice-segments", String.valueOf(sliceSegments));
+        executor = threads == 0 ? null : TaskRunner.newExecutor("search", threads);
+        searcher = Index.Setup.newSearcher(reader, executor);
+        searcher.setSimilarity(new BM25Similarity());
+
+        // Expand every query with the RM3 terms of the pseudo-document of its first entity
+        Analyzer analyzer = new EnglishAnalyzer();
+        IndexSearcher lookup = new IndexSearcher(reader);
+        for (int q = 0; q < SyntheticData.QUERIES; q++) {
+            String queryStr = Utilities.processQuery(data.getQueryIds().get(q));
+            List<PseudoDocument> pseudoDocuments = data.getPseudoDocuments(q, lookup);
+            if (pseudoDocuments.isEmpty()) {
+                continue;
+            }
+            IndexWriter iw = RAMIndex.createWriter(analyzer);
+            RAMIndex.createIndex(pseudoDocuments.get(0).getDocumentList(), iw);
+            IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
+            queries.add(RM3Expand.toRm3Query(queryStr,
+                    RM3Expand.getExpansionTerms(is, TAKE_K_TERMS, TAKE_K_DOCS, queryStr, false, analyzer), analyzer));
+            is.getIndexReader().close();
+            RAMIndex.close(iw);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        reader.close();
+        data.delete();
+    }
+
+    @Benchmark
+    public TopDocs search(Cursor cursor) throws IOException {
+        return Index.Search.searchIndex(queries.get(cursor.i++ % queries.size()), 100, searcher);
+    }
+}
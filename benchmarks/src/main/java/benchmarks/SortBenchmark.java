@@ -0,0 +1,51 @@
+package benchmarks;
+
+import help.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link Utilities#sortByValueDescending(java.util.Map)}, which every feature uses to rank the
+ * passages of a query-entity pair by score. Each invocation sorts a map of "size" paragraph IDs to scores.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private final HashMap<String, Double> scores = new HashMap<>();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            scores.put("para" + i, random.nextDouble() * 20);
+        }
+    }
+
+    @Benchmark
+    public LinkedHashMap<String, Double> sortByValueDescending() {
+        return Utilities.sortByValueDescending(scores);
+    }
+}
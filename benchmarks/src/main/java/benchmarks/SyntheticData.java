@@ -0,0 +1,268 @@
+package benchmarks;
+
+import help.PseudoDocument;
+import help.Utilities;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Small synthetic data set for the benchmarks, generated in a temporary directory: a paragraph index with the
+ * fields of the real index ("id", "text" and "entity"), a paragraph run file, an entity run file and an entity
+ * ground truth file. Words and entities are drawn from Zipf-like distributions, so that some entities are
+ * mentioned in many paragraphs and others only in a few, as in the real corpus.
+ * The data only depends on the sizes and the seed, so every fork of a benchmark sees the same data.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class SyntheticData {
+    public static final int PARAGRAPHS = 20000;
+    public static final int ENTITIES = 2000;
+    public static final int WORDS = 5000;
+    public static final int QUERIES = 50;
+    public static final int PARAS_PER_QUERY = 100;
+    public static final int ENTITIES_PER_QUERY = 50;
+
+    private final Path dir;
+    private final List<String> queryIds = new ArrayList<>();
+    private final List<List<String>> paraLists = new ArrayList<>();
+    private final List<List<String>> entityLists = new ArrayList<>();
+    private final Random random = new Random(42);
+    private final double[] wordCdf = cdf(WORDS);
+    private final double[] entityCdf = cdf(ENTITIES);
+
+    /**
+     * Generate the data set in a new temporary directory, with an index of a single segment.
+     * @throws IOException
+     */
+    public SyntheticData() throws IOException {
+        this(1);
+    }
+
+    /**
+     * Generate the data set in a new temporary directory.
+     * @param segments Integer Number of segments of the index (like the real index, which has many).
+     * @throws IOException
+     */
+    public SyntheticData(int segments) throws IOException {
+        dir = Files.createTempDirectory("support-passage-benchmark");
+        writeIndex(segments);
+        writeRuns();
+    }
+
+    /**
+     * Open a searcher of the paragraph index.
+     * @return IndexSearcher
+     * @throws IOException
+     */
+    @NotNull
+    public IndexSearcher openSearcher() throws IOException {
+        return new IndexSearcher(DirectoryReader.open(FSDirectory.open(dir.resolve("index"))));
+    }
+
+    @NotNull
+    public String getIndexDir() {
+        return dir.resolve("index").toString();
+    }
+
+    @NotNull
+    public String getParaRunFile() {
+        return dir.resolve("para.run").toString();
+    }
+
+    @NotNull
+    public String getEntityRunFile() {
+        return dir.resolve("entity.run").toString();
+    }
+
+    @NotNull
+    public String getEntityQrelFile() {
+        return dir.resolve("entity.qrels").toString();
+    }
+
+    @NotNull
+    public List<String> getQueryIds() {
+        return queryIds;
+    }
+
+    /**
+     * Paragraph IDs retrieved for a query, in rank order.
+     * @param query Integer Number of the query.
+     * @return List
+     */
+    @NotNull
+    public List<String> getParaList(int query) {
+        return paraLists.get(query);
+    }
+
+    /**
+     * Entity IDs (e.g. "enwiki:Entity%2042") retrieved for a query, in rank order.
+     * @param query Integer Number of the query.
+     * @return List
+     */
+    @NotNull
+    public List<String> getEntityList(int query) {
+        return entityLists.get(query);
+    }
+
+    /**
+     * Build the pseudo-documents of the entities of a query (leaving out the entities without one).
+     * @param query Integer Number of the query.
+     * @param searcher IndexSearcher Searcher of the paragraph index.
+     * @return List
+     */
+    @NotNull
+    public List<PseudoDocument> getPseudoDocuments(int query, IndexSearcher searcher) {
+        List<PseudoDocument> pseudoDocuments = new ArrayList<>();
+        ArrayList<String> paraList = new ArrayList<>(getParaList(query));
+        for (String entity : new LinkedHashSet<>(getEntityList(query))) {
+            PseudoDocument d = Utilities.createPseudoDocument(entity, paraList, searcher);
+            if (d != null) {
+                pseudoDocuments.add(d);
+            }
+        }
+        return pseudoDocuments;
+    }
+
+    /**
+     * Make a paragraph document with the fields of the real index.
+     */
+    @NotNull
+    private Document paragraph(int id) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder entities = new StringBuilder();
+        // Between 20 and 120 words with between 0 and 8 entity links, as most paragraphs of the corpus
+        int length = 20 + random.nextInt(100);
+        for (int i = 0; i < length; i++) {
+            text.append(i == 0 ? "" : " ").append(word(sample(wordCdf)));
+        }
+        int links = random.nextInt(9);
+        for (int i = 0; i < links; i++) {
+            entities.append(i == 0 ? "" : " ").append("entity_").append(sample(entityCdf));
+        }
+        Document doc = new Document();
+        doc.add(new StringField("id", "para" + id, Field.Store.YES));
+        doc.add(new SortedDocValuesField("id", new BytesRef("para" + id)));
+        doc.add(new TextField("text", text.toString(), Field.Store.YES));
+        doc.add(new StringField("entity", entities.toString(), Field.Store.YES));
+        return doc;
+    }
+
+    /**
+     * Delete the data set.
+     * @throws IOException
+     */
+    public void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void writeIndex(int segments) throws IOException {
+        IndexWriterConfig conf = new IndexWriterConfig(new EnglishAnalyzer());
+        conf.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        // Flush a segment every PARAGRAPHS / segments documents and never merge, so that there are that many
+        conf.setMaxBufferedDocs(Math.max(2, (PARAGRAPHS + segments - 1) / segments));
+        conf.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+        conf.setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter iw = new IndexWriter(FSDirectory.open(dir.resolve("index")), conf)) {
+            for (int i = 0; i < PARAGRAPHS; i++) {
+                iw.addDocument(paragraph(i));
+            }
+        }
+    }
+
+    private void writeRuns() throws IOException {
+        try (PrintWriter paraRun = writer("para.run");
+             PrintWriter entityRun = writer("entity.run");
+             PrintWriter entityQrels = writer("entity.qrels")) {
+            for (int q = 0; q < QUERIES; q++) {
+                // The query text (e.g. "wab wcd wef") is made of words of the paragraphs
+                String queryId = "enwiki:" + word(sample(wordCdf)) + "%20" + word(sample(wordCdf)) + "%20"
+                        + word(sample(wordCdf));
+                List<String> paraList = new ArrayList<>();
+                List<String> entityList = new ArrayList<>();
+                for (int rank = 1; rank <= PARAS_PER_QUERY; rank++) {
+                    String paraId = "para" + random.nextInt(PARAGRAPHS);
+                    paraList.add(paraId);
+                    paraRun.println(queryId + " Q0 " + paraId + " " + rank + " " + (PARAS_PER_QUERY - rank + 1) + " BM25");
+                }
+                for (int rank = 1; rank <= ENTITIES_PER_QUERY; rank++) {
+                    String entityId = "enwiki:Entity%20" + sample(entityCdf);
+                    entityList.add(entityId);
+                    entityRun.println(queryId + " Q0 " + entityId + " " + rank + " " + (ENTITIES_PER_QUERY - rank + 1) + " BM25");
+                    if (random.nextBoolean()) {
+                        entityQrels.println(queryId + " 0 " + entityId + " 1");
+                    }
+                }
+                queryIds.add(queryId);
+                paraLists.add(paraList);
+                entityLists.add(entityList);
+            }
+        }
+    }
+
+    @NotNull
+    private PrintWriter writer(String name) throws IOException {
+        return new PrintWriter(Files.newBufferedWriter(dir.resolve(name), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The word with a given rank: a few letters made from the rank, so that the analyzer keeps it as one term.
+     */
+    @NotNull
+    private static String word(int rank) {
+        StringBuilder sb = new StringBuilder("w");
+        do {
+            sb.append((char) ('a' + rank % 26));
+            rank /= 26;
+        } while (rank > 0);
+        return sb.toString();
+    }
+
+    /**
+     * Cumulative distribution of a Zipf distribution (exponent 1) over n ranks.
+     */
+    @NotNull
+    private static double[] cdf(int n) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / (i + 1);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private int sample(@NotNull double[] cdf) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return i >= 0 ? i : Math.min(-i - 1, cdf.length - 1);
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import help.PseudoDocument;
+import help.RM3Expand;
+import help.Utilities;
+import lucene.Index;
+import lucene.RAMIndex;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the latency of one search of the paragraph index for the top 100 hits with an RM3-expanded query
+ * (the query terms and up to 63 expansion terms as SHOULD clauses), counting every matching document
+ * ("totalHitsThreshold" = 2147483647, as Lucene 7 did) or only the first 1000 or 100 of them, after which the search
+ * skips the blocks of documents which cannot make it into the top 100 (block-max WAND).
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WandBenchmark {
+    private static final int TAKE_K_TERMS = 63;
+    private static final int TAKE_K_DOCS = 100;
+    private static final int TOP_N = 100;
+
+    @Param({"2147483647", "1000", "100"})
+    public int totalHitsThreshold;
+
+    private SyntheticData data;
+    private IndexSearcher searcher;
+    private final List<BooleanQuery> queries = new ArrayList<>();
+
+    /**
+     * Position of a thread in the list of queries.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int i = 0;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        data = new SyntheticData();
+        System.setProperty("support.passage.total-hits-threshold", String.valueOf(totalHitsThreshold));
+        searcher = data.openSearcher();
+        searcher.setSimilarity(new BM25Similarity());
+
+        // Expand every query with the RM3 terms of the pseudo-document of its first entity
+        Analyzer analyzer = new EnglishAnalyzer();
+        for (int q = 0; q < SyntheticData.QUERIES; q++) {
+            String queryStr = Utilities.processQuery(data.getQueryIds().get(q));
+            List<PseudoDocument> pseudoDocuments = data.getPseudoDocuments(q, searcher);
+            if (pseudoDocuments.isEmpty()) {
+                continue;
+            }
+            IndexWriter iw = RAMIndex.createWriter(analyzer);
+            RAMIndex.createIndex(pseudoDocuments.get(0).getDocumentList(), iw);
+            IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
+            queries.add(RM3Expand.toRm3Query(queryStr,
+                    RM3Expand.getExpansionTerms(is, TAKE_K_TERMS, TAKE_K_DOCS, queryStr, false, analyzer), analyzer));
+            is.getIndexReader().close();
+            RAMIndex.close(iw);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.clearProperty("support.passage.total-hits-threshold");
+        searcher.getIndexReader().close();
+        data.delete();
+    }
+
+    @Benchmark
+    public TopDocs search(Cursor cursor) throws IOException {
+        return Index.Search.searchIndex(queries.get(cursor.i++ % queries.size()), TOP_N, searcher);
+    }
+}
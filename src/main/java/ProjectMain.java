@@ -4,6 +4,16 @@ import features.EntityContextNeighbors;
 import features.PseudoDocRetScore;
 import features.QEEntities;
 import features.QEWords;
+import help.Metrics;
+import help.Options;
+import help.SyntheticCorpus;
+import help.TaskRunner;
+import lucene.CoOccurrenceIndex;
+import lucene.EntityDictionary;
+import lucene.EntityPostings;
+import lucene.IndexStats;
+import lucene.ParagraphIdColumn;
+import lucene.Workload;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -14,10 +24,12 @@ import org.apache.lucene.search.similarities.Similarity;
 import org.jetbrains.annotations.NotNull;
 import salience.Experiment1;
 import salience.Experiment2;
+import server.SupportPassageServer;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Project runner.
@@ -27,6 +39,10 @@ import java.util.List;
 public class ProjectMain {
     public static void main(@NotNull String[] args) {
 
+        args = Options.parse(args);
+        if (Metrics.enabled()) {
+            System.out.println("Measuring the stages of the run. A summary is printed at exit.");
+        }
         if (args.length == 0) {
             help();
             System.exit(-1);
@@ -42,6 +58,7 @@ public class ProjectMain {
         Similarity similarity;
         Analyzer analyzer;
         boolean omit;
+        ExecutorService executor;
 
 
         switch(command) {
@@ -53,7 +70,7 @@ public class ProjectMain {
                 dataDir = args[4];
                 paraRunFile = args[5];
                 entityRunFile = args[6];
-                outFile = args[7];
+                outFile = Options.runFile(args[7]);
                 entityQrel = args[8];
                 new Baseline1(indexDir, trecCarDir, outputDir, dataDir, paraRunFile, entityRunFile,
                         outFile, entityQrel);
@@ -67,7 +84,7 @@ public class ProjectMain {
                 dataDir = args[4];
                 entityRunFile = args[5];
                 entityQrel = args[6];
-                outFile = args[7];
+                outFile = Options.runFile(args[7]);
                 a = args[8];
                 s = args[9];
                 List<String> searchFields = Arrays.asList(Arrays.copyOfRange(args, 10, args.length));
@@ -127,7 +144,7 @@ public class ProjectMain {
                 dataDir = args[4];
                 paraRunFile = args[5];
                 entityRunFile = args[6];
-                outFile = args[7];
+                outFile = Options.runFile(args[7]);
                 entityQrel = args[8];
                 try {
                     new EntityContextNeighbors(indexDir, trecCarDir, outputDir, dataDir, paraRunFile, entityRunFile,
@@ -145,7 +162,7 @@ public class ProjectMain {
                 dataDir = args[4];
                 paraRunFile = args[5];
                 entityRunFile = args[6];
-                outFile = args[7];
+                outFile = Options.runFile(args[7]);
                 entityQrel = args[8];
                 try {
                     new PseudoDocRetScore(indexDir, trecCarDir, outputDir, dataDir, paraRunFile, entityRunFile,
@@ -228,7 +245,7 @@ public class ProjectMain {
                         System.out.println("Wrong choice of similarity! Exiting.");
                         System.exit(1);
                 }
-                outFile = "qee" + "-" + s1 + "-" + s2 + ".run";
+                outFile = Options.runFile("qee" + "-" + s1 + "-" + s2 + ".run");
 
                 new QEEntities(indexDir, trecCarDir, outputDir, dataDir, paraRunFile, entityRunFile, outFile, entityQrel,
                         takeKEntities, omit, analyzer, similarity);
@@ -310,7 +327,7 @@ public class ProjectMain {
                         System.out.println("Wrong choice of similarity! Exiting.");
                         System.exit(1);
                 }
-                outFile = "qew" + "-" + s1 + "-" + s2 + ".run";
+                outFile = Options.runFile("qew" + "-" + s1 + "-" + s2 + ".run");
                 new QEWords(indexDir, trecCarDir, outputDir, dataDir, paraRunFile, entityRunFile, outFile, entityQrel,
                         takeKTerms, takeKDocs, omit, analyzer, similarity);
 
@@ -324,7 +341,7 @@ public class ProjectMain {
                 dataDir = args[4];
                 paraRunFile = args[5];
                 entityRunFile = args[6];
-                outFile = args[7];
+                outFile = Options.runFile(args[7]);
                 entityQrel = args[8];
                 swatFile = args[9];
 
@@ -339,12 +356,157 @@ public class ProjectMain {
                 dataDir = args[3];
                 supportPsgRunFile = args[4];
                 entityRunFile = args[5];
-                outFile = args[6];
+                outFile = Options.runFile(args[6]);
                 swatFile = args[7];
 
                 new Experiment2(trecCarDir, outputDir, dataDir, supportPsgRunFile, entityRunFile, outFile, swatFile);
                 break;
 
+            case "cooc-index":
+                System.out.println("Co-occurrence index");
+                indexDir = args[1];
+                outputDir = args[2];
+                executor = TaskRunner.newExecutor("cooc-index");
+                try {
+                    CoOccurrenceIndex.build(indexDir, outputDir, EntityDictionary.entityField(), executor);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                executor.shutdown();
+                break;
+
+            case "entity-postings":
+                System.out.println("Entity postings");
+                indexDir = args[1];
+                outputDir = args[2];
+                executor = TaskRunner.newExecutor("entity-postings");
+                try {
+                    EntityPostings.build(indexDir, outputDir, EntityDictionary.entityField(), executor);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                executor.shutdown();
+                break;
+
+            case "paraid-column":
+                System.out.println("Paragraph ID column");
+                indexDir = args[1];
+                try {
+                    ParagraphIdColumn.build(indexDir, Options.idField());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                break;
+
+            case "index-stats":
+                System.out.println("Index statistics");
+                indexDir = args[1];
+                executor = TaskRunner.newExecutor("index-stats");
+                try {
+                    IndexStats.report(indexDir, EntityDictionary.entityField(), Options.getInt("top-entities", 20),
+                            executor);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                executor.shutdown();
+                break;
+
+            case "workload":
+                System.out.println("Workload");
+                indexDir = args[1];
+                paraRunFile = args[2];
+                entityRunFile = args[3];
+                entityQrel = args[4];
+                a = args[5];
+                outputDir = args[6];
+                analyzer = null;
+
+                switch (a) {
+                    case "eng":
+                        System.out.println("Using English analyzer.");
+                        analyzer = new EnglishAnalyzer();
+                        break;
+                    case "std":
+                        System.out.println("Using Standard analyzer.");
+                        analyzer = new StandardAnalyzer();
+                        break;
+                    default:
+                        System.out.println("Wrong analyzer choice! Can be either English(eng) or Standard(std)");
+                        System.exit(1);
+                }
+                executor = TaskRunner.newExecutor("workload");
+                try {
+                    Workload.build(indexDir, paraRunFile, entityRunFile, entityQrel, analyzer, outputDir, executor);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                executor.shutdown();
+                break;
+
+            case "synthetic":
+                System.out.println("Synthetic corpus");
+                outputDir = args[1];
+                try {
+                    new SyntheticCorpus(Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]))
+                            .generate(outputDir);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                break;
+
+            case "serve":
+                System.out.println("Support passage server");
+                indexDir = args[1];
+                paraRunFile = args[2];
+                entityRunFile = args[3];
+                entityQrel = args[4];
+                a = args[5];
+                s = args[6];
+                swatFile = args.length > 7 ? args[7] : null;
+                supportPsgRunFile = args.length > 8 ? args[8] : null;
+                analyzer = null;
+                similarity = null;
+
+                switch (a) {
+                    case "eng":
+                        System.out.println("Using English analyzer.");
+                        analyzer = new EnglishAnalyzer();
+                        break;
+                    case "std":
+                        System.out.println("Using Standard analyzer.");
+                        analyzer = new StandardAnalyzer();
+                        break;
+                    default:
+                        System.out.println("Wrong analyzer choice! Can be either English(eng) or Standard(std)");
+                        System.exit(1);
+                }
+                switch (s.toLowerCase()) {
+                    case "bm25":
+                        System.out.println("Using BM25.");
+                        similarity = new BM25Similarity();
+                        break;
+                    case "lmds":
+                        System.out.println("Using LM-DS.");
+                        similarity = new LMDirichletSimilarity();
+                        break;
+                    case "lmjm":
+                        float lambda = Float.parseFloat(Options.get("lambda", "0.4"));
+                        System.out.println("Using LM-JM. Lambda = " + lambda);
+                        similarity = new LMJelinekMercerSimilarity(lambda);
+                        break;
+                    default:
+                        System.out.println("Wrong choice! Can be either BM25(bm25), LM-DS(lmds) or LM-JM(lmjm)");
+                        System.exit(1);
+                }
+                try {
+                    new SupportPassageServer(indexDir, paraRunFile, entityRunFile, entityQrel, analyzer, similarity,
+                            swatFile, supportPsgRunFile).start();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                break;
+
             default: help();
 
         }
@@ -363,6 +525,48 @@ public class ProjectMain {
         System.out.println("qew      : Produces the run using method \"Query Expansion with Words\".");
         System.out.println("sal-exp-1: Produces the run using first experiment for salience.");
         System.out.println("sal-exp-2: Produces the run using second experiment for salience.");
+        System.out.println("cooc-index: Builds the corpus-wide entity co-occurrence index of a paragraph index.");
+        System.out.println("entity-postings: Builds the entity to paragraph postings of a paragraph index.");
+        System.out.println("paraid-column: Builds the docID to paragraph ID column (and its reverse) of a paragraph index.");
+        System.out.println("index-stats: Reports the documents, segments, size of every field and most frequent entities of a paragraph index.");
+        System.out.println("workload : Compiles the per-query work of the features into a workload file.");
+        System.out.println("synthetic: Generates a synthetic corpus (CBOR), runs and ground truth for load tests.");
+        System.out.println("serve    : Serves the support passages of query-entity pairs over HTTP (JSON).");
+        System.out.println();
+        System.out.println("Optional settings (anywhere after the option):");
+        System.out.println("--threads=N : Number of threads for the per-query work (default = number of processors).");
+        System.out.println("--NAME-threads=N : Number of threads of one executor (e.g. --ecn-threads=16, --index-threads=4, --annotate-threads=64).");
+        System.out.println("--config=PATH : Read options (name=value per line) from a properties file.");
+        System.out.println("--search-threads=N : Search the segments of the index in parallel on N threads (default = 0, off).");
+        System.out.println("--query-cache=N : Cache the results of the last N expanded-query searches (default = 0, off).");
+        System.out.println("--query-cache-digits=N : Significant digits of the boosts of a cached query (default = 6).");
+        System.out.println("--total-hits-threshold=N : Count the hits of an expanded-query search only up to N (default = number of results).");
+        System.out.println("--prune=true : Merge the clauses of the same term of an expanded query and drop terms not in the index (default = false).");
+        System.out.println("--prune-min-weight=F, --prune-max-clauses=N, --prune-postings=N : Drop terms below F times the largest weight, keep at most N clauses or N postings (default = 0, 64, 0).");
+        System.out.println("--prune-check=true : Also search the unpruned query and report the share of its top hits kept (default = false).");
+        System.out.println("--slice-docs=N, --slice-segments=N : Maximum documents and segments of a slice of a parallel search (default = 250000, 5).");
+        System.out.println("--pending=N : Number of query results held in memory before writing (default = 4 * threads, 1024 with virtual threads).");
+        System.out.println("--virtual-threads=true : Run every query on its own virtual thread (Java 21 or later).");
+        System.out.println("--expansion-permits=N, --scoring-permits=N : Tasks allowed in query expansion and scoring at once (default = number of processors).");
+        System.out.println("--flush-ms=N: Flush the run file to disk at least every N milliseconds (default = 1000).");
+        System.out.println("--gzip=true : Write the run file compressed with gzip (\".gz\" is added to its name).");
+        System.out.println("--cooc-index=DIR : Use the co-occurrence index in DIR for \"ecn\" and \"qee\".");
+        System.out.println("--entity-postings=DIR : Use the entity postings in DIR to build pseudo-documents.");
+        System.out.println("--id-field=NAME : Paragraph ID field of the index (default = id).");
+        System.out.println("--paraid-column=false : Ignore the paragraph ID column of the index.");
+        System.out.println("--top-entities=K : Number of most frequent entities reported by index-stats (default = 20).");
+        System.out.println("--workload=DIR : Use the workload in DIR for \"pdrs\" and \"qew\" instead of the run files.");
+        System.out.println("--metrics=true : Measure the latency of the stages of the run and print a summary at exit.");
+        System.out.println("--metrics-file=PATH : Also write the measurements to PATH (JSON if it ends with .json, else CSV).");
+        System.out.println("--metrics-interval-ms=N : Write the measurements every N milliseconds (default = 10000).");
+        System.out.println("--entity-field=NAME : Name of the entity field of the paragraph index (default = entity).");
+        System.out.println("--seed=N : Seed of the synthetic corpus (default = 42).");
+        System.out.println("--zipf-exponent=X : Exponent of the word and entity distributions of the synthetic corpus (default = 1.0).");
+        System.out.println("--port=N : Port of \"serve\" (default = 8080). --host=ADDRESS : Address to listen on (default = loopback).");
+        System.out.println("--timeout-ms=N : Time \"serve\" gives a request before answering 504 (default = 30000).");
+        System.out.println("--cache=N : Number of query-entity pairs whose passages \"serve\" caches (default = 1024).");
+        System.out.println("--lambda=X : Lambda of LM-JM for \"serve\" (default = 0.4).");
+        System.out.println("--take-k-entities=N, --take-k-terms=N, --take-k-docs=N, --omit=true : \"qee\" and \"qew\" settings of \"serve\" (default = 20, 50, 100, false).");
         System.out.println();
         System.out.println("For description of above methods, see paper.");
         System.out.println("For additional information on how to run the code, see the online appendix or Github.");
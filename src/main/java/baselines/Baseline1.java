@@ -1,7 +1,15 @@
 package baselines;
 
+import help.Events;
+import help.IdSet;
+import help.Interner;
+import help.Options;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.TaskRunner;
 import help.Utilities;
 import lucene.Index;
+import lucene.Workload;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -10,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class creates a baseline for the support passage task.
@@ -25,8 +34,10 @@ public class Baseline1 {
     //HashMap where Key = queryID and Value = list of entities relevant for the queryID
     private HashMap<String,ArrayList<String>> entityRankings;
     private HashMap<String, ArrayList<String>> entityQrels;
-    // ArrayList of run strings
-    private ArrayList<String> runStrings;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private Workload workload;
 
     /**
      * Constructor.
@@ -52,45 +63,54 @@ public class Baseline1 {
         String entityRunFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
         String passageRunFilePath = trecCarDir + "/" + dataDir + "/" + passageRunFile;
         String outFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
-        this.runStrings = new ArrayList<>();
 
-        System.out.print("Reading entity rankings...");
-        entityRankings = Utilities.getRankings(entityRunFilePath);
+        System.out.print("Setting up index for use...");
+        searcher = new Index.Setup(indexDir).getSearcher();
         System.out.println("[Done].");
 
-        System.out.print("Reading passage rankings...");
-        paraRankings = Utilities.getRankings(passageRunFilePath);
-        System.out.println("[Done].");
+        workload = Workload.shared(searcher);
+        if (workload == null) {
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityRunFilePath);
+            System.out.println("[Done].");
 
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelFilePath);
-        System.out.println("[Done].");
+            System.out.print("Reading passage rankings...");
+            paraRankings = Utilities.getRankings(passageRunFilePath);
+            System.out.println("[Done].");
 
-        System.out.print("Setting up index for use...");
-        searcher = new Index.Setup(indexDir).getSearcher();
-        System.out.println("[Done].");
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelFilePath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
+        }
 
         makeBaseline(outFilePath);
 
     }
     /**
-     * Works in parallel using Java 8 parallelStreams.
-     * DEFAULT THREAD POOL SIE = NUMBER OF PROCESSORS
-     * USE : System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "N")
-     * to set the thread pool size
+     * Every query is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      */
 
     private  void makeBaseline(String outFilePath) {
         //Get the set of queries
-        Set<String> querySet = entityRankings.keySet();
+        // Sorted so that the run file is in query order
+        Collection<String> querySet = workload != null ? workload.queries() : new TreeSet<>(entityRankings.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
+
+        for (String q : querySet) {
+            tasks.add(Events.query(q, null, runStrings -> doTask(q, runStrings)));
+        }
 
-        // Do in parallel
-        querySet.parallelStream().forEach(this::doTask);
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("baseline1");
+        try (RunWriter writer = new RunWriter(outFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
 
-        // Create the run file
-        System.out.print("Writing to run file.....");
-        Utilities.writeFile(runStrings, outFilePath);
-        System.out.println("[Done].");
         System.out.println("Run file written at: " + outFilePath);
     }
 
@@ -102,23 +122,47 @@ public class Baseline1 {
      * then find the frequency of this entity in the pseudo-document and score the passages using this frequency information.
      *
      * @param queryId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
      */
 
-    private void doTask(String queryId) {
+    private void doTask(String queryId, RunLineFormatter runStrings) throws IOException {
 
-        if (entityRankings.containsKey(queryId) && entityQrels.containsKey(queryId)) {
+        Workload.Query work = workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, entityQrels, entityIds, null, null);
+
+        if (work != null) {
             // Get the list of entities retrieved for the query
-            ArrayList<String> retEntityList = entityRankings.get(queryId);
+            List<String> retEntityList = work.getRankedEntities();
             ArrayList<String> processedRetEntityList = Utilities.process(retEntityList);
 
-            // Get the list of entities relevant for the query
-            ArrayList<String> relEntityList = entityQrels.get(queryId);
+            // Dense IDs of the retrieved entities in the form in which they appear in the paragraphs
+            Interner processedIds = Interner.of(Collections.singletonList(processedRetEntityList));
+            IdSet processedRetEntitySet = IdSet.of(processedIds, processedRetEntityList);
+            // If two retrieved entities look the same after processing, each of them counts towards the score
+            boolean distinct = processedRetEntitySet.cardinality() == processedRetEntityList.size();
+
+            // Get the retrieved entities which are also relevant (in the order of the ranking),
+            // and their IDs in the form in which they appear in the paragraphs
+            IdSet relRetEntitySet = work.getEntities();
+            List<String> relRetEntityList = new ArrayList<>();
+            for (String e : retEntityList) {
+                if (relRetEntitySet.contains(e)) {
+                    relRetEntityList.add(e);
+                }
+            }
+            int[] relRetProcessedIds = new int[relRetEntityList.size()];
+            for (int i = 0; i < relRetProcessedIds.length; i++) {
+                relRetProcessedIds[i] = processedIds.id(Utilities.process(relRetEntityList.get(i)));
+            }
 
             //Get the list of paragraphs retrieved for the query
-            ArrayList<String> paraList = paraRankings.get(queryId);
+            ArrayList<String> paraList = work.getParaList();
 
 
-            HashMap<String, HashMap<String, Integer>> scoreMap = new HashMap<>();
+            // Sorted so that the run file is in query order
+            TreeMap<String, HashMap<String, Integer>> scoreMap = new TreeMap<>();
             Document doc = null;
             int score;
 
@@ -127,7 +171,7 @@ public class Baseline1 {
 
                 // Get the lucene document corresponding to the paragraph
                 try {
-                    doc = Index.Search.searchIndex("id", paraId, searcher);
+                    doc = Index.Search.searchIndex(Options.idField(), paraId, searcher);
                 } catch (IOException | ParseException e) {
                     e.printStackTrace();
                 }
@@ -144,14 +188,18 @@ public class Baseline1 {
                  * list1 = list of entities retrieved for the query
                  * list2 = list of entities in the paragraph
                  */
-                score = Utilities.intersection(processedRetEntityList, pEntList).size();
-                ArrayList<String> paraEntities = Utilities.unprocess(pEntList, retEntityList);
+                IdSet paraEntitySet = IdSet.of(processedIds, pEntList);
+                score = distinct
+                        ? processedRetEntitySet.andCardinality(paraEntitySet)
+                        : Utilities.intersection(processedRetEntityList, pEntList).size();
 
                 // Only do for relevant entities
-                paraEntities.retainAll(relEntityList);
-
                 HashMap<String, Integer> map = new HashMap<>();
-                for (String e : paraEntities) {
+                for (int i = 0; i < relRetProcessedIds.length; i++) {
+                    if (!paraEntitySet.contains(relRetProcessedIds[i])) {
+                        continue;
+                    }
+                    String e = relRetEntityList.get(i);
                     String query = queryId + "+" + e;
                     if (scoreMap.containsKey(query)) {
                         map = scoreMap.get(query);
@@ -160,7 +208,7 @@ public class Baseline1 {
                     scoreMap.put(query, map);
                 }
             }
-            makeRunStrings(scoreMap);
+            makeRunStrings(scoreMap, runStrings);
             System.out.println("Done query: " + queryId);
         }
     }
@@ -168,11 +216,11 @@ public class Baseline1 {
     /**
      * Make run file strings to write to the run file.
      * @param scoreMap Map Map where Key = queryd Value = Map of (paraID, paraScore)
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
 
-    private void makeRunStrings(@NotNull HashMap<String,
-                                HashMap<String, Integer>> scoreMap) {
-        String runFileString;
+    private void makeRunStrings(@NotNull Map<String, HashMap<String, Integer>> scoreMap,
+                                RunLineFormatter runStrings) {
         int rank , score;
         for (String queryId : scoreMap.keySet()) {
             rank = 1;
@@ -180,10 +228,7 @@ public class Baseline1 {
             for (String paraId : map.keySet()) {
                 score = map.get(paraId);
                 if (score != 0) {
-                    runFileString = queryId + " Q0 " + paraId + " " + rank
-                            + " " + score + " " + "Baseline1";
-                    //System.out.println(runFileString);
-                    runStrings.add(runFileString);
+                    runStrings.line(queryId, paraId, rank, score, "Baseline1");
                     rank++;
                 }
             }
@@ -1,13 +1,21 @@
 package baselines;
 
+import help.Events;
+import help.IdNormalizer;
+import help.Interner;
+import help.Options;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.TaskRunner;
 import help.Utilities;
 import lucene.Index;
+import lucene.ParagraphIds;
+import lucene.Workload;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
@@ -18,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class makes a baseline for support passage retrieval.
@@ -36,16 +45,18 @@ public class Baseline2 {
     private HashMap<String,ArrayList<String>> entityRankings;
 
     private HashMap<String, ArrayList<String>> entityQrels;
-
-    // ArrayList of run strings
-    private ArrayList<String> runStrings;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private Workload workload;
 
     // Fields to search
     private List<String> searchFields;
 
-    // List of paragraphs already retrieved.
-    // Only paragraphs not in this list are added to the runfile.
-    private ArrayList<String> paraID;
+    // Set of paragraphs already written.
+    // Only paragraphs not in this set are added to the runfile.
+    // This is only used by the thread writing the run file, in query order.
+    private Set<String> paraID;
 
     /**
      * Constructor.
@@ -73,22 +84,31 @@ public class Baseline2 {
 
         String entityRunFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
         String outFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
-        this.runStrings = new ArrayList<>();
-        this.paraID = new ArrayList<>();
+        this.paraID = new HashSet<>();
         this.searchFields = searchFields;
 
         System.out.print("Setting up Index for use....");
         this.searcher = new Index.Setup(indexDir, "Text", analyzer, similarity).getSearcher();
         System.out.println("[Done].");
 
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelFilePath);
-        System.out.println("[Done].");
-
-        System.out.print("Reading entity rankings...");
-        entityRankings = Utilities.getRankings(entityRunFilePath);
-        this.queryList = new ArrayList<>(entityRankings.keySet());
-        System.out.println("[Done]");
+        // Only the entities of the workload are used, not the paragraphs,
+        // so the workload may have been compiled against another paragraph index
+        workload = Workload.shared();
+        if (workload != null) {
+            System.out.println("Using the workload of " + workload.queries().size() + " queries.");
+            this.queryList = new ArrayList<>(workload.queries());
+        } else {
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelFilePath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
+
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityRunFilePath);
+            // Sorted so that the run file is in query order
+            this.queryList = new ArrayList<>(new TreeSet<>(entityRankings.keySet()));
+            System.out.println("[Done]");
+        }
 
         makeBaseline(outFilePath);
 
@@ -96,42 +116,55 @@ public class Baseline2 {
 
     /**
      * Do the baseline.
+     * Every query is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      * @param outFilePath String Path to the output file.
      * @throws IOException Exception
      */
 
     private void makeBaseline(String outFilePath) throws IOException {
-        //Do in parallel
-        queryList.parallelStream().forEach(this::doTask);
+        List<TaskRunner.Task> tasks = new ArrayList<>();
+        for (String q : queryList) {
+            tasks.add(Events.query(q, null, runStrings -> doTask(q, runStrings)));
+        }
 
-        // Create the run file
-        System.out.print("Writing to run file...");
-        Utilities.writeFile(runStrings, outFilePath);
-        System.out.println("[Done].");
+        //Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("baseline2");
+        try (RunWriter writer = new RunWriter(outFilePath, this::isNewParagraph)) {
+            TaskRunner.run(tasks, executor, writer);
+        }
+        executor.shutdown();
         System.out.println("Run file written at: " + outFilePath);
     }
 
+    /**
+     * Check if the paragraph in the run file string has not been written yet.
+     * @param runFileString String Run file string.
+     * @return Boolean True if the paragraph is new, false otherwise.
+     */
+    private boolean isNewParagraph(@NotNull String runFileString) {
+        return paraID.add(runFileString.split(" ")[2]);
+    }
+
     /**
      * Do the actual work.
      * @param queryID String Query
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException Exception
      */
-    private void doTask(String queryID) {
-
-        if (entityRankings.containsKey(queryID) && entityQrels.containsKey(queryID)) {
-            // Get the set of entities retrieved for the query
-            Set<String> retEntitySet = new HashSet<>(entityRankings.get(queryID));
+    private void doTask(String queryID, RunLineFormatter runStrings) throws IOException {
 
-            // Get the set of entities relevant for the query
-            Set<String> relEntitySet = new HashSet<>(entityQrels.get(queryID));
+        Workload.Query work = workload != null
+                ? workload.query(queryID)
+                : Workload.Query.compile(queryID, entityRankings, Collections.emptyMap(), entityQrels, entityIds,
+                        null, null);
 
-            // Get the number of retrieved entities which are also relevant
+        if (work != null) {
+            // Get the retrieved entities which are also relevant
             // Finding support passage for non-relevant entities makes no sense!!
-
-            retEntitySet.retainAll(relEntitySet);
-
-            for (String entityID : retEntitySet) {
+            for (String entityID : work.getEntities()) {
                 try {
-                    search(queryID, entityID);
+                    search(queryID, entityID, runStrings);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -144,18 +177,20 @@ public class Baseline2 {
      * Search the Lucene index for Query = QueryID + EntityID
      * @param queryID String
      * @param entityID String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      * @throws IOException Exception
      */
     private void search(@NotNull String queryID,
-                        @NotNull String entityID) throws IOException {
-        String query = queryID.substring(queryID.indexOf(":")+1).replaceAll("%20"," ");
-        String entity = entityID.substring(entityID.indexOf(":")+1).replaceAll("%20"," ");
+                        @NotNull String entityID,
+                        RunLineFormatter runStrings) throws IOException {
+        String query = IdNormalizer.title(queryID);
+        String entity = IdNormalizer.title(entityID);
 
         BooleanQuery booleanQuery = toQuery(query, entity);
         TopDocs topDocs = Index.Search.searchIndex(booleanQuery,100);
 
         //System.out.println(topDocs.totalHits);
-        createRunFile(queryID + "+" + entityID, topDocs);
+        createRunFile(queryID + "+" + entityID, topDocs, runStrings);
     }
 
     /**
@@ -163,28 +198,25 @@ public class Baseline2 {
      * Run file string format: $queryId Q0 $paragraphId $rank $score $name
      * @param queryID String ID of the query
      * @param topDocs TopDocs Top hits for the query
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      * @throws IOException Exception
      */
     private void createRunFile(String queryID,
-                               @NotNull TopDocs topDocs) throws IOException {
+                               @NotNull TopDocs topDocs,
+                               RunLineFormatter runStrings) throws IOException {
         ScoreDoc[] scoreDocs = topDocs.scoreDocs;
         if (scoreDocs.length == 0) {
             System.out.println("Got nothing for: " + queryID);
             return;
         }
-        Document d;
-        String runFileString;
+        // Only the paragraph IDs are needed, not the whole documents
+        String[] paraIds = ParagraphIds.get(scoreDocs, Options.idField("Id"), searcher);
 
         for (int i = 0; i < scoreDocs.length; i++) {
-            d = searcher.doc(scoreDocs[i].doc);
-            String pID = d.getField("Id").stringValue();
-
-            runFileString = queryID + " Q0 " + pID + " " + (i + 1) + " " + topDocs.scoreDocs[i].score + " " + "Baseline2";
-            if(!paraID.contains(pID)) {
-                paraID.add(pID);
-                runStrings.add(runFileString);
-                //System.out.println(runFileString);
-            }
+            String pID = paraIds[i];
+
+            // Paragraphs already written for an earlier query are dropped by the run writer (see isNewParagraph)
+            runStrings.line(queryID, pID, i + 1, topDocs.scoreDocs[i].score, "Baseline2");
         }
     }
 
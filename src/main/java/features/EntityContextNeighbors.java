@@ -1,19 +1,34 @@
 package features;
 
+import help.CoOccurrenceCounter;
+import help.Events;
+import help.IdSet;
+import help.Interner;
+import help.Limits;
+import help.Options;
 import help.PseudoDocument;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.Scorer;
+import help.TaskRunner;
+import help.TopK;
 import help.Utilities;
+import lucene.CoOccurrenceIndex;
 import lucene.Index;
+import lucene.Workload;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class scores support passages for a query-entity pair using other frequently co-occurring entities.
@@ -25,15 +40,21 @@ import java.util.*;
  * @version 02/25/2019
  */
 
-public class EntityContextNeighbors {
+public class EntityContextNeighbors implements Scorer {
     private final IndexSearcher searcher;
     //HashMap where Key = queryID and Value = list of paragraphs relevant for the queryID
-    private final HashMap<String, ArrayList<String>> paraRankings;
+    private HashMap<String, ArrayList<String>> paraRankings;
     //HashMap where Key = queryID and Value = list of entities relevant for the queryID
-    private final HashMap<String,ArrayList<String>> entityRankings;
-    private final HashMap<String, ArrayList<String>> entityQrels;
-    // ArrayList of run strings
-    private final ArrayList<String> runStrings;
+    private HashMap<String,ArrayList<String>> entityRankings;
+    private HashMap<String, ArrayList<String>> entityQrels;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private final Workload workload;
+    // Corpus-wide co-occurrence counts (null if not used)
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    // Whether to display the top passages of every entity and wait for a key (only when writing a run file)
+    private boolean interactive = false;
 
     /**
      * Constructor.
@@ -57,62 +78,96 @@ public class EntityContextNeighbors {
                                   String outFile,
                                   String entityQrelFilePath) throws IOException {
 
+        this(indexDir,
+                trecCarDir + "/" + dataDir + "/" + passageRunFile,
+                trecCarDir + "/" + dataDir + "/" + entityRunFile,
+                entityQrelFilePath);
 
-        String entityRunFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
-        String passageRunFilePath = trecCarDir + "/" + dataDir + "/" + passageRunFile;
         String outFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
-        this.runStrings = new ArrayList<>();
+        interactive = true;
 
-        System.out.print("Reading entity rankings...");
-        entityRankings = Utilities.getRankings(entityRunFilePath);
-        System.out.println("[Done].");
+        feature(outFilePath);
 
-        System.out.print("Reading passage rankings...");
-        paraRankings = Utilities.getRankings(passageRunFilePath);
-        System.out.println("[Done].");
+    }
 
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelFilePath);
-        System.out.println("[Done].");
+    /**
+     * Constructor which only loads the rankings (or the workload) and the index, to score query-entity pairs on request
+     * (see {@link #score(String, String, RunLineFormatter)}).
+     * @param indexDir String Path to the index directory.
+     * @param passageRunFilePath String Path to the passage run file.
+     * @param entityRunFilePath String Path to the entity run file.
+     * @param entityQrelFilePath String Path to the entity ground truth file.
+     * @throws IOException IOException
+     */
+
+    public EntityContextNeighbors(String indexDir,
+                                  String passageRunFilePath,
+                                  String entityRunFilePath,
+                                  String entityQrelFilePath) throws IOException {
 
         System.out.print("Setting up index for use...");
         searcher = new Index.Setup(indexDir).getSearcher();
         System.out.println("[Done].");
 
-        feature(outFilePath);
+        workload = Workload.shared(searcher);
+        if (workload == null) {
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityRunFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading passage rankings...");
+            paraRankings = Utilities.getRankings(passageRunFilePath);
+            System.out.println("[Done].");
 
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelFilePath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
+        }
+
+        coOccurrenceIndex = CoOccurrenceIndex.fromOptions(searcher.getIndexReader());
     }
 
     /**
      * Method to calculate the feature.
-     * Works in parallel using Java 8 parallelStreams.
-     * DEFAULT THREAD POOL SIE = NUMBER OF PROCESSORS
-     * USE : System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "N") to set the thread pool size
+     * Every query is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      */
 
     private  void feature(String outFilePath) {
         //Get the set of queries
-        Set<String> querySet = entityRankings.keySet();
+        // Sorted so that the run file is in query order
+        Collection<String> querySet = workload != null ? workload.queries() : new TreeSet<>(entityRankings.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
 
-        // Do in parallel
-        querySet.parallelStream().forEach(this::doTask);
-        //ProgressBar pb = new ProgressBar("Progress", querySet.size());
-
-        // Do in serial
-//        for (String q : querySet) {
-//              doTask(q);
-//            //pb.step();
-//        }
-//        pb.close();
+        for (String q : querySet) {
+            tasks.add(Events.query(q, null, runStrings -> doTask(q, null, runStrings)));
+        }
 
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("ecn");
+        try (RunWriter writer = new RunWriter(outFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
 
-        // Create the run file
-        System.out.print("Writing to run file.....");
-        Utilities.writeFile(runStrings, outFilePath);
-        System.out.println("[Done].");
         System.out.println("Run file written at: " + outFilePath);
     }
 
+    /**
+     * Score the support passages of a query-entity pair.
+     * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     */
+
+    @Override
+    public void score(String queryId, String entityId, RunLineFormatter runStrings) throws IOException {
+        doTask(queryId, entityId, runStrings);
+    }
+
     /**
      * Helper method.
      * For every query, look at all the entities relevant for the query.
@@ -121,31 +176,32 @@ public class EntityContextNeighbors {
      * then find the frequency of this entity in the pseudo-document and score the passages using this frequency information.
      *
      * @param queryId String
+     * @param onlyEntityId String Only score this entity (or null to score all the entities of the query).
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
 
-    private void doTask(String queryId) {
+    private void doTask(String queryId, @Nullable String onlyEntityId, RunLineFormatter runStrings) throws IOException {
         ArrayList<String> pseudoDocEntityList;
         Map<String, Double> freqDist = new HashMap<>();
 
-        if (entityRankings.containsKey(queryId) && entityQrels.containsKey(queryId)) {
-            ArrayList<String> processedEntityList = Utilities.process(entityRankings.get(queryId));
+        Workload.Query work = workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, entityQrels, entityIds, null, null);
 
-            // Get the set of entities retrieved for the query
-            Set<String> retEntitySet = new HashSet<>(entityRankings.get(queryId));
+        if (work != null && work.hasParagraphs()) {
+            Set<String> processedEntitySet = new HashSet<>(Utilities.process(work.getRankedEntities()));
 
-            // Get the set of entities relevant for the query
-            Set<String> relEntitySet = new HashSet<>(entityQrels.get(queryId));
-
-            // Get the number of retrieved entities which are also relevant
+            // Get the retrieved entities which are also relevant
             // Finding support passage for non-relevant entities makes no sense!!
-
-            retEntitySet.retainAll(relEntitySet);
+            IdSet retEntitySet = work.getEntities();
 
             // Get the list of passages retrieved for the query
-            ArrayList<String> paraList = paraRankings.get(queryId);
+            ArrayList<String> paraList = work.getParaList();
             // For every entity in this list of relevant entities do
             for (String entityId : retEntitySet) {
-
+                if (onlyEntityId != null && !onlyEntityId.equals(entityId)) {
+                    continue;
+                }
 
                 // Create a pseudo-document for the entity
                 PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
@@ -155,12 +211,14 @@ public class EntityContextNeighbors {
                     // Get the list of entities that co-occur with this entity in the pseudo-document
                     pseudoDocEntityList = d.getEntityList();
 
-                    // Find the frequency distribution over the co-occurring entities
-                    freqDist = getDistribution(pseudoDocEntityList, processedEntityList);
+                    try (Limits.Permit ignored = Limits.enter(Limits.Stage.SCORING)) {
+                        // Find the frequency distribution over the co-occurring entities
+                        freqDist = getDistribution(entityId, pseudoDocEntityList, processedEntitySet);
 
-                    // Score the passages in the pseudo-document for this entity using the frequency distribution of
-                    // co-occurring entities
-                    scoreDoc(queryId, d, freqDist);
+                        // Score the passages in the pseudo-document for this entity using the frequency distribution
+                        // of co-occurring entities
+                        scoreDoc(queryId, d, freqDist, runStrings);
+                    }
                 }
             }
             System.out.println("Done query: " + queryId);
@@ -168,21 +226,19 @@ public class EntityContextNeighbors {
     }
 
     @NotNull
-    private Map<String, Double> getDistribution(@NotNull ArrayList<String> pseudoDocEntityList,
-                                                ArrayList<String> processedEntityList) {
-
-        HashMap<String, Integer> freqMap = new HashMap<>();
+    private Map<String, Double> getDistribution(String entityId,
+                                                @NotNull ArrayList<String> pseudoDocEntityList,
+                                                Set<String> processedEntitySet) {
 
+        if (coOccurrenceIndex != null) {
+            // Use the corpus-wide counts instead of the counts in the pseudo-document
+            return toDistribution(coOccurrenceIndex.counts(Utilities.process(entityId), processedEntitySet));
+        }
 
-        // For every co-occurring entity do
-        for (String e : pseudoDocEntityList) {
-            // If the entity also occurs in the list of entities relevant for the query then
-            if (processedEntityList.contains(e)) {
+        // For every co-occurring entity which also occurs in the list of entities relevant for the query,
+        // find the frequency of this entity in the pseudo-document (in one pass over the pseudo-document)
+        HashMap<String, Integer> freqMap = CoOccurrenceCounter.count(pseudoDocEntityList, processedEntitySet);
 
-                // Find the frequency of this entity in the pseudo-document and store it
-                freqMap.put(e, Utilities.frequency(e, pseudoDocEntityList));
-            }
-        }
         return  toDistribution(freqMap);
     }
 
@@ -202,7 +258,10 @@ public class EntityContextNeighbors {
         return normRankings;
     }
 
-    private void scoreDoc(String queryId, @NotNull PseudoDocument d, Map<String, Double> freqMap) {
+    private void scoreDoc(String queryId,
+                          @NotNull PseudoDocument d,
+                          Map<String, Double> freqMap,
+                          RunLineFormatter runStrings) {
         // Get the entity corresponding to the pseudo-document
         String entityId = d.getEntity();
         //freqMap = entFreqMap.get(entityId);
@@ -214,7 +273,7 @@ public class EntityContextNeighbors {
         for (Document doc : documents) {
 
             // Get the paragraph id of the document
-            String paraId = doc.getField("id").stringValue();
+            String paraId = doc.getField(Options.idField()).stringValue();
 
             // Get the score of the document
             double score = getParaScore(doc, freqMap);
@@ -222,16 +281,19 @@ public class EntityContextNeighbors {
             // Store the paragraph id and score in a HashMap
             scoreMap.put(paraId, score);
         }
-        display(entityId, freqMap, scoreMap);
-        makeRunStrings(queryId, entityId, scoreMap);
+        if (interactive) {
+            display(entityId, freqMap, scoreMap);
+        }
+        makeRunStrings(queryId, entityId, scoreMap, runStrings);
 
     }
     private void display(String entity,
                          Map<String, Double> freqMap,
                          HashMap<String, Double> scoreMap) {
         BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-        LinkedHashMap<String, Double> sortedFreqMap = Utilities.sortByValueDescending(freqMap);
-        LinkedHashMap<String, Double> sortedScoreMap = Utilities.sortByValueDescending(scoreMap);
+        // Only the top 10 are displayed
+        LinkedHashMap<String, Double> sortedFreqMap = TopK.topByValue(freqMap, 10);
+        LinkedHashMap<String, Double> sortedScoreMap = TopK.topByValue(scoreMap, 10);
         System.out.println("Top 10 frequently co-occurring entities with " + entity);
         int i = 1;
         for (String e : sortedFreqMap.keySet()) {
@@ -249,7 +311,7 @@ public class EntityContextNeighbors {
         for (String p : sortedScoreMap.keySet()) {
             Document doc = null;
             try {
-                doc = Index.Search.searchIndex("id", p, searcher);
+                doc = Index.Search.searchIndex(Options.idField(), p, searcher);
             } catch (IOException | ParseException e) {
                 e.printStackTrace();
             }
@@ -313,19 +375,20 @@ public class EntityContextNeighbors {
      *
      * @param queryId  Query ID
      * @param scoreMap HashMap of the scores for each paragraph
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
 
-    private void makeRunStrings(String queryId, String entityId, HashMap<String, Double> scoreMap) {
+    private void makeRunStrings(String queryId,
+                                String entityId,
+                                HashMap<String, Double> scoreMap,
+                                RunLineFormatter runStrings) {
         LinkedHashMap<String, Double> paraScore = Utilities.sortByValueDescending(scoreMap);
-        String runFileString;
         int rank = 1;
 
         for (String paraId : paraScore.keySet()) {
             double score = paraScore.get(paraId);
             if (score > 0) {
-                runFileString = queryId + "+" +entityId + " Q0 " + paraId + " " + rank
-                        + " " + score + " " + "ECN";
-                runStrings.add(runFileString);
+                runStrings.line(queryId, entityId, paraId, rank, score, "ECN");
                 rank++;
             }
 
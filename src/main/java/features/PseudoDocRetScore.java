@@ -1,9 +1,18 @@
 package features;
 
+import help.Events;
+import help.Interner;
+import help.Limits;
+import help.Options;
 import help.PseudoDocument;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.Scorer;
+import help.TaskRunner;
 import help.Utilities;
 import lucene.Index;
 import lucene.RAMIndex;
+import lucene.Workload;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
@@ -12,11 +21,13 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class scores a support passage for a query-entity pair by summing over the retrieval scores
@@ -24,15 +35,17 @@ import java.util.*;
  * @author Shubham Chatterjee
  * @version 02/25/2019
  */
-public class PseudoDocRetScore {
+public class PseudoDocRetScore implements Scorer {
     private IndexSearcher searcher;
     //HashMap where Key = queryID and Value = list of paragraphs relevant for the queryID
     private HashMap<String, ArrayList<String>> paraRankings;
     //HashMap where Key = queryID and Value = list of entities relevant for the queryID
     private HashMap<String,ArrayList<String>> entityRankings;
     private HashMap<String, ArrayList<String>> entityQrels;
-    // ArrayList of run strings
-    private ArrayList<String> runStrings;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private Workload workload;
 
     /**
      * Constructor.
@@ -56,125 +69,163 @@ public class PseudoDocRetScore {
                              String outFile,
                              String entityQrelFilePath) throws IOException {
 
-        String entityRunFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
-        String passageRunFilePath = trecCarDir + "/" + dataDir + "/" + passageRunFile;
+        this(indexDir,
+                trecCarDir + "/" + dataDir + "/" + passageRunFile,
+                trecCarDir + "/" + dataDir + "/" + entityRunFile,
+                entityQrelFilePath);
+
         String outFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
-        this.runStrings = new ArrayList<>();
 
-        System.out.print("Reading entity rankings...");
-        entityRankings = Utilities.getRankings(entityRunFilePath);
-        System.out.println("[Done].");
+        feature(outFilePath);
 
-        System.out.print("Reading passage rankings...");
-        paraRankings = Utilities.getRankings(passageRunFilePath);
-        System.out.println("[Done].");
+    }
 
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelFilePath);
-        System.out.println("[Done].");
+    /**
+     * Constructor which only loads the rankings (or the workload) and the index, to score query-entity pairs on
+     * request (see {@link #score(String, String, RunLineFormatter)}).
+     * @param indexDir String Path to the index directory.
+     * @param passageRunFilePath String Path to the passage run file.
+     * @param entityRunFilePath String Path to the entity run file.
+     * @param entityQrelFilePath String Path to the entity ground truth file.
+     * @throws IOException IOException
+     */
+
+    public PseudoDocRetScore(String indexDir,
+                             String passageRunFilePath,
+                             String entityRunFilePath,
+                             String entityQrelFilePath) throws IOException {
 
         System.out.print("Setting up index for use...");
         searcher = new Index.Setup(indexDir).getSearcher();
         System.out.println("[Done].");
 
-        feature(outFilePath);
+        workload = Workload.shared(searcher);
+        if (workload == null) {
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityRunFilePath);
+            System.out.println("[Done].");
 
+            System.out.print("Reading passage rankings...");
+            paraRankings = Utilities.getRankings(passageRunFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelFilePath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
+        }
     }
 
     /**
      * Method to calculate the feature.
+     * Every query is a separate task because the passages of a query are scored using an in-memory index
+     * of the pseudo-documents of all its entities. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      * @throws IOException
      */
     private  void feature(String outFilePath) throws IOException {
         //Get the set of queries
-        Set<String> querySet = entityRankings.keySet();
+        // Sorted so that the run file is in query order
+        Collection<String> querySet = workload != null ? workload.queries() : new TreeSet<>(entityRankings.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
 
         for (String q : querySet) {
-            doTask(q);
+            tasks.add(Events.query(q, null, runStrings -> doTask(q, null, runStrings)));
         }
 
-        // Create the run file
-        System.out.print("Writing to run file.....");
-        Utilities.writeFile(runStrings, outFilePath);
-        System.out.println("[Done].");
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("pdrs");
+        try (RunWriter writer = new RunWriter(outFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
+
         System.out.println("Run file written at: " + outFilePath);
     }
 
     /**
-     * Helper method.
+     * Score the support passages of a query-entity pair.
+     * The passages of all the entities of the query are scored together, but only the run strings of the
+     * entity are formatted.
      * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      * @throws IOException
      */
-    private void doTask(String queryId) throws IOException {
-
-        if (entityRankings.containsKey(queryId) && entityQrels.containsKey(queryId)) {
-
-            // Get the set of entities retrieved for the query
-            Set<String> retEntitySet = new HashSet<>(entityRankings.get(queryId));
+    @Override
+    public void score(String queryId, String entityId, RunLineFormatter runStrings) throws IOException {
+        doTask(queryId, entityId, runStrings);
+    }
 
-            // Get the set of entities relevant for the query
-            Set<String> relEntitySet = new HashSet<>(entityQrels.get(queryId));
+    /**
+     * Helper method.
+     * @param queryId String
+     * @param onlyEntityId String Only format the run strings of this entity (or null for all the entities of the query).
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException
+     */
+    private void doTask(String queryId, @Nullable String onlyEntityId, RunLineFormatter runStrings) throws IOException {
 
-            // Get the number of retrieved entities which are also relevant
-            // Finding support passage for non-relevant entities makes no sense!!
+        // Get the retrieved entities which are also relevant (in sorted order) and the passages retrieved for the query
+        Workload.Query work = workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, entityQrels, entityIds, null, null);
 
-            retEntitySet.retainAll(relEntitySet);
+        if (work != null && (onlyEntityId == null || work.getEntities().contains(onlyEntityId))) {
 
-            // Get the list of passages retrieved for the query
-            ArrayList<String> paraList = paraRankings.get(queryId);
             ArrayList<Document> queryDocs = new ArrayList<>();
-            HashMap<String, PseudoDocument> entityToPseudoDocMap = new HashMap<>();
+            HashMap<String, PseudoDocument> entityToPseudoDocMap = new LinkedHashMap<>();
             Map<String, Float> documentScore = new HashMap<>();
 
             // Get the list of pseudo-documents and the map of entity to pseudo-documents for the query
-            getPseudoDocList(retEntitySet, queryDocs, paraList, entityToPseudoDocMap);
-
-            // Build the index
-            // First create the IndexWriter
-            IndexWriter iw = RAMIndex.createWriter(new EnglishAnalyzer());
-            // Now create the index
-            RAMIndex.createIndex(queryDocs, iw);
-            // Create the IndexSearcher and QueryParser
-            IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
-            QueryParser qp = RAMIndex.createParser("text", new EnglishAnalyzer());
-            // Search the index for the query
-            // But first process the query
-            String query = queryId
-                    .substring(queryId.indexOf(":") + 1)          // remove enwiki: from query
-                    .replaceAll("%20", " ")     // replace %20 with whitespace
-                    .toLowerCase();                            //  convert query to lowercase
-            // Now search the query
-            LinkedHashMap<Document, Float> results = Utilities.sortByValueDescending(RAMIndex.searchIndex(query, 100, is, qp));
-            if (!results.isEmpty()) {
-                documentScore = Utilities.sortByValueDescending(scoreParas(results, documentScore, entityToPseudoDocMap));
-                makeRunStrings(queryId, documentScore, entityToPseudoDocMap);
-            } else {
-                System.out.printf("No results found for query %s. Cannot score documents.", queryId);
+            getPseudoDocList(work, queryDocs, entityToPseudoDocMap);
+
+            // Building and searching the index of the pseudo-documents is CPU-heavy
+            try (Limits.Permit ignored = Limits.enter(Limits.Stage.SCORING)) {
+                // Build the index
+                // First create the IndexWriter
+                IndexWriter iw = RAMIndex.createWriter(new EnglishAnalyzer());
+                // Now create the index
+                RAMIndex.createIndex(queryDocs, iw);
+                // Create the IndexSearcher and QueryParser
+                IndexSearcher is = RAMIndex.createSearcher(new BM25Similarity(), iw);
+                QueryParser qp = RAMIndex.createParser("text", new EnglishAnalyzer());
+                // Search the index for the query
+                // But first process the query
+                String query = work.getText();
+                // Now search the query
+                LinkedHashMap<Document, Float> results = Utilities.sortByValueDescending(RAMIndex.searchIndex(query, 100, is, qp));
+                if (!results.isEmpty()) {
+                    documentScore = Utilities.sortByValueDescending(scoreParas(results, documentScore, entityToPseudoDocMap));
+                    makeRunStrings(queryId, onlyEntityId, documentScore, entityToPseudoDocMap, runStrings);
+                } else {
+                    System.out.printf("No results found for query %s. Cannot score documents.", queryId);
+                }
+                System.out.println("Done query: " + queryId);
+                RAMIndex.close(iw);
             }
-            System.out.println("Done query: " + queryId);
-            RAMIndex.close(iw);
         }
     }
 
     /**
      * Method to find the set of pseudo-documents for the query and the map from entity to pseudo-document.
-     * @param retEntitySet Set Set of entities retrieved for the quert which are also relevant
-     *                     (according to entity ground truth data)
+     * @param work Workload.Query Work of the query: the entities retrieved for the query which are also relevant
+     *             (according to entity ground truth data) and the passages retrieved for the query in the candidate pool.
      * @param queryDocs List List of pseudo-documents for the query.
-     * @param paraList List List of passages retrieved for the query in the candidate pool.
      * @param entityToPseudoDocMap Map Map where Key = entityID and Value = PseudoDocument for the entity.
      */
 
-    private void getPseudoDocList(@NotNull Set<String> retEntitySet,
+    private void getPseudoDocList(@NotNull Workload.Query work,
                                   ArrayList<Document> queryDocs,
-                                  ArrayList<String> paraList,
                                   HashMap<String, PseudoDocument>  entityToPseudoDocMap) {
         // For every entity in this list of relevant entities do
-        for (String entityId : retEntitySet) {
+        for (String entityId : work.getEntities()) {
             //System.out.println(entityId);
 
             // Create a pseudo-document for the entity
-            PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
+            PseudoDocument d = Utilities.createPseudoDocument(entityId, work, searcher);
             if (d != null) {
                 // Add to HashMap where Key = entityID and Value = Pseudo-document
                 entityToPseudoDocMap.put(entityId, d);
@@ -191,17 +242,23 @@ public class PseudoDocRetScore {
     /**
      * Make the run file strings.
      * @param queryId String
-     *
+     * @param onlyEntityId String Only format the run strings of this entity (or null for all the entities).
      * @param entityToPseudoDocMap HashMap where Key = entity and Value = Pseudo-document for this entity
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
 
     private void makeRunStrings(String queryId,
+                                @Nullable String onlyEntityId,
                                 Map<String, Float> scores,
-                                @NotNull Map<String, PseudoDocument> entityToPseudoDocMap) {
+                                @NotNull Map<String, PseudoDocument> entityToPseudoDocMap,
+                                RunLineFormatter runStrings) {
 
 
         // For every entity do
         for (String entityId : entityToPseudoDocMap.keySet()) {
+            if (onlyEntityId != null && !onlyEntityId.equals(entityId)) {
+                continue;
+            }
             // Get the pseudo-document for the entity
             PseudoDocument doc = entityToPseudoDocMap.get(entityId);
             // Get the documents in the pseudo-document
@@ -209,25 +266,21 @@ public class PseudoDocRetScore {
             Map<String, Float> docScores = new LinkedHashMap<>();
             getPseudoDocScores(docList, docScores, scores);
             docScores = Utilities.sortByValueDescending(docScores);
-            makeRunStrings(queryId, entityId, docScores);
+            makeRunStrings(queryId, entityId, docScores, runStrings);
         }
     }
 
     private void makeRunStrings(String queryID,
                                 String entityID,
-                                @NotNull Map<String, Float> docScores) {
+                                @NotNull Map<String, Float> docScores,
+                                RunLineFormatter runStrings) {
 
-        String query = queryID + "+" + entityID;
-        String runFileString;
         Set<String> paraSet = docScores.keySet();
         int rank = 1;
         float score;
         for (String paraID : paraSet) {
             score = docScores.get(paraID);
-            runFileString = query + " Q0 " + paraID + " " + rank++
-                    + " " + score + " " + "pseudo-doc-ret-score";
-            runStrings.add(runFileString);
-            //System.out.println(runFileString);
+            runStrings.line(queryID, entityID, paraID, rank++, score, "pseudo-doc-ret-score");
         }
     }
 
@@ -237,7 +290,7 @@ public class PseudoDocRetScore {
         String paraId;
         float score;
         for (Document d : docList) {
-            paraId = d.getField("id").stringValue();
+            paraId = d.getField(Options.idField()).stringValue();
             if (scores.containsKey(paraId)) {
                 score = scores.get(paraId);
                 docScores.put(paraId, score);
@@ -280,7 +333,7 @@ public class PseudoDocRetScore {
                 // For every document in this list of documents do
                 for (Document document : documentList) {
                     float s = 0;
-                    String id = document.get("id");
+                    String id = document.get(Options.idField());
                     // If the document is already has a score get that score and add it to the new score
                     // Else add it to the score map
                     if (documentScore.containsKey(id)) {
@@ -1,13 +1,27 @@
 package features;
 
+import help.CoOccurrenceCounter;
 import help.EntityRMExpand;
+import help.Events;
+import help.IdSet;
+import help.Metrics;
+import help.Interner;
+import help.Limits;
+import help.Options;
 import help.PseudoDocument;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.Scorer;
+import help.TaskRunner;
+import help.TopK;
 import help.Utilities;
+import lucene.CoOccurrenceIndex;
 import lucene.Index;
+import lucene.ParagraphIds;
+import lucene.Workload;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
@@ -17,26 +31,31 @@ import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
-public class QEEntities {
+public class QEEntities implements Scorer {
     private final IndexSearcher searcher;
 
     //HashMap where Key = queryID and Value = list of paragraphs relevant for the queryID
-    private final HashMap<String, ArrayList<String>> paraRankings;
+    private HashMap<String, ArrayList<String>> paraRankings;
 
     //HashMap where Key = queryID and Value = list of entities relevant for the queryID
-    private final HashMap<String,ArrayList<String>> entityRankings;
+    private HashMap<String,ArrayList<String>> entityRankings;
 
-    private final HashMap<String, ArrayList<String>> entityQrels;
+    private HashMap<String, ArrayList<String>> entityQrels;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private final Workload workload;
 
-    // ArrayList of run strings
-    private final ArrayList<String> runStrings = new ArrayList<>();
     private final int takeKEntities; // Number of query expansion terms
     private final boolean omitQueryTerms; // Omit query terms or not when calculating expansion terms
     private final Analyzer analyzer; // Analyzer to use
+    private final CoOccurrenceIndex coOccurrenceIndex; // Corpus-wide co-occurrence counts (null if not used)
 
     /**
      * Constructor.
@@ -67,132 +86,212 @@ public class QEEntities {
                       Analyzer analyzer,
                       Similarity similarity) {
 
+        this(indexDir,
+                trecCarDir + "/" + dataDir + "/" + paraRunFile,
+                trecCarDir + "/" + dataDir + "/" + entityRunFile,
+                entityQrelPath,
+                takeKEntities,
+                omitQueryTerms,
+                analyzer,
+                similarity);
 
-        this.takeKEntities = takeKEntities;
-        this.analyzer = analyzer;
-        this.omitQueryTerms = omitQueryTerms;
-
-        String entityFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
-        String paraFilePath = trecCarDir + "/" + dataDir + "/" + paraRunFile;
         String outputFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
 
-        System.out.print("Reading entity rankings...");
-        entityRankings = Utilities.getRankings(entityFilePath);
-        System.out.println("[Done].");
+        feature(outputFilePath);
+    }
 
-        System.out.print("Reading paragraph rankings...");
-        paraRankings = Utilities.getRankings(paraFilePath);
-        System.out.println("[Done].");
+    /**
+     * Constructor which only loads the rankings (or the workload) and the index, to score query-entity pairs on request
+     * (see {@link #score(String, String, RunLineFormatter)}).
+     * @param indexDir String Path to the index directory.
+     * @param paraFilePath String Path to the passage run file.
+     * @param entityFilePath String Path to the entity run file.
+     * @param entityQrelPath String Path to the entity ground truth file.
+     * @param takeKEntities Integer Top K entities for query expansion.
+     * @param omitQueryTerms Boolean Whether or not to omit query terms during expansion.
+     * @param analyzer Analyzer Type of analyzer to use.
+     * @param similarity Similarity Type of similarity to use.
+     */
 
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelPath);
-        System.out.println("[Done].");
+    public QEEntities(String indexDir,
+                      String paraFilePath,
+                      String entityFilePath,
+                      String entityQrelPath,
+                      int takeKEntities,
+                      boolean omitQueryTerms,
+                      Analyzer analyzer,
+                      Similarity similarity) {
+
+        this.takeKEntities = takeKEntities;
+        this.analyzer = analyzer;
+        this.omitQueryTerms = omitQueryTerms;
 
         System.out.print("Setting up index for use...");
         searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
         System.out.println("[Done].");
 
-        feature(outputFilePath);
+        workload = Workload.shared(searcher);
+        if (workload == null) {
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading paragraph rankings...");
+            paraRankings = Utilities.getRankings(paraFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelPath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
+        }
+
+        coOccurrenceIndex = CoOccurrenceIndex.fromOptions(searcher.getIndexReader());
     }
     /**
      * Method to calculate the first feature.
-     * Works in parallel using Java 8 parallelStreams.
-     * DEFAULT THREAD POOL SIE = NUMBER OF PROCESSORS
-     * USE : System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "N") to set the thread pool size
+     * Every query-entity pair is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
+     * @param outputFilePath String Path to the output file.
      */
 
     private  void feature(String outputFilePath) {
         //Get the set of queries
-        Set<String> querySet = entityRankings.keySet();
-
-        // Do in parallel
-//        querySet.parallelStream().forEach(queryId -> {
-//            try {
-//                doTask(queryId);
-//            } catch (IOException e) {
-//                e.printStackTrace();
-//            }
-//        });
-
-        for (String s : querySet) {
-            try {
-                doTask(s);
-            } catch (IOException e) {
-                e.printStackTrace();
+        // Sorted so that the run file is in query order
+        Collection<String> querySet = workload != null ? workload.queries() : new TreeSet<>(entityRankings.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
+
+        // Make the tasks for every query
+        try {
+            for (String queryId : querySet) {
+                addTasks(queryId, tasks);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
 
-        // Create the run file
-        System.out.print("Writing to run file.....");
-        Utilities.writeFile(runStrings, outputFilePath);
-        System.out.println("[Done].");
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("qee");
+        try (RunWriter writer = new RunWriter(outputFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
+
         System.out.println("Run file written at: " + outputFilePath);
     }
 
     /**
      * Helper method.
      * For every query, look at all the entities relevant for the query.
-     * For every such entity, create a pseudo-document consisting of passages which contain this entity.
-     * For every co-occurring entity in the pseudo-document, if the entity is also relevant for the query,
-     * then find the frequency of this entity in the pseudo-document and score the passages using this frequency information.
+     * Make one task for every such entity.
      *
      * @param queryId String
+     * @param tasks List List to which the tasks are added.
+     * @throws IOException IOException
      */
 
-    private void doTask(String queryId) throws IOException {
-        List<Map.Entry<String, Integer>> contextEntityList;
-        List<Map.Entry<String, Integer>> expansionEntities;
-
-        if (entityQrels.containsKey(queryId) && entityQrels.containsKey(queryId)) {
+    private void addTasks(String queryId, List<TaskRunner.Task> tasks) throws IOException {
 
-            // Get the set of entities retrieved for the query
-            ArrayList<String> entityList = entityRankings.get(queryId);
-            Set<String> retEntitySet = new HashSet<>(entityList);
+        Workload.Query work = query(queryId);
+        if (work != null && work.hasParagraphs()) {
 
-            // Get the set of entities relevant for the query
-            Set<String> relEntitySet = new HashSet<>(entityQrels.get(queryId));
+            // Get the entities retrieved for the query
+            List<String> entityList = work.getRankedEntities();
 
             // Get the retrieved entities which are also relevant
             // Finding support passage for non-relevant entities makes no sense!!
-
-            retEntitySet.retainAll(relEntitySet);
+            IdSet retEntitySet = work.getEntities();
 
             // Get the list of passages retrieved for the query
-            ArrayList<String> paraList = Utilities.process(paraRankings.get(queryId));
+            ArrayList<String> paraList = Utilities.process(work.getParaList());
 
 
             // For every entity in this set of relevant retrieved  entities do
             for (String entityId : retEntitySet) {
+                tasks.add(Events.query(queryId, entityId,
+                        runStrings -> doTask(queryId, entityId, entityList, paraList, runStrings)));
+            }
+        }
+    }
 
-                // Get the list of all entities which co-occur with this entity in a given context
-                // Context here is the same as a PseudoDocument for the entity
-                // So we are actually looking at all entities that occur in the PseudoDocument
-                // sorted in descending order of frequency
-                // Here we are using all entities retrieved for the query to get the expansion terms
-                contextEntityList = getContextEntities(entityId, entityList, paraList);
+    /**
+     * Score the support passages of a query-entity pair.
+     * Only the relevant entities retrieved for the query have support passages, as when writing a run file.
+     * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
+     */
 
-                // Use the top K entities for expansion
-                expansionEntities = contextEntityList.subList(0, Math.min(takeKEntities, contextEntityList.size()));
+    @Override
+    public void score(String queryId, String entityId, RunLineFormatter runStrings) throws IOException {
+        Workload.Query work = query(queryId);
+        if (work != null && work.hasParagraphs() && work.getEntities().contains(entityId)) {
+            doTask(queryId, entityId, work.getRankedEntities(), Utilities.process(work.getParaList()), runStrings);
+        }
+    }
 
-                if (expansionEntities.size() == 0) {
-                    continue;
-                }
-                // Process the query
-                String queryStr = queryId
-                        .substring(queryId.indexOf(":") + 1)          // remove enwiki: from query
-                        .replaceAll("%20", " ")     // replace %20 with whitespace
-                        .toLowerCase();                            //  convert query to lowercase
-                // Convert the query to an expanded BooleanQuery
-                BooleanQuery booleanQuery = EntityRMExpand.toEntityRmQuery(queryStr, expansionEntities, omitQueryTerms,
-                        "text", analyzer);
-
-                // Search the index
-                TopDocs tops = Index.Search.searchIndex(booleanQuery, 100, searcher);
-                makeRunStrings(queryId, entityId, tops);
+    /**
+     * Helper method.
+     * Get the work of a query from the workload, or work it out from the run files if there is no workload.
+     * @param queryId String
+     * @return Workload.Query The work of the query, or null if the query has no entity ranking or ground truth.
+     * @throws IOException IOException
+     */
+    @Nullable
+    private Workload.Query query(String queryId) throws IOException {
+        return workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, entityQrels, entityIds, null, null);
+    }
 
-            }
-            System.out.println("Done query: " + queryId);
+    /**
+     * Helper method.
+     * For the query-entity pair, create a pseudo-document consisting of passages which contain the entity.
+     * Expand the query using the entities which co-occur with the entity in the pseudo-document
+     * and retrieve passages with the expanded query.
+     *
+     * @param queryId String
+     * @param entityId String
+     * @param entityList List List of entities retrieved for the query.
+     * @param paraList List List of passages retrieved for the query.
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     */
+
+    private void doTask(String queryId,
+                        String entityId,
+                        List<String> entityList,
+                        ArrayList<String> paraList,
+                        RunLineFormatter runStrings) throws IOException {
+        List<Map.Entry<String, Integer>> expansionEntities;
+
+        // Get the top K entities which co-occur with this entity in a given context
+        // Context here is the same as a PseudoDocument for the entity
+        // So we are actually looking at all entities that occur in the PseudoDocument
+        // sorted in descending order of frequency
+        // Here we are using all entities retrieved for the query to get the expansion terms
+        long start = Metrics.start();
+        expansionEntities = getContextEntities(entityId, entityList, paraList);
+        Metrics.stop(Metrics.Stage.EXPANSION, start);
+
+        if (expansionEntities.size() == 0) {
+            return;
         }
+        // Process the query
+        String queryStr = Utilities.processQuery(queryId);
+        // Convert the query to an expanded BooleanQuery
+        BooleanQuery booleanQuery = EntityRMExpand.toEntityRmQuery(queryStr, expansionEntities, omitQueryTerms,
+                "text", analyzer);
+
+        // Search the index
+        TopDocs tops;
+        try (Limits.Permit ignored = Limits.enter(Limits.Stage.SCORING)) {
+            tops = Index.Search.searchIndex(booleanQuery, 100, searcher);
+        }
+        makeRunStrings(queryId, entityId, tops, runStrings);
+        System.out.println("Done query: " + queryId + "+" + entityId);
     }
     @NotNull
     private List<Map.Entry<String, Integer>> getContextEntities(String entityId,
@@ -203,6 +302,10 @@ public class QEEntities {
         ArrayList<String> processedEntityList = Utilities.process(entityList);
         ArrayList<String> pseudoDocEntityList;
 
+        if (coOccurrenceIndex != null) {
+            // Use the corpus-wide counts of the entities retrieved for the query instead of a pseudo-document
+            return coOccurrenceIndex.top(Utilities.process(entityId), processedEntityList, takeKEntities);
+        }
 
         // Create a pseudo-document for the entity
         PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
@@ -211,20 +314,15 @@ public class QEEntities {
         if (d != null) {
             // Get the list of co-occurring entities
             pseudoDocEntityList = d.getEntityList();
-            // For every co-occurring entity do
-            for (String e : pseudoDocEntityList) {
-                // If the entity also occurs in the list of entities relevant for the query then
-                if (processedEntityList.contains(e)) {
-                    // Find the frequency of this entity in the pseudo-document and store it
-                    freqMap.put(e, Utilities.frequency(e, pseudoDocEntityList));
-                }
-            }
+            // For every co-occurring entity which also occurs in the list of entities relevant for the query,
+            // find the frequency of this entity in the pseudo-document (in one pass over the pseudo-document)
+            freqMap = CoOccurrenceCounter.count(pseudoDocEntityList, processedEntityList);
         }
 
 
-        // Sort the entities in decreasing order of frequency
-        // Add all the entities to the list
-        contextEntityList.addAll(Utilities.sortByValueDescending(freqMap).entrySet());
+        // Select the top K entities in decreasing order of frequency
+        // Only these are used for expansion, so there is no need to sort all of them
+        contextEntityList.addAll(TopK.topEntries(freqMap, takeKEntities));
         // Return the list
         return contextEntityList;
     }
@@ -250,22 +348,19 @@ public class QEEntities {
      * @param queryId String
      * @param entityId String
      * @param topDocs TopDocs
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      * @throws IOException Exception
      */
     private void makeRunStrings(String queryId,
                                 String entityId,
-                                @NotNull TopDocs topDocs) throws IOException {
-        String query = queryId + "+" + entityId;
+                                @NotNull TopDocs topDocs,
+                                RunLineFormatter runStrings) throws IOException {
         ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-        Document d;
-        String runFileString;
+        // Only the paragraph IDs are needed, not the whole documents
+        String[] paraIds = ParagraphIds.get(scoreDocs, Options.idField(), searcher);
 
         for (int i = 0; i < scoreDocs.length; i++) {
-            d = searcher.doc(scoreDocs[i].doc);
-            String pID = d.getField("id").stringValue();
-            runFileString = query + " Q0 " + pID + " " + (i + 1) + " " + topDocs.scoreDocs[i].score + " " + "QEE";
-            //System.out.println(runFileString);
-            runStrings.add(runFileString);
+            runStrings.line(queryId, entityId, paraIds[i], i + 1, topDocs.scoreDocs[i].score, "QEE");
         }
     }
     /**
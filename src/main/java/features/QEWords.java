@@ -1,10 +1,20 @@
 package features;
 
+import help.Events;
+import help.Interner;
+import help.Limits;
+import help.Options;
 import help.PseudoDocument;
 import help.RM3Expand;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.Scorer;
+import help.TaskRunner;
 import help.Utilities;
 import lucene.Index;
+import lucene.ParagraphIds;
 import lucene.RAMIndex;
+import lucene.Workload;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
@@ -23,6 +33,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * QE with words from the pseudo-document.
@@ -30,7 +41,7 @@ import java.util.*;
  * @version 7/22/2019
  */
 
-public class QEWords {
+public class QEWords implements Scorer {
     private IndexSearcher searcher;
 
     //HashMap where Key = queryID and Value = list of paragraphs relevant for the queryID
@@ -40,9 +51,11 @@ public class QEWords {
     private HashMap<String,ArrayList<String>> entityRankings;
 
     private HashMap<String, ArrayList<String>> entityQrels;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private Workload workload;
 
-    // ArrayList of run strings
-    private ArrayList<String> runStrings = new ArrayList<>();
     private int takeKTerms; // Number of query expansion terms
     private int takeKDocs; // Number of documents for query expansion
     private boolean omitQueryTerms; // Omit query terms or not when calculating expansion terms
@@ -80,6 +93,48 @@ public class QEWords {
                    Analyzer analyzer,
                    Similarity similarity) {
 
+        this(indexDir,
+                trecCarDir + "/" + dataDir + "/" + paraRunFile,
+                trecCarDir + "/" + dataDir + "/" + entityRunFile,
+                entityQrelPath,
+                takeKTerms,
+                takeKDocs,
+                omitQueryTerms,
+                analyzer,
+                similarity);
+
+        String outputFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
+
+        try {
+            feature(outputFilePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Constructor which only loads the rankings (or the workload) and the index, to score query-entity pairs on
+     * request (see {@link #score(String, String, RunLineFormatter)}).
+     * @param indexDir String Path to the index directory.
+     * @param paraFilePath String Path to the passage run file.
+     * @param entityFilePath String Path to the entity run file.
+     * @param entityQrelPath String Path to the entity ground truth file.
+     * @param takeKTerms Integer Top K terms for query expansion.
+     * @param takeKDocs Integer Top K documents for feedback set.
+     * @param omitQueryTerms Boolean Whether or not to omit query terms during expansion.
+     * @param analyzer Analyzer Type of analyzer to use.
+     * @param similarity Similarity Type of similarity to use.
+     */
+
+    public QEWords(String indexDir,
+                   String paraFilePath,
+                   String entityFilePath,
+                   String entityQrelPath,
+                   int takeKTerms,
+                   int takeKDocs,
+                   boolean omitQueryTerms,
+                   Analyzer analyzer,
+                   Similarity similarity) {
 
         this.takeKTerms = takeKTerms;
         this.takeKDocs = takeKDocs;
@@ -87,105 +142,136 @@ public class QEWords {
         this.analyzer = analyzer;
         this.omitQueryTerms = omitQueryTerms;
 
-        String entityFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
-        String paraFilePath = trecCarDir + "/" + dataDir + "/" + paraRunFile;
-        String outputFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
-
-        System.out.print("Reading entity rankings...");
-        entityRankings = Utilities.getRankings(entityFilePath);
-        System.out.println("[Done].");
-
-        System.out.print("Reading paragraph rankings...");
-        paraRankings = Utilities.getRankings(paraFilePath);
-        System.out.println("[Done].");
-
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelPath);
-        System.out.println("[Done].");
-
         System.out.print("Setting up index for use...");
         searcher = new Index.Setup(indexDir, "text", analyzer, similarity).getSearcher();
         System.out.println("[Done].");
 
-        try {
-            feature(outputFilePath);
-        } catch (IOException e) {
-            e.printStackTrace();
+        workload = Workload.shared(searcher);
+        if (workload == null) {
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading paragraph rankings...");
+            paraRankings = Utilities.getRankings(paraFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelPath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
         }
     }
 
     /**
      * Method to calculate the feature.
+     * Every query-entity pair is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      * @param outputFilePath String Path to the output file.
      * @throws IOException IOException
      */
 
     private  void feature(String outputFilePath) throws IOException {
         //Get the set of queries
-        Set<String> querySet = entityRankings.keySet();
+        // Sorted so that the run file is in query order
+        Collection<String> querySet = workload != null ? workload.queries() : new TreeSet<>(entityRankings.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
         ProgressBar pb = new ProgressBar("Progress", querySet.size());
 
-        // Do in serial
+        // Make the tasks for every query
         for (String q : querySet) {
-            doTask(q);
-            pb.step();
+            addTasks(q, tasks, pb);
         }
+        pb.maxHint(tasks.size());
+
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("qew");
+        try (RunWriter writer = new RunWriter(outputFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
         pb.close();
 
-        // Create the run file
-        System.out.print("Writing to run file.....");
-        Utilities.writeFile(runStrings, outputFilePath);
-        System.out.println("[Done].");
         System.out.println("Run file written at: " + outputFilePath);
     }
 
     /**
      * Helper method.
+     * Make one task for every relevant entity retrieved for the query.
      * @param queryId String Query
-     * @throws IOException IOException
+     * @param tasks List List to which the tasks are added.
+     * @param pb ProgressBar Progress bar which is stepped after every task.
      */
-    private void doTask(String queryId) throws IOException {
-
-        if (entityRankings.containsKey(queryId) && entityQrels.containsKey(queryId)) {
-            // Get the set of entities retrieved for the query
-            Set<String> retEntitySet = new HashSet<>(entityRankings.get(queryId));
+    private void addTasks(String queryId, List<TaskRunner.Task> tasks, ProgressBar pb) throws IOException {
 
-            // Get the set of entities relevant for the query
-            Set<String> relEntitySet = new HashSet<>(entityQrels.get(queryId));
+        // Get the retrieved entities which are also relevant (in sorted order) and the passages retrieved for the query
+        Workload.Query work = workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, entityQrels, entityIds, null, null);
 
-            // Get the number of retrieved entities which are also relevant
-            // Finding support passage for non-relevant entities makes no sense!!
+        if (work != null) {
+            // For every entity in this set of relevant (retrieved) entities do
+            for (String entityId : work.getEntities()) {
+                tasks.add(Events.query(queryId, entityId, runStrings -> {
+                    doTask(work, entityId, runStrings);
+                    pb.step();
+                }));
+            }
+        }
 
-            retEntitySet.retainAll(relEntitySet);
+    }
 
-            // Get the list of passages retrieved for the query
-            ArrayList<String> paraList = paraRankings.get(queryId);
+    /**
+     * Score the support passages of a query-entity pair.
+     * Only the relevant entities retrieved for the query have support passages, as when writing a run file.
+     * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
+     */
+    @Override
+    public void score(String queryId, String entityId, RunLineFormatter runStrings) throws IOException {
+        Workload.Query work = workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, entityQrels, entityIds, null, null);
+        if (work != null && work.getEntities().contains(entityId)) {
+            doTask(work, entityId, runStrings);
+        }
+    }
 
-            // For every entity in this set of relevant (retrieved) entities do
-            for (String entityId : retEntitySet) {
+    /**
+     * Helper method.
+     * @param work Workload.Query Work of the query.
+     * @param entityId String Entity
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
+     */
+    private void doTask(@NotNull Workload.Query work,
+                        String entityId,
+                        RunLineFormatter runStrings) throws IOException {
 
-                // Create a pseudo-document for the entity
-                PseudoDocument d = Utilities.createPseudoDocument(entityId, paraList, searcher);
+        String queryId = work.getQueryId();
+        // Create a pseudo-document for the entity
+        PseudoDocument d = Utilities.createPseudoDocument(entityId, work, searcher);
 
-                // If there exists a pseudo-document about the entity
-                if (d != null) {
+        // If there exists a pseudo-document about the entity
+        if (d != null) {
 
-                    // Get the list of lucene documents in the pseudo-document
-                    ArrayList<Document> documents = d.getDocumentList();
+            // Get the list of lucene documents in the pseudo-document
+            ArrayList<Document> documents = d.getDocumentList();
 
-                    // Get the top documents for this query-entity pair
-                    // This is obtained after expanding the query with contextual words
-                    // And retrieving with the expanded query from the index
-                    TopDocs topDocs = getTopDocsForEntity(queryId, documents);
+            // Get the top documents for this query-entity pair
+            // This is obtained after expanding the query with contextual words
+            // And retrieving with the expanded query from the index
+            TopDocs topDocs = getTopDocsForEntity(work, documents);
 
-                    // Make the run file strings for the query-entity pair
+            // Make the run file strings for the query-entity pair
 
-                    makeRunStrings(queryId, entityId, topDocs);
+            makeRunStrings(queryId, entityId, topDocs, runStrings);
 
-                }
-            }
         }
-
     }
 
     /**
@@ -197,41 +283,45 @@ public class QEWords {
      * with this expanded query.
      * Finally a new set of passages are retrieved using this expanded query.
      * The effect is that we expanded the query using terms from the passages which mention the entity (contextual words).
-     * @param queryID Sting QueryID
+     * @param work Workload.Query Work of the query.
      * @param documents List List of passages mentioning the entity.
      * @return TopDocs The top 100 (or less) documents retrieved using query expansion with contextual words.
      * @throws IOException IOException
      */
 
-    private TopDocs getTopDocsForEntity(@NotNull String queryID,
+    private TopDocs getTopDocsForEntity(@NotNull Workload.Query work,
                                         ArrayList<Document> documents) throws IOException {
-        ///////////////////////////////////////////
-        // Building the index of documents
-        //////////////////////////////////////////
-
-        // First create the IndexWriter
-        IndexWriter iw = RAMIndex.createWriter(analyzer);
-        // Now create the index
-        RAMIndex.createIndex(documents, iw);
-        // Create the IndexSearcher
-        IndexSearcher is = RAMIndex.createSearcher(similarity, iw);
-
-
-        String queryStr = queryID
-                .substring(queryID.indexOf(":")+1)          // remove enwiki: from query
-                .replaceAll("%20", " ")     // replace %20 with whitespace
-                .toLowerCase();                            //  convert query to lowercase
-
-        // Get the RM3 expansion terms
-        List<Map.Entry<String, Float>> relevanceModel = RM3Expand.getExpansionTerms(is, takeKTerms,takeKDocs,
-                queryStr,omitQueryTerms, analyzer);
-        // Convert the query to a BooleanQuery expanded using the RM3 terms
-        BooleanQuery booleanQuery = RM3Expand.toRm3Query(queryStr, relevanceModel, analyzer);
-
-        // Search the index with this expanded query
-        TopDocs topDocs = Index.Search.searchIndex(booleanQuery, 100, searcher);
-        RAMIndex.close(iw);
-        return topDocs;
+        // Building the index, the expansion and the search are CPU-heavy
+        try (Limits.Permit ignored = Limits.enter(Limits.Stage.SCORING)) {
+            ///////////////////////////////////////////
+            // Building the index of documents
+            //////////////////////////////////////////
+
+            // First create the IndexWriter
+            IndexWriter iw = RAMIndex.createWriter(analyzer);
+            // Now create the index
+            RAMIndex.createIndex(documents, iw);
+            // Create the IndexSearcher
+            IndexSearcher is = RAMIndex.createSearcher(similarity, iw);
+
+
+            String queryStr = work.getText();
+            // Use the query tokens of the workload if they were made by the same kind of analyzer
+            List<String> queryTokens = workload != null && workload.analyzedWith(analyzer) ? work.getTokens() : null;
+
+            // Get the RM3 expansion terms
+            List<Map.Entry<String, Float>> relevanceModel = RM3Expand.getExpansionTerms(is, takeKTerms, takeKDocs,
+                    queryStr, queryTokens, omitQueryTerms, analyzer);
+            // Convert the query to a BooleanQuery expanded using the RM3 terms
+            BooleanQuery booleanQuery = queryTokens != null
+                    ? RM3Expand.toRm3Query(queryTokens, relevanceModel)
+                    : RM3Expand.toRm3Query(queryStr, relevanceModel, analyzer);
+
+            // Search the index with this expanded query
+            TopDocs topDocs = Index.Search.searchIndex(booleanQuery, 100, searcher);
+            RAMIndex.close(iw);
+            return topDocs;
+        }
     }
 
     /**
@@ -239,22 +329,19 @@ public class QEWords {
      * @param queryId String QueryID
      * @param entityId String EntityID
      * @param topDocs TopDocs The top documents retrieved for the query-entity pair.
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      * @throws IOException IOException
      */
 
     private void makeRunStrings(String queryId, String entityId,
-                                @NotNull TopDocs topDocs) throws IOException {
-        String query = queryId + "+" + entityId;
+                                @NotNull TopDocs topDocs,
+                                RunLineFormatter runStrings) throws IOException {
         ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-        Document d;
-        String runFileString;
+        // Only the paragraph IDs are needed, not the whole documents
+        String[] paraIds = ParagraphIds.get(scoreDocs, Options.idField(), searcher);
 
         for (int i = 0; i < scoreDocs.length; i++) {
-            d = searcher.doc(scoreDocs[i].doc);
-            String pID = d.getField("id").stringValue();
-            runFileString = query + " Q0 " + pID + " " + (i + 1) + " " + topDocs.scoreDocs[i].score + " " + "QEW";
-            //System.out.println(runFileString);
-            runStrings.add(runFileString);
+            runStrings.line(queryId, entityId, paraIds[i], i + 1, topDocs.scoreDocs[i].score, "QEW");
         }
     }
 
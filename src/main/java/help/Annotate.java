@@ -9,21 +9,21 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Annotate {
     private String cbor;
     private String file;
-    private HashMap<String, Map<String, Double>> salientEntityMap;
-    private HashMap<String, ArrayList<String>> allEntityMap;
+    private Map<String, Map<String, Double>> salientEntityMap;
+    private Map<String, ArrayList<String>> allEntityMap;
 
     @Contract(pure = true)
     public Annotate(String cbor,
                     String file) {
         this.cbor = cbor;
         this.file = file;
-        this.salientEntityMap = new HashMap<>();
-        this.allEntityMap = new HashMap<>();
+        this.salientEntityMap = new ConcurrentHashMap<>();
+        this.allEntityMap = new ConcurrentHashMap<>();
     }
 
     public void annotateSalientEntities() throws IOException {
@@ -32,16 +32,21 @@ public class Annotate {
         System.out.println("Annotating file: " + cbor);
         System.out.println("Annotating salient entities");
 
-        StreamSupport.stream(ip.spliterator(), true)
-                .forEach(paragraph ->
+        // The annotations are HTTP calls to SWAT, so most of the time is spent waiting: use more threads
+        // ("--annotate-threads=N") or virtual threads ("--virtual-threads=true")
+        TaskRunner.forEach(ip, TaskRunner.newExecutor("annotate"), paragraph ->
                 {
                     String text = paragraph.getTextOnly();
                     Map<String, Double> salMap = EntitySalience.getSalientEntities(text);
-                    salientEntityMap.put(paragraph.getParaId(), salMap);
+                    // No salient entities: a ConcurrentHashMap cannot hold null, and the experiments read a
+                    // missing paragraph the same way as a null one
+                    if (salMap != null) {
+                        salientEntityMap.put(paragraph.getParaId(), salMap);
+                    }
                     System.out.println(paragraph.getParaId());
                 });
         System.out.println("Writing data to file: " + file);
-        Utilities.writeMap(salientEntityMap,file);
+        Utilities.writeMap(new HashMap<>(salientEntityMap),file);
         System.out.println("Done");
     }
 
@@ -51,8 +56,9 @@ public class Annotate {
         System.out.println("Annotating file: " + cbor);
         System.out.println("Annotating all entities");
 
-        StreamSupport.stream(ip.spliterator(), true)
-                .forEach(paragraph ->
+        // The annotations are HTTP calls to SWAT, so most of the time is spent waiting: use more threads
+        // ("--annotate-threads=N") or virtual threads ("--virtual-threads=true")
+        TaskRunner.forEach(ip, TaskRunner.newExecutor("annotate"), paragraph ->
                 {
                     String text = paragraph.getTextOnly();
                     ArrayList<String> allEntityList = EntitySalience.getAllEntities(text);
@@ -60,7 +66,7 @@ public class Annotate {
                     System.out.println(paragraph.getParaId());
                 });
         System.out.println("Writing data to file: " + file);
-        Utilities.writeMap(allEntityMap,file);
+        Utilities.writeMap(new HashMap<>(allEntityMap),file);
         System.out.println("Done");
     }
 
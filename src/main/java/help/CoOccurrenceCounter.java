@@ -0,0 +1,93 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class to count how often the entities mentioned in a pseudo-document co-occur with an entity.
+ * The counts are found in one pass over the mentions using a hash map, with a hash set to decide which
+ * entities are counted, so counting n mentions takes O(n) time.
+ * The counts are the same as those found by calling {@link Utilities#frequency(String, java.util.ArrayList)} for every
+ * mention which is in the set of entities: mentions are matched exactly against the set of entities,
+ * and counted ignoring case. CoOccurrenceBenchmark checks this against the linear search.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class CoOccurrenceCounter {
+
+    /**
+     * Count the mentions of the entities in a pseudo-document.
+     * @param mentions List List of entity mentions in the pseudo-document.
+     * @param entities Set Set of entities to count. Other mentions are ignored.
+     * @return HashMap where Key = entity and Value = number of mentions of the entity (ignoring case)
+     */
+    @NotNull
+    public static HashMap<String, Integer> count(@NotNull List<String> mentions, @NotNull Set<String> entities) {
+        Map<String, int[]> counts = new HashMap<>();
+        // Entities to report, in the order in which they are first mentioned
+        Map<String, String> found = new LinkedHashMap<>();
+
+        for (String e : mentions) {
+            String key = fold(e);
+            int[] count = counts.get(key);
+            if (count == null) {
+                counts.put(key, count = new int[1]);
+            }
+            count[0]++;
+            if (entities.contains(e) && !found.containsKey(e)) {
+                found.put(e, key);
+            }
+        }
+
+        HashMap<String, Integer> freqMap = new HashMap<>();
+        for (Map.Entry<String, String> entry : found.entrySet()) {
+            freqMap.put(entry.getKey(), counts.get(entry.getValue())[0]);
+        }
+        return freqMap;
+    }
+
+    /**
+     * Count the mentions of the entities in a pseudo-document.
+     * @param mentions List List of entity mentions in the pseudo-document.
+     * @param entities Collection Entities to count. Other mentions are ignored.
+     * @return HashMap where Key = entity and Value = number of mentions of the entity (ignoring case)
+     */
+    @NotNull
+    public static HashMap<String, Integer> count(@NotNull List<String> mentions, @NotNull Collection<String> entities) {
+        return count(mentions, entities instanceof Set ? (Set<String>) entities : new HashSet<>(entities));
+    }
+
+    /**
+     * Case-fold a string so that two strings have the same key exactly when String.equalsIgnoreCase is true.
+     * Entity ids are usually lowercase ASCII already, in which case the string itself is returned.
+     * @param s String
+     * @return String
+     */
+    @NotNull
+    private static String fold(@NotNull String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z')) {
+                break;
+            }
+            i++;
+        }
+        if (i == n) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        for (; i < n; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
@@ -79,9 +79,6 @@ public class CreateGroundTruth {
 
     /**
      * Helper method.
-     * Works in parallel using Java 8 parallelStreams.
-     * DEFAULT THREAD POOL SIE = NUMBER OF PROCESSORS
-     * USE : System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "N") to set the thread pool size
      * @param queryID String query
      */
 
@@ -114,7 +111,7 @@ public class CreateGroundTruth {
                 // Check to see if this entity is present in the paragraph
                 Document d = null;
                 try {
-                    d = Index.Search.searchIndex("id", paraID,searcher);
+                    d = Index.Search.searchIndex(Options.idField(), paraID,searcher);
                 } catch (IOException | ParseException e) {
                     e.printStackTrace();
                 }
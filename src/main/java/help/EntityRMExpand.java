@@ -42,10 +42,12 @@ public class EntityRMExpand {
         // add Entity RM terms
         for (Map.Entry<K,V> stringDoubleEntry : expansionEntities.subList(0, Math.min(expansionEntities.size(), (64 - tokens.size())))) {
             String e = (String) stringDoubleEntry.getKey();
-            e = Utilities.process(e).replaceAll("_", " ");
+            // The words of the entity (a char replace, not a regular expression; see IdNormalizerCheck)
+            e = Utilities.process(e).replace('_', ' ');
             List<String> entityToks = tokenizeQuery(e, searchField, analyzer);
             for (String entity : entityToks) {
-                double weight = (double) stringDoubleEntry.getValue();
+                // The weights may be any kind of number (e.g. the Integer frequencies of the context entities)
+                double weight = ((Number) stringDoubleEntry.getValue()).doubleValue();
                 booleanQuery.add(new BoostQuery(new TermQuery(new Term(searchField, entity)), (float)weight),
                         BooleanClause.Occur.SHOULD);
             }
@@ -0,0 +1,273 @@
+package help;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * JDK Flight Recorder events for the life cycle of queries and pseudo-documents.
+ * The events are only recorded while a recording is running, e.g. when the program is started with
+ * "java -XX:StartFlightRecording=filename=run.jfr,settings=profile -jar ...". They can then be viewed in
+ * JDK Mission Control next to the GC pauses and allocation samples of the run, so that a slow or allocation-heavy
+ * query (or entity) can be found. Without a recording an event costs a short-lived object and a check.
+ *
+ * An event which has a duration is used like this:
+ *
+ *      Events.LuceneSearch event = new Events.LuceneSearch();
+ *      event.begin();
+ *      ...
+ *      event.end();
+ *      if (event.shouldCommit()) {
+ *          ... set the fields ...
+ *          event.commit();
+ *      }
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class Events {
+    private static final String CATEGORY = "Support Passage";
+
+    private Events() {
+    }
+
+    /**
+     * A task for a query (or query-entity pair) has started.
+     */
+    @Name("support.passage.QueryStart")
+    @Label("Query Start")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class QueryStart extends Event {
+        @Label("Query")
+        public String query;
+
+        @Label("Entity")
+        @Description("Entity of a query-entity pair (empty if the task is for the whole query)")
+        public String entity;
+    }
+
+    /**
+     * A task for a query (or query-entity pair) has ended. The duration is that of the whole task.
+     */
+    @Name("support.passage.QueryEnd")
+    @Label("Query End")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class QueryEnd extends Event {
+        @Label("Query")
+        public String query;
+
+        @Label("Entity")
+        @Description("Entity of a query-entity pair (empty if the task is for the whole query)")
+        public String entity;
+
+        @Label("Run Bytes")
+        @Description("Bytes of run strings made by the task")
+        @DataAmount
+        public long runBytes;
+    }
+
+    /**
+     * A pseudo-document has been built for an entity.
+     */
+    @Name("support.passage.PseudoDocumentBuilt")
+    @Label("Pseudo-Document Built")
+    @Category(CATEGORY)
+    public static class PseudoDocumentBuilt extends Event {
+        @Label("Entity")
+        public String entity;
+
+        @Label("Passages")
+        @Description("Number of passages in the pseudo-document (0 if the entity is not mentioned in any passage)")
+        public int passages;
+
+        @Label("Entities")
+        @Description("Number of entity mentions in the passages of the pseudo-document")
+        public int entities;
+
+        @Label("Bytes")
+        @Description("Size of the text of the passages of the pseudo-document (in chars)")
+        public long bytes;
+    }
+
+    /**
+     * A Lucene index has been searched.
+     */
+    @Name("support.passage.LuceneSearch")
+    @Label("Lucene Search")
+    @Category(CATEGORY)
+    public static class LuceneSearch extends Event {
+        @Label("Index")
+        @Description("\"main\" for the paragraph index, \"ram\" for an in-memory index")
+        public String index;
+
+        @Label("Query Type")
+        public String queryType;
+
+        @Label("Clauses")
+        @Description("Number of clauses of a Boolean query")
+        public int clauses;
+
+        @Label("Hits")
+        @Description("Number of documents returned")
+        public int hits;
+
+        @Label("Total Hits")
+        @Description("Number of documents which matched (a lower bound if Total Hits Exact is false)")
+        public long totalHits;
+
+        @Label("Total Hits Exact")
+        @Description("Whether all the matching documents were counted, or only enough of them for the top hits")
+        public boolean totalHitsExact;
+    }
+
+    /**
+     * RM3 expansion terms have been found for a query.
+     */
+    @Name("support.passage.RM3Expansion")
+    @Label("RM3 Expansion")
+    @Category(CATEGORY)
+    public static class RM3Expansion extends Event {
+        @Label("Query")
+        public String query;
+
+        @Label("Feedback Documents")
+        public int feedbackDocs;
+
+        @Label("Vocabulary")
+        @Description("Number of distinct terms in the feedback documents")
+        public int vocabulary;
+
+        @Label("Terms")
+        @Description("Number of expansion terms returned")
+        public int terms;
+    }
+
+    /**
+     * Bytes of the run file have been handed to the operating system.
+     */
+    @Name("support.passage.RunFlush")
+    @Label("Run Flush")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class RunFlush extends Event {
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("To Disk")
+        @Description("Whether the file stream was also flushed")
+        public boolean flushed;
+    }
+
+    /**
+     * Wrap the task of a query (or query-entity pair) so that it commits a {@link QueryStart} event when it starts
+     * and a {@link QueryEnd} event when it ends.
+     * @param query String
+     * @param entity String Entity of a query-entity pair (or null if the task is for the whole query).
+     * @param task Task
+     * @return Task
+     */
+    @NotNull
+    public static TaskRunner.Task query(String query, @Nullable String entity, @NotNull TaskRunner.Task task) {
+        return runStrings -> {
+            queryStart(query, entity);
+            QueryEnd event = new QueryEnd();
+            event.begin();
+            int length = runStrings.length();
+            try {
+                task.run(runStrings);
+            } finally {
+                queryEnd(event, query, entity, runStrings.length() - length);
+            }
+        };
+    }
+
+    /**
+     * Commit the start event of a task.
+     * @param query String
+     * @param entity String Entity of a query-entity pair (or null if the task is for the whole query).
+     */
+    public static void queryStart(String query, @Nullable String entity) {
+        QueryStart event = new QueryStart();
+        if (event.shouldCommit()) {
+            event.query = query;
+            event.entity = entity == null ? "" : entity;
+            event.commit();
+        }
+    }
+
+    /**
+     * Commit the end event of a task.
+     * @param event QueryEnd Event begun when the task started.
+     * @param query String
+     * @param entity String Entity of a query-entity pair (or null if the task is for the whole query).
+     * @param runBytes Long Bytes of run strings made by the task.
+     */
+    public static void queryEnd(@NotNull QueryEnd event, String query, @Nullable String entity, long runBytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.query = query;
+            event.entity = entity == null ? "" : entity;
+            event.runBytes = runBytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Commit the event of a pseudo-document.
+     * @param event PseudoDocumentBuilt Event begun when the pseudo-document was started.
+     * @param entity String
+     * @param d PseudoDocument The pseudo-document, or null if there is none.
+     */
+    public static void pseudoDocumentBuilt(@NotNull PseudoDocumentBuilt event, String entity, @Nullable PseudoDocument d) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.entity = entity;
+            if (d != null) {
+                event.passages = d.getDocumentList().size();
+                event.entities = d.getEntityList().size();
+                long bytes = 0;
+                for (Document doc : d.getDocumentList()) {
+                    String text = doc.get("text");
+                    bytes += text == null ? 0 : text.length();
+                }
+                event.bytes = bytes;
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * Commit the event of a search.
+     * @param event LuceneSearch Event begun before the search.
+     * @param index String "main" or "ram".
+     * @param query Query The query searched.
+     * @param tds TopDocs The results (or null if the search failed).
+     */
+    public static void luceneSearch(@NotNull LuceneSearch event, String index, @Nullable Query query, @Nullable TopDocs tds) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.index = index;
+            event.queryType = query == null ? "" : query.getClass().getSimpleName();
+            event.clauses = query instanceof BooleanQuery ? ((BooleanQuery) query).clauses().size() : 1;
+            if (tds != null) {
+                event.hits = tds.scoreDocs.length;
+                event.totalHits = tds.totalHits.value;
+                event.totalHitsExact = tds.totalHits.relation == TotalHits.Relation.EQUAL_TO;
+            }
+            event.commit();
+        }
+    }
+}
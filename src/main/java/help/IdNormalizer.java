@@ -0,0 +1,129 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to normalize entity and query IDs (e.g. "enwiki:Green%20Sea%20Turtle") in a single pass over the characters,
+ * instead of using String.replaceAll (which compiles a regular expression on every call) and String.toLowerCase.
+ * The ID is cut after the first ':' (the "enwiki:" prefix), every "%20" is replaced with a separator and the
+ * result is converted to lowercase if asked for. The result is exactly that of the old way:
+ *      id.substring(id.indexOf(":") + 1).replaceAll("%20", separator).toLowerCase()
+ * ASCII IDs are converted to lowercase in the same pass. IDs with other characters (and all IDs if the default
+ * locale has special case rules) are converted using String.toLowerCase.
+ *
+ * The same IDs are normalized over and over again (once for every passage or query-entity pair), so the normalized
+ * forms are memoized in concurrent caches which can be shared by all threads. Every cache holds at most
+ * {@value #MAX_CACHE_SIZE} IDs; other IDs are normalized every time.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class IdNormalizer {
+    private static final int MAX_CACHE_SIZE = 1 << 20;
+    private static final boolean ASCII_LOWER_CASE = asciiLowerCase(Locale.getDefault());
+
+    private static final ConcurrentHashMap<String, String> ENTITIES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> QUERIES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> TITLES = new ConcurrentHashMap<>();
+
+    /**
+     * Normalize an entity ID to the form in which it appears in the entity field of the paragraphs:
+     * "enwiki:Green%20Sea%20Turtle" becomes "green_sea_turtle".
+     * @param entityID String
+     * @return String
+     */
+    @NotNull
+    public static String entity(@NotNull String entityID) {
+        return cached(ENTITIES, entityID, '_', true);
+    }
+
+    /**
+     * Normalize a query ID to the query text: "enwiki:Green%20Sea%20Turtle" becomes "green sea turtle".
+     * @param queryID String
+     * @return String
+     */
+    @NotNull
+    public static String query(@NotNull String queryID) {
+        return cached(QUERIES, queryID, ' ', true);
+    }
+
+    /**
+     * Normalize an ID to its title, keeping the case: "enwiki:Green%20Sea%20Turtle" becomes "Green Sea Turtle".
+     * @param id String
+     * @return String
+     */
+    @NotNull
+    public static String title(@NotNull String id) {
+        return cached(TITLES, id, ' ', false);
+    }
+
+    @NotNull
+    private static String cached(@NotNull ConcurrentHashMap<String, String> cache,
+                                 @NotNull String id,
+                                 char separator,
+                                 boolean lowerCase) {
+        String normalized = cache.get(id);
+        if (normalized == null) {
+            normalized = normalize(id, separator, lowerCase);
+            if (cache.size() < MAX_CACHE_SIZE) {
+                cache.putIfAbsent(id, normalized);
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Normalize an ID without using the caches.
+     * @param id String
+     * @param separator Character Character to replace every "%20" with.
+     * @param lowerCase Boolean Whether to convert the result to lowercase.
+     * @return String
+     */
+    @NotNull
+    public static String normalize(@NotNull String id, char separator, boolean lowerCase) {
+        int start = id.indexOf(':') + 1;
+        int length = id.length();
+        char[] chars = null;
+        int n = 0;
+        boolean ascii = true;
+        for (int i = start; i < length; i++) {
+            char c = id.charAt(i);
+            char d = c;
+            int skip = 0;
+            if (c == '%' && i + 2 < length && id.charAt(i + 1) == '2' && id.charAt(i + 2) == '0') {
+                d = separator;
+                skip = 2;
+            } else if (c >= 0x80) {
+                ascii = false;
+            } else if (lowerCase && ASCII_LOWER_CASE && c >= 'A' && c <= 'Z') {
+                d = (char) (c + ('a' - 'A'));
+            }
+            if (d != c && chars == null) {
+                // First change: copy what is unchanged so far
+                chars = new char[length - start];
+                id.getChars(start, i, chars, 0);
+                n = i - start;
+            }
+            if (chars != null) {
+                chars[n++] = d;
+            }
+            i += skip;
+        }
+        String s = chars == null ? id.substring(start) : new String(chars, 0, n);
+        if (lowerCase && (!ascii || !ASCII_LOWER_CASE)) {
+            s = s.toLowerCase();
+        }
+        return s;
+    }
+
+    /**
+     * Check whether converting ASCII letters to lowercase in the given locale is just 'A'..'Z' to 'a'..'z'.
+     * This is not the case in the locales with special rules for 'I' (Turkish, Azerbaijani and Lithuanian).
+     */
+    private static boolean asciiLowerCase(@NotNull Locale locale) {
+        String language = locale.getLanguage();
+        return !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+    }
+}
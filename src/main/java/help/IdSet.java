@@ -0,0 +1,183 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Class for a set of dense int IDs stored as a compressed (roaring) bitmap.
+ * The IDs are either Lucene docIDs or the IDs of strings given by an {@link Interner}, in which case the set
+ * can be built from and iterated as strings. Iteration is in increasing order of the IDs, which for an
+ * interner is the sorted order of the strings.
+ * The set algebra (and, or, andNot) returns new sets and never changes its operands.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class IdSet implements Iterable<String> {
+    private final RoaringBitmap bitmap;
+    private final Interner interner;
+
+    private IdSet(@NotNull RoaringBitmap bitmap, Interner interner) {
+        this.bitmap = bitmap;
+        this.interner = interner;
+    }
+
+    /**
+     * Make a set of strings. Strings unknown to the interner are left out.
+     * @param interner Interner Interner giving the IDs of the strings.
+     * @param values Iterable Strings.
+     * @return IdSet
+     */
+    @NotNull
+    public static IdSet of(@NotNull Interner interner, @NotNull Iterable<String> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (String value : values) {
+            int id = interner.id(value);
+            if (id >= 0) {
+                bitmap.add(id);
+            }
+        }
+        return new IdSet(bitmap, interner);
+    }
+
+    /**
+     * Make a set of strings from their IDs given by the interner.
+     * @param interner Interner Interner giving the IDs of the strings.
+     * @param ids int[] IDs of the strings.
+     * @return IdSet
+     */
+    @NotNull
+    public static IdSet of(@NotNull Interner interner, @NotNull int[] ids) {
+        return new IdSet(of(ids).bitmap, interner);
+    }
+
+    /**
+     * Make a set of int IDs (e.g. docIDs). Negative IDs are left out.
+     * @param ids int[] IDs.
+     * @return IdSet
+     */
+    @NotNull
+    public static IdSet of(@NotNull int[] ids) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int id : ids) {
+            if (id >= 0) {
+                bitmap.add(id);
+            }
+        }
+        return new IdSet(bitmap, null);
+    }
+
+    /**
+     * Intersection of this set with the other set.
+     * @param other IdSet
+     * @return IdSet
+     */
+    @NotNull
+    public IdSet and(@NotNull IdSet other) {
+        return new IdSet(RoaringBitmap.and(bitmap, other.bitmap), interner);
+    }
+
+    /**
+     * Union of this set with the other set.
+     * @param other IdSet
+     * @return IdSet
+     */
+    @NotNull
+    public IdSet or(@NotNull IdSet other) {
+        return new IdSet(RoaringBitmap.or(bitmap, other.bitmap), interner);
+    }
+
+    /**
+     * The IDs in this set which are not in the other set.
+     * @param other IdSet
+     * @return IdSet
+     */
+    @NotNull
+    public IdSet andNot(@NotNull IdSet other) {
+        return new IdSet(RoaringBitmap.andNot(bitmap, other.bitmap), interner);
+    }
+
+    /**
+     * Size of the intersection of this set with the other set, without making the intersection.
+     * @param other IdSet
+     * @return Integer
+     */
+    public int andCardinality(@NotNull IdSet other) {
+        return RoaringBitmap.andCardinality(bitmap, other.bitmap);
+    }
+
+    /**
+     * Number of IDs in the set.
+     * @return Integer
+     */
+    public int cardinality() {
+        return bitmap.getCardinality();
+    }
+
+    public boolean isEmpty() {
+        return bitmap.isEmpty();
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && bitmap.contains(id);
+    }
+
+    public boolean contains(String value) {
+        return contains(interner.id(value));
+    }
+
+    /**
+     * The IDs in the set in increasing order.
+     * @return int[]
+     */
+    @NotNull
+    public int[] toArray() {
+        return bitmap.toArray();
+    }
+
+    /**
+     * The strings in the set, in sorted order.
+     * @return List
+     */
+    @NotNull
+    public List<String> toList() {
+        List<String> list = new ArrayList<>(cardinality());
+        for (String value : this) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * Iterate over the strings in the set, in the order of their IDs, which the {@link Interner} gives in sorted
+     * order of the strings. Only for sets made with an interner.
+     * @return Iterator
+     */
+    @NotNull
+    @Override
+    public Iterator<String> iterator() {
+        if (interner == null) {
+            throw new UnsupportedOperationException("Set of IDs without an interner");
+        }
+        PeekableIntIterator it = bitmap.getIntIterator();
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!it.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return interner.value(it.next());
+            }
+        };
+    }
+}
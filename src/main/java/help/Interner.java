@@ -0,0 +1,88 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Class to map strings (e.g. entity IDs) to dense int IDs and back, so that sets of them can be stored as
+ * bitmaps (see {@link IdSet}).
+ * The IDs are given in sorted order of the strings, so iterating over the IDs of a set in increasing order
+ * visits the strings in sorted order (the same order as a TreeSet).
+ * An interner is not changed after it is made, so it can be shared between threads.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class Interner {
+    private final String[] values;
+    private final Map<String, Integer> ids;
+
+    private Interner(@NotNull Collection<String> values) {
+        this.values = values.toArray(new String[0]);
+        this.ids = new HashMap<>(this.values.length * 2);
+        for (int i = 0; i < this.values.length; i++) {
+            ids.put(this.values[i], i);
+        }
+    }
+
+    /**
+     * Make an interner for all the strings in the given collections.
+     * @param collections Iterable Collections of strings.
+     * @return Interner
+     */
+    @NotNull
+    public static Interner of(@NotNull Iterable<? extends Collection<String>> collections) {
+        TreeSet<String> values = new TreeSet<>();
+        for (Collection<String> collection : collections) {
+            values.addAll(collection);
+        }
+        return new Interner(values);
+    }
+
+    /**
+     * Make an interner for all the strings in the values of the given maps (e.g. entity rankings and qrels).
+     * @param maps Map Maps where Value = collection of strings.
+     * @return Interner
+     */
+    @SafeVarargs
+    @NotNull
+    public static Interner ofValues(@NotNull Map<String, ? extends Collection<String>>... maps) {
+        List<Collection<String>> collections = new ArrayList<>();
+        for (Map<String, ? extends Collection<String>> map : maps) {
+            collections.addAll(map.values());
+        }
+        return of(collections);
+    }
+
+    /**
+     * Get the ID of a string.
+     * @param value String
+     * @return Integer ID of the string, or -1 if the interner does not know the string.
+     */
+    public int id(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the string with the given ID.
+     * @param id Integer
+     * @return String
+     */
+    public String value(int id) {
+        return values[id];
+    }
+
+    /**
+     * Number of strings known to the interner.
+     * @return Integer
+     */
+    public int size() {
+        return values.length;
+    }
+}
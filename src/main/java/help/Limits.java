@@ -0,0 +1,85 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits on the number of tasks which may be in a CPU-heavy stage at the same time.
+ * With "--virtual-threads=true" thousands of tasks can be in flight, most of them waiting for I/O; the limits keep
+ * the CPU-heavy stages from running on more tasks than there are processors. A stage is entered like this:
+ *
+ *      try (Limits.Permit ignored = Limits.enter(Limits.Stage.EXPANSION)) {
+ *          ...
+ *      }
+ *
+ * A thread which is already in a stage enters it again without waiting, so the stages can be nested.
+ * An interrupted thread cannot enter a stage, so a task which is cancelled (e.g. by the server when a request
+ * times out) stops at the next stage instead of running to the end.
+ * The number of permits of a stage is set using "--expansion-permits=N" and "--scoring-permits=N"
+ * (DEFAULT = number of processors).
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class Limits {
+
+    /**
+     * The CPU-heavy stages.
+     */
+    public enum Stage {
+        EXPANSION("expansion"),     // Finding the query expansion terms (RM3) or entities
+        SCORING("scoring");         // Building and searching in-memory indexes and scoring passages
+
+        private final String label;
+        private final Semaphore permits;
+        private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+        Stage(String label) {
+            this.label = label;
+            this.permits = new Semaphore(Math.max(1, Options.getInt(label + "-permits",
+                    Runtime.getRuntime().availableProcessors())), true);
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Permit to be in a stage. It is given back when closed.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private Limits() {
+    }
+
+    /**
+     * Wait until the stage may be entered.
+     * @param stage Stage
+     * @return Permit Permit to close when the stage is left.
+     */
+    @NotNull
+    public static Permit enter(@NotNull Stage stage) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new IllegalStateException("Interrupted before entering stage " + stage.getLabel());
+        }
+        int[] depth = stage.depth.get();
+        if (depth[0]++ == 0) {
+            try {
+                stage.permits.acquire();
+            } catch (InterruptedException e) {
+                depth[0]--;
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for stage " + stage.getLabel(), e);
+            }
+        }
+        return () -> {
+            if (--depth[0] == 0) {
+                stage.permits.release();
+            }
+        };
+    }
+}
@@ -0,0 +1,335 @@
+package help;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class to measure where the time of a run goes.
+ * The latency of every call of a stage (e.g. building a pseudo-document or searching the index) is recorded
+ * in a histogram, so that percentiles can be reported, and some counters are kept.
+ * The measurements are switched on with "--metrics=true"; otherwise {@link #start()} and {@link #stop(Stage, long)}
+ * do nothing. A stage is measured like this:
+ *
+ *      long start = Metrics.start();
+ *      ...
+ *      Metrics.stop(Metrics.Stage.SEARCH, start);
+ *
+ * Stages may be nested (e.g. the index lookups done while building a pseudo-document), so the times of the
+ * stages do not add up to the time of the run.
+ * The threads, queue depth and busy threads of the executors ({@link NamedExecutor}) are reported as well.
+ * A summary is printed when the program exits. If "--metrics-file=PATH" is given, a snapshot of the measurements
+ * is also written to the file every "--metrics-interval-ms=N" milliseconds (DEFAULT = 10000) and at exit: the file
+ * is replaced with the latest snapshot if its name ends with ".json", and a CSV row per stage is appended otherwise.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class Metrics {
+
+    /**
+     * The stages which are measured.
+     */
+    public enum Stage {
+        LOAD_RUNS("load-runs"),         // Reading a run file or ground truth file
+        INDEX_LOOKUP("index-lookup"),   // Finding paragraphs in the index by paragraph ID
+        PSEUDO_DOC("pseudo-doc"),       // Building the pseudo-document of an entity
+        RAM_INDEX("ram-index"),         // Building an in-memory index
+        EXPANSION("expansion"),         // Finding the query expansion terms (RM3) and building the expanded query
+        PRUNE("prune"),                 // Pruning an expanded query
+        SEARCH("search"),               // Searching an index
+        WRITE("write"),                 // Writing the run strings of a task to the run file
+        TASK("task");                   // A whole task (one query or query-entity pair)
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * The counters which are kept.
+     */
+    public enum Counter {
+        TASKS("tasks"),                           // Tasks done
+        TASK_ERRORS("task-errors"),               // Tasks which failed with an exception
+        RUN_BYTES("run-bytes"),                   // Bytes of run strings written
+        QUERY_CACHE_HITS("cache-hits"),           // Searches answered from the query cache
+        QUERY_CACHE_MISSES("cache-misses"),       // Searches not found in the query cache
+        QUERY_CACHE_EVICTIONS("cache-evictions"), // Results evicted from the query cache
+        CLAUSES_IN("clauses-in"),                 // Clauses of the expanded queries before pruning
+        CLAUSES_OUT("clauses-out"),               // Clauses of the expanded queries after pruning
+        POSTINGS_IN("postings-in"),               // Postings (docFreq) of the terms before pruning
+        POSTINGS_OUT("postings-out"),             // Postings (docFreq) of the terms after pruning
+        PRUNE_CHECKED_HITS("prune-checked"),      // Top hits of the unpruned queries (with "--prune-check=true")
+        PRUNE_KEPT_HITS("prune-kept");            // Top hits of the unpruned queries also found by the pruned queries
+
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final boolean ENABLED = Boolean.parseBoolean(Options.get("metrics", "false"));
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final ConcurrentHistogram[] HISTOGRAMS = new ConcurrentHistogram[STAGES.length];
+    private static final LongAdder[] TOTALS = new LongAdder[STAGES.length];
+    private static final LongAdder[] COUNTS = new LongAdder[COUNTERS.length];
+    private static final long STARTED = System.nanoTime();
+
+    static {
+        for (int i = 0; i < STAGES.length; i++) {
+            // Latencies in nanoseconds with 3 significant digits; the histograms grow as needed
+            HISTOGRAMS[i] = new ConcurrentHistogram(3);
+            TOTALS[i] = new LongAdder();
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            COUNTS[i] = new LongAdder();
+        }
+        if (ENABLED) {
+            String file = Options.get("metrics-file", null);
+            ScheduledExecutorService reporter = null;
+            if (file != null) {
+                reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "metrics-reporter");
+                    t.setDaemon(true);
+                    return t;
+                });
+                long interval = Options.getInt("metrics-interval-ms", 10000);
+                reporter.scheduleAtFixedRate(() -> export(Paths.get(file)), interval, interval, TimeUnit.MILLISECONDS);
+            }
+            ScheduledExecutorService r = reporter;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (r != null) {
+                    // Stop the periodic export and wait for one in progress, so that the last snapshot is written last
+                    r.shutdownNow();
+                    try {
+                        r.awaitTermination(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    export(Paths.get(file));
+                }
+                summary(System.out);
+            }, "metrics-summary"));
+        }
+    }
+
+    /**
+     * Check whether the measurements are switched on (using "--metrics=true").
+     * @return Boolean
+     */
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Start measuring a stage.
+     * @return Long The start time to pass to {@link #stop(Stage, long)}.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Stop measuring a stage and record its latency.
+     * @param stage Stage
+     * @param start Long The start time returned by {@link #start()}.
+     */
+    public static void stop(@NotNull Stage stage, long start) {
+        if (ENABLED) {
+            long nanos = System.nanoTime() - start;
+            HISTOGRAMS[stage.ordinal()].recordValue(nanos);
+            TOTALS[stage.ordinal()].add(nanos);
+        }
+    }
+
+    /**
+     * Add to a counter.
+     * @param counter Counter
+     * @param n Long Amount to add.
+     */
+    public static void count(@NotNull Counter counter, long n) {
+        if (ENABLED) {
+            COUNTS[counter.ordinal()].add(n);
+        }
+    }
+
+    /**
+     * Print a summary of the measurements.
+     * @param out PrintStream Stream to print to.
+     */
+    public static void summary(@NotNull PrintStream out) {
+        out.println("================================================================================");
+        out.printf(Locale.ROOT, "Metrics after %.1f s (latencies in ms)%n", seconds());
+        out.printf(Locale.ROOT, "%-14s %10s %12s %10s %10s %10s %10s %10s%n",
+                "stage", "count", "total", "mean", "p50", "p90", "p99", "max");
+        for (Stage stage : STAGES) {
+            Histogram h = HISTOGRAMS[stage.ordinal()].copy();
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            out.printf(Locale.ROOT, "%-14s %10d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    stage.getLabel(),
+                    h.getTotalCount(),
+                    TOTALS[stage.ordinal()].sum() / 1e6,
+                    h.getMean() / 1e6,
+                    h.getValueAtPercentile(50) / 1e6,
+                    h.getValueAtPercentile(90) / 1e6,
+                    h.getValueAtPercentile(99) / 1e6,
+                    h.getMaxValue() / 1e6);
+        }
+        for (Counter counter : COUNTERS) {
+            out.printf(Locale.ROOT, "%-14s %10d%n", counter.getLabel(), COUNTS[counter.ordinal()].sum());
+        }
+        long hits = COUNTS[Counter.QUERY_CACHE_HITS.ordinal()].sum();
+        long lookups = hits + COUNTS[Counter.QUERY_CACHE_MISSES.ordinal()].sum();
+        if (lookups > 0) {
+            out.printf(Locale.ROOT, "%-14s %9.1f%%%n", "cache-hit-rate", 100.0 * hits / lookups);
+        }
+        long checked = COUNTS[Counter.PRUNE_CHECKED_HITS.ordinal()].sum();
+        if (checked > 0) {
+            out.printf(Locale.ROOT, "%-14s %9.1f%%%n", "prune-overlap",
+                    100.0 * COUNTS[Counter.PRUNE_KEPT_HITS.ordinal()].sum() / checked);
+        }
+        if (!NamedExecutor.all().isEmpty()) {
+            out.printf(Locale.ROOT, "%-14s %10s %12s %10s %10s %10s %10s%n",
+                    "executor", "threads", "completed", "active", "peak", "queued", "peak");
+            for (NamedExecutor executor : NamedExecutor.all()) {
+                out.printf(Locale.ROOT, "%-14s %10d %12d %10d %10d %10d %10d%n",
+                        executor.getName(),
+                        executor.getLargestPoolSize(),
+                        executor.getCompleted(),
+                        executor.getActive(),
+                        executor.getPeakActive(),
+                        executor.getQueued(),
+                        executor.getPeakQueued());
+            }
+        }
+        out.println("================================================================================");
+    }
+
+    /**
+     * Write a snapshot of the measurements to a file.
+     * A JSON file is replaced with the snapshot; a CSV row per stage and counter is appended to any other file.
+     * The snapshots are written one at a time.
+     * @param path Path Path to the file.
+     */
+    public static synchronized void export(@NotNull Path path) {
+        try {
+            if (path.toString().endsWith(".json")) {
+                Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+                Files.write(tmp, json().getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                boolean header = !Files.exists(path);
+                try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    if (header) {
+                        writer.write("seconds,name,count,total_ms,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+                    }
+                    writer.write(csv());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @NotNull
+    private static String json() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\"seconds\":%.3f,\"stages\":{", seconds()));
+        for (int i = 0; i < STAGES.length; i++) {
+            Histogram h = HISTOGRAMS[i].copy();
+            sb.append(i == 0 ? "" : ",").append('"').append(STAGES[i].getLabel()).append("\":");
+            sb.append(String.format(Locale.ROOT,
+                    "{\"count\":%d,\"total_ms\":%.3f,\"mean_ms\":%.3f,\"p50_ms\":%.3f,\"p90_ms\":%.3f,\"p99_ms\":%.3f,\"max_ms\":%.3f}",
+                    h.getTotalCount(),
+                    TOTALS[i].sum() / 1e6,
+                    h.getTotalCount() == 0 ? 0 : h.getMean() / 1e6,
+                    h.getValueAtPercentile(50) / 1e6,
+                    h.getValueAtPercentile(90) / 1e6,
+                    h.getValueAtPercentile(99) / 1e6,
+                    h.getMaxValue() / 1e6));
+        }
+        sb.append("},\"counters\":{");
+        for (int i = 0; i < COUNTERS.length; i++) {
+            sb.append(i == 0 ? "" : ",").append('"').append(COUNTERS[i].getLabel()).append("\":")
+                    .append(COUNTS[i].sum());
+        }
+        sb.append("},\"executors\":{");
+        int i = 0;
+        for (NamedExecutor executor : NamedExecutor.all()) {
+            sb.append(i++ == 0 ? "" : ",").append('"').append(executor.getName()).append("\":");
+            sb.append(String.format(Locale.ROOT,
+                    "{\"threads\":%d,\"completed\":%d,\"active\":%d,\"peak_active\":%d,\"queued\":%d,\"peak_queued\":%d}",
+                    executor.getLargestPoolSize(),
+                    executor.getCompleted(),
+                    executor.getActive(),
+                    executor.getPeakActive(),
+                    executor.getQueued(),
+                    executor.getPeakQueued()));
+        }
+        return sb.append("}}\n").toString();
+    }
+
+    @NotNull
+    private static String csv() {
+        StringBuilder sb = new StringBuilder();
+        double seconds = seconds();
+        for (int i = 0; i < STAGES.length; i++) {
+            Histogram h = HISTOGRAMS[i].copy();
+            sb.append(String.format(Locale.ROOT, "%.3f,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    seconds,
+                    STAGES[i].getLabel(),
+                    h.getTotalCount(),
+                    TOTALS[i].sum() / 1e6,
+                    h.getTotalCount() == 0 ? 0 : h.getMean() / 1e6,
+                    h.getValueAtPercentile(50) / 1e6,
+                    h.getValueAtPercentile(90) / 1e6,
+                    h.getValueAtPercentile(99) / 1e6,
+                    h.getMaxValue() / 1e6));
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            sb.append(String.format(Locale.ROOT, "%.3f,%s,%d,,,,,,%n", seconds, COUNTERS[i].getLabel(), COUNTS[i].sum()));
+        }
+        // One row per gauge of every executor, e.g. "executor.ecn.queued"
+        for (NamedExecutor executor : NamedExecutor.all()) {
+            String name = "executor." + executor.getName();
+            sb.append(String.format(Locale.ROOT, "%.3f,%s.completed,%d,,,,,,%n", seconds, name, executor.getCompleted()));
+            sb.append(String.format(Locale.ROOT, "%.3f,%s.active,%d,,,,,,%n", seconds, name, executor.getActive()));
+            sb.append(String.format(Locale.ROOT, "%.3f,%s.queued,%d,,,,,,%n", seconds, name, executor.getQueued()));
+        }
+        return sb.toString();
+    }
+
+    private static double seconds() {
+        return (System.nanoTime() - STARTED) / 1e9;
+    }
+}
@@ -0,0 +1,136 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor of one part of the program (e.g. the tasks of "ecn" or the paragraphs of the index), with its own threads
+ * named after it, so that it does not share threads with Lucene or anything else which uses the common pool.
+ * Every executor keeps track of the number of tasks waiting in its queue and of the number of its threads which are
+ * busy, and of the highest values of both; these are reported by {@link Metrics} next to the stages.
+ * Executors are created by {@link TaskRunner#newExecutor(String)}.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class NamedExecutor extends ThreadPoolExecutor {
+    private static final List<NamedExecutor> EXECUTORS = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * Create an executor with a fixed number of threads and an unbounded queue.
+     * @param name String Name of the executor (and prefix of the names of its threads).
+     * @param threads Integer Number of threads.
+     * @return NamedExecutor
+     */
+    @NotNull
+    static NamedExecutor fixed(@NotNull String name, int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return new NamedExecutor(name, threads, threads, 0L, new LinkedBlockingQueue<>(),
+                r -> {
+                    // The program does not wait for idle threads of an executor which is never shut down
+                    // (e.g. that of the searches of the index)
+                    Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Create an executor which hands every task to a thread at once (without a queue), using threads made by the
+     * given factory (e.g. virtual threads).
+     * @param name String Name of the executor.
+     * @param factory ThreadFactory Factory of the threads.
+     * @return NamedExecutor
+     */
+    @NotNull
+    static NamedExecutor unbounded(@NotNull String name, @NotNull ThreadFactory factory) {
+        return new NamedExecutor(name, 0, Integer.MAX_VALUE, 1000L, new SynchronousQueue<>(), factory);
+    }
+
+    private NamedExecutor(String name,
+                          int coreThreads,
+                          int maxThreads,
+                          long keepAliveMs,
+                          BlockingQueue<Runnable> queue,
+                          ThreadFactory factory) {
+        super(coreThreads, maxThreads, keepAliveMs, TimeUnit.MILLISECONDS, queue, factory);
+        this.name = name;
+        EXECUTORS.add(this);
+    }
+
+    /**
+     * All the executors created so far (including those which have been shut down).
+     * @return List
+     */
+    @NotNull
+    public static List<NamedExecutor> all() {
+        return EXECUTORS;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+        super.execute(command);
+        peakQueued.accumulateAndGet(getQueue().size(), Math::max);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        active.decrementAndGet();
+        completed.increment();
+        super.afterExecute(r, t);
+    }
+
+    /**
+     * Number of tasks waiting in the queue.
+     * @return Integer
+     */
+    public int getQueued() {
+        return getQueue().size();
+    }
+
+    /**
+     * Number of threads running a task.
+     * @return Integer
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getPeakQueued() {
+        return peakQueued.get();
+    }
+
+    public int getPeakActive() {
+        return peakActive.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+}
@@ -0,0 +1,144 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Class to hold the optional settings of a run.
+ * An option can be given on the command line as "--name=value" (anywhere after the command)
+ * or as the system property "-Dsupport.passage.name=value".
+ * The command line wins if both are given.
+ * Options can also be kept in a properties file given with "--config=PATH", one "name=value" per line
+ * (e.g. "ecn-threads=16"); the command line and the system properties win over the file.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class Options {
+    private static final String PREFIX = "support.passage.";
+
+    /**
+     * Remove the options of the form "--name=value" from the command line arguments and store them.
+     * @param args String[] Command line arguments.
+     * @return String[] The remaining (positional) arguments.
+     */
+    @NotNull
+    public static String[] parse(@NotNull String[] args) {
+        List<String> positional = new ArrayList<>(args.length);
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.indexOf('=') > 2) {
+                int i = arg.indexOf('=');
+                System.setProperty(PREFIX + arg.substring(2, i), arg.substring(i + 1));
+            } else {
+                positional.add(arg);
+            }
+        }
+        String config = get("config", null);
+        if (config != null) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(Paths.get(config), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            for (String name : properties.stringPropertyNames()) {
+                if (get(name, null) == null) {
+                    System.setProperty(PREFIX + name, properties.getProperty(name).trim());
+                }
+            }
+        }
+        return positional.toArray(new String[0]);
+    }
+
+    /**
+     * Get the value of an option.
+     * @param name String Name of the option.
+     * @param defaultValue String Value to use if the option is not set.
+     * @return String
+     */
+    public static String get(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    /**
+     * Get the value of an integer option.
+     * @param name String Name of the option.
+     * @param defaultValue Integer Value to use if the option is not set.
+     * @return Integer
+     */
+    public static int getInt(String name, int defaultValue) {
+        String value = get(name, null);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Name of the run file to write.
+     * If "--gzip=true" is set, ".gz" is added to the name (unless it is already there), so that the run file is
+     * compressed by the {@link RunWriter}.
+     * @param name String Name of the run file.
+     * @return String
+     */
+    @NotNull
+    public static String runFile(@NotNull String name) {
+        if (Boolean.parseBoolean(get("gzip", "false")) && !name.endsWith(".gz")) {
+            return name + ".gz";
+        }
+        return name;
+    }
+
+    /**
+     * Name of the paragraph ID field of the paragraph index ("--id-field=NAME", DEFAULT = "id").
+     * Every method reads the paragraph IDs from this field, and the paragraph ID column and the doc values of the
+     * field are only used if they are of this field. The indexes built by {@link lucene.Index.Build} store the
+     * paragraph ID and its doc values in this field too.
+     * @return String
+     */
+    @NotNull
+    public static String idField() {
+        return idField("id");
+    }
+
+    /**
+     * Name of the paragraph ID field of an index whose ID field has another default name.
+     * @param defaultField String Name of the field if "--id-field" is not set.
+     * @return String
+     */
+    @NotNull
+    public static String idField(@NotNull String defaultField) {
+        return get("id-field", defaultField);
+    }
+
+    /**
+     * Number of worker threads to use for the per-query work.
+     * Set with "--threads=N". Defaults to the number of processors.
+     * @return Integer
+     */
+    public static int threads() {
+        return Math.max(1, getInt("threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Whether the per-query work runs on one virtual thread per task ("--virtual-threads=true").
+     * Virtual threads need Java 21 or later; see {@link TaskRunner#newExecutor(String)}.
+     * @return Boolean
+     */
+    public static boolean virtualThreads() {
+        return Boolean.parseBoolean(get("virtual-threads", "false"));
+    }
+
+    /**
+     * Maximum number of tasks in flight, i.e. of query results held in memory before they are written.
+     * Set with "--pending=N". Defaults to 4 * threads, or to 1024 with virtual threads.
+     * @return Integer
+     */
+    public static int pending() {
+        return Math.max(1, getInt("pending", virtualThreads() ? 1024 : 4 * threads()));
+    }
+}
@@ -69,7 +69,7 @@ public class PseudoDocument {
 
     public boolean containsDocument(Document document) {
         for (Document d : this.documentList) {
-            if (d.getField("id").stringValue().equalsIgnoreCase(document.getField("id").toString())) {
+            if (d.getField(Options.idField()).stringValue().equalsIgnoreCase(document.getField(Options.idField()).toString())) {
                 return true;
             }
         }
@@ -8,6 +8,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.*;
@@ -29,14 +30,52 @@ public class RM3Expand {
                                                                    String queryStr,
                                                                    boolean omitQueryTerms,
                                                                    Analyzer analyzer) throws IOException {
-        final BooleanQuery booleanQuery = toQuery(queryStr, analyzer);
+        return getExpansionTerms(searcher, takeKTerms, takeKDocs, queryStr, null, omitQueryTerms, analyzer);
+    }
+
+    /**
+     * Get the expansion terms of a query whose tokens are already known (e.g. from a {@link lucene.Workload}).
+     * The query tokens are those the analyzer makes of the query text, or null to analyze the query text here.
+     */
+    @NotNull
+    public static List<Map.Entry<String, Float>> getExpansionTerms(IndexSearcher searcher,
+                                                                   int takeKTerms,
+                                                                   int takeKDocs,
+                                                                   String queryStr,
+                                                                   @Nullable List<String> queryTokens,
+                                                                   boolean omitQueryTerms,
+                                                                   Analyzer analyzer) throws IOException {
+        // RM3 is CPU-heavy: limit the number of tasks doing it at the same time
+        try (Limits.Permit ignored = Limits.enter(Limits.Stage.EXPANSION)) {
+            return expand(searcher, takeKTerms, takeKDocs, queryStr, queryTokens, omitQueryTerms, analyzer);
+        }
+    }
+
+    @NotNull
+    private static List<Map.Entry<String, Float>> expand(IndexSearcher searcher,
+                                                         int takeKTerms,
+                                                         int takeKDocs,
+                                                         String queryStr,
+                                                         @Nullable List<String> queryTokens,
+                                                         boolean omitQueryTerms,
+                                                         Analyzer analyzer) throws IOException {
+        long start = Metrics.start();
+        Events.RM3Expansion event = new Events.RM3Expansion();
+        event.begin();
+        final BooleanQuery booleanQuery = queryTokens == null ? toQuery(queryStr, analyzer) : toQuery(queryTokens);
         HashMap<Document, Float> results = RAMIndex.searchIndex(booleanQuery, takeKDocs, searcher);
         //System.out.println("Found " + results.size() + " initial results.");
 
         final Map<String, Float> wordFreqs = new HashMap<>();
 
         if(!omitQueryTerms) {
-            addTokens(queryStr, 1.0f, wordFreqs, analyzer);
+            if (queryTokens == null) {
+                addTokens(queryStr, 1.0f, wordFreqs, analyzer);
+            } else {
+                for (String token : queryTokens) {
+                    wordFreqs.merge(token, 1.0f, Float::sum);
+                }
+            }
         }
 
         // guess if we have log scores...
@@ -68,13 +107,27 @@ public class RM3Expand {
         }
 
         ArrayList<Map.Entry<String, Float>> allWordFreqs = new ArrayList<>(wordFreqs.entrySet());
-        allWordFreqs.sort((kv1, kv2) -> {
-            return Float.compare(kv2.getValue(), kv1.getValue()); // sort descending by flipping
-        });
+        float[] freqs = new float[allWordFreqs.size()];
+        for (int i = 0; i < freqs.length; i++) {
+            freqs[i] = allWordFreqs.get(i).getValue();
+        }
 
-        List<Map.Entry<String, Float>> expansionTerms = allWordFreqs.subList(0, Math.min(takeKTerms, allWordFreqs.size()));
+        // Select the top K terms in descending order of weight (no need to sort all the terms)
+        List<Map.Entry<String, Float>> expansionTerms = new ArrayList<>(Math.min(takeKTerms, freqs.length));
+        for (int i : TopK.select(freqs, freqs.length, takeKTerms)) {
+            expansionTerms.add(allWordFreqs.get(i));
+        }
 
         //System.out.println("RM3 Expansions for \""+queryStr+ "\": "+expansionTerms.toString());
+        Metrics.stop(Metrics.Stage.EXPANSION, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.query = queryStr;
+            event.feedbackDocs = results.size();
+            event.vocabulary = wordFreqs.size();
+            event.terms = expansionTerms.size();
+            event.commit();
+        }
         return expansionTerms;
 
     }
@@ -82,9 +135,12 @@ public class RM3Expand {
         List<String> tokens = new ArrayList<>();
 
         tokenizeQuery(queryStr, "text", tokens, analyzer);
+        return toQuery(tokens);
+    }
+    private static BooleanQuery toQuery(@NotNull List<String> tokens) {
         BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
 
-        for (String token : tokens) {
+        for (String token : tokens.subList(0, Math.min(tokens.size(), 64))) {
             booleanQuery.add(new TermQuery(new Term("text", token)), BooleanClause.Occur.SHOULD);
         }
         return booleanQuery.build();
@@ -116,6 +172,10 @@ public class RM3Expand {
     public static BooleanQuery toRm3Query(String queryStr, List<Map.Entry<String, Float>> relevanceModel, Analyzer analyzer) throws IOException {
         List<String> tokens = new ArrayList<>();
         tokenizeQuery(queryStr, "text", tokens, analyzer);
+        return toRm3Query(tokens, relevanceModel);
+    }
+    public static BooleanQuery toRm3Query(@NotNull List<String> queryTokens, List<Map.Entry<String, Float>> relevanceModel) {
+        List<String> tokens = queryTokens.subList(0, Math.min(queryTokens.size(), 64));
         BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
 
         // Add original query terms
@@ -0,0 +1,235 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Class to format run strings ("query Q0 paraID rank score method") straight into a growable byte buffer.
+ * Ids are copied character by character (non-ASCII ids are encoded as UTF-8), ranks are written digit by digit
+ * and scores are formatted through a reused StringBuilder, so formatting a run string does not allocate.
+ * The scores are formatted exactly as Float.toString/Double.toString do, so the run files are byte-identical
+ * to the ones written using string concatenation.
+ * A formatter is not thread-safe. The {@link RunWriter} hands out one formatter per task and reuses it once
+ * it has been written.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class RunLineFormatter {
+    private static final byte[] Q0 = " Q0 ".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int len = 0;
+    private final StringBuilder digits = new StringBuilder(32);
+
+    /**
+     * Constructor.
+     * @param capacity Integer Initial size of the buffer in bytes.
+     */
+    public RunLineFormatter(int capacity) {
+        this.buf = new byte[Math.max(64, capacity)];
+    }
+
+    /**
+     * Write the run string "query Q0 paraId rank score method".
+     * @param query String Query ID.
+     * @param paraId String Paragraph ID.
+     * @param rank Integer Rank.
+     * @param score Float Score.
+     * @param method String Name of the method.
+     * @return RunLineFormatter This formatter.
+     */
+    public RunLineFormatter line(String query, String paraId, int rank, float score, String method) {
+        head(query, null, paraId, rank);
+        digits.setLength(0);
+        digits.append(score);
+        return tail(method);
+    }
+
+    /**
+     * Write the run string "query Q0 paraId rank score method".
+     * @param query String Query ID.
+     * @param paraId String Paragraph ID.
+     * @param rank Integer Rank.
+     * @param score Double Score.
+     * @param method String Name of the method.
+     * @return RunLineFormatter This formatter.
+     */
+    public RunLineFormatter line(String query, String paraId, int rank, double score, String method) {
+        head(query, null, paraId, rank);
+        digits.setLength(0);
+        digits.append(score);
+        return tail(method);
+    }
+
+    /**
+     * Write the run string "query Q0 paraId rank score method".
+     * @param query String Query ID.
+     * @param paraId String Paragraph ID.
+     * @param rank Integer Rank.
+     * @param score Integer Score.
+     * @param method String Name of the method.
+     * @return RunLineFormatter This formatter.
+     */
+    public RunLineFormatter line(String query, String paraId, int rank, int score, String method) {
+        head(query, null, paraId, rank);
+        digits.setLength(0);
+        digits.append(score);
+        return tail(method);
+    }
+
+    /**
+     * Write the run string "queryId+entityId Q0 paraId rank score method".
+     * @param queryId String Query ID.
+     * @param entityId String Entity ID.
+     * @param paraId String Paragraph ID.
+     * @param rank Integer Rank.
+     * @param score Float Score.
+     * @param method String Name of the method.
+     * @return RunLineFormatter This formatter.
+     */
+    public RunLineFormatter line(String queryId, String entityId, String paraId, int rank, float score,
+                                 String method) {
+        head(queryId, entityId, paraId, rank);
+        digits.setLength(0);
+        digits.append(score);
+        return tail(method);
+    }
+
+    /**
+     * Write the run string "queryId+entityId Q0 paraId rank score method".
+     * @param queryId String Query ID.
+     * @param entityId String Entity ID.
+     * @param paraId String Paragraph ID.
+     * @param rank Integer Rank.
+     * @param score Double Score.
+     * @param method String Name of the method.
+     * @return RunLineFormatter This formatter.
+     */
+    public RunLineFormatter line(String queryId, String entityId, String paraId, int rank, double score,
+                                 String method) {
+        head(queryId, entityId, paraId, rank);
+        digits.setLength(0);
+        digits.append(score);
+        return tail(method);
+    }
+
+    private void head(String queryId, String entityId, String paraId, int rank) {
+        ascii(queryId);
+        if (entityId != null) {
+            put((byte) '+');
+            ascii(entityId);
+        }
+        ensure(Q0.length);
+        System.arraycopy(Q0, 0, buf, len, Q0.length);
+        len += Q0.length;
+        ascii(paraId);
+        put((byte) ' ');
+        integer(rank);
+        put((byte) ' ');
+    }
+
+    @NotNull
+    private RunLineFormatter tail(String method) {
+        ascii(digits);
+        put((byte) ' ');
+        ascii(method);
+        put((byte) '\n');
+        return this;
+    }
+
+    /**
+     * Copy the characters into the buffer. Falls back to UTF-8 encoding if a character is not ASCII.
+     * @param s CharSequence
+     */
+    private void ascii(@NotNull CharSequence s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                utf8(s.subSequence(i, n));
+                return;
+            }
+            buf[len++] = (byte) c;
+        }
+    }
+
+    private void utf8(@NotNull CharSequence s) {
+        byte[] b = s.toString().getBytes(StandardCharsets.UTF_8);
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, len, b.length);
+        len += b.length;
+    }
+
+    private void integer(int i) {
+        if (i < 0) {
+            digits.setLength(0);
+            digits.append(i);
+            ascii(digits);
+            return;
+        }
+        int n = 1;
+        for (int j = i; j >= 10; j /= 10) {
+            n++;
+        }
+        ensure(n);
+        int end = len + n;
+        for (int k = end - 1; k >= len; k--) {
+            buf[k] = (byte) ('0' + i % 10);
+            i /= 10;
+        }
+        len = end;
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    private void ensure(int n) {
+        if (len + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, len + n));
+        }
+    }
+
+    /**
+     * Number of bytes written.
+     * @return Integer
+     */
+    public int length() {
+        return len;
+    }
+
+    /**
+     * The bytes written so far. Only the first {@link #length()} bytes are valid.
+     * @return byte[]
+     */
+    public byte[] bytes() {
+        return buf;
+    }
+
+    /**
+     * Write the bytes to the stream.
+     * @param out OutputStream
+     * @throws IOException IOException
+     */
+    public void writeTo(@NotNull OutputStream out) throws IOException {
+        out.write(buf, 0, len);
+    }
+
+    /**
+     * Empty the buffer so that the formatter can be reused.
+     */
+    public void reset() {
+        len = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, len, StandardCharsets.UTF_8);
+    }
+}
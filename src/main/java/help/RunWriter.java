@@ -0,0 +1,322 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class to write the run strings produced by tasks running in parallel to a run file.
+ * Every task formats its run strings into its own buffer, a {@link RunLineFormatter} obtained from
+ * {@link #newBuffer()}, and hands it over together with the sequence number it got from {@link #reserve()}.
+ * The buffers go into a lock-free queue which is drained by a single writer thread.
+ * The writer thread copies the buffers into a reusable byte buffer and streams them to disk in sequence order,
+ * so the run file is the same no matter in which order the tasks finish. At most "maxPending" buffers are held
+ * in memory at any time and written buffers are reused.
+ * The run file is written to a temporary file which is renamed to the run file when the writer is closed,
+ * so a failed or interrupted run never leaves a half-written run file behind.
+ * If the name of the run file ends with ".gz" the run file is compressed using gzip.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class RunWriter implements Closeable {
+    private static final int BYTE_BUFFER_SIZE = 1 << 20;
+
+    private final Path target;
+    private final Path temp;
+    private final OutputStream out;
+    private final Predicate<String> filter;
+    private final long flushNanos;
+    private final ConcurrentLinkedQueue<Batch> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<RunLineFormatter> pool = new ConcurrentLinkedQueue<>();
+    private final Semaphore window;
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+    private volatile IOException error = null;
+
+    // Only used by the writer thread
+    private final byte[] bytes = new byte[BYTE_BUFFER_SIZE];
+    private int position = 0;
+    private long lastFlush = System.nanoTime();
+
+    /**
+     * A buffer of run strings with its sequence number.
+     */
+    private static final class Batch {
+        private final int seq;
+        private final RunLineFormatter lines;
+
+        private Batch(int seq, RunLineFormatter lines) {
+            this.seq = seq;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Constructor.
+     * The number of buffers held in memory is set using the option "--pending=N"
+     * (DEFAULT = 4 * threads, or 1024 with virtual threads).
+     * @param filePath String Path to the run file. An existing file is replaced when the writer is closed.
+     * @throws IOException IOException
+     */
+    public RunWriter(String filePath) throws IOException {
+        this(filePath, Options.pending(), null);
+    }
+
+    /**
+     * Constructor.
+     * @param filePath String Path to the run file. An existing file is replaced when the writer is closed.
+     * @param filter Predicate Only run strings accepted by the filter are written.
+     *               The filter is called by the writer thread in sequence order.
+     * @throws IOException IOException
+     */
+    public RunWriter(String filePath, Predicate<String> filter) throws IOException {
+        this(filePath, Options.pending(), filter);
+    }
+
+    /**
+     * Constructor.
+     * The buffered bytes are flushed to disk at least every "--flush-ms=N" milliseconds (DEFAULT = 1000)
+     * while the writer thread is idle, and whenever the byte buffer is full.
+     * @param filePath String Path to the run file. An existing file is replaced when the writer is closed.
+     * @param maxPending Integer Maximum number of buffers held in memory.
+     * @param filter Predicate Only run strings accepted by the filter are written. May be null.
+     * @throws IOException IOException
+     */
+    public RunWriter(String filePath, int maxPending, Predicate<String> filter) throws IOException {
+        this.target = Paths.get(filePath).toAbsolutePath();
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        OutputStream os = new FileOutputStream(temp.toFile(), false);
+        this.out = filePath.endsWith(".gz") ? new GZIPOutputStream(os, BYTE_BUFFER_SIZE) : os;
+        this.filter = filter;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Options.getInt("flush-ms", 1000));
+        this.window = new Semaphore(Math.max(1, maxPending));
+        this.writerThread = new Thread(this::drain, "run-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Reserve the next sequence number.
+     * Blocks while "maxPending" buffers are already waiting to be written.
+     * Every sequence number reserved must be handed back using {@link #submit(int, RunLineFormatter)},
+     * even if nothing was appended to the buffer.
+     * @return Integer The sequence number.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public int reserve() throws InterruptedException {
+        window.acquire();
+        return reserved.getAndIncrement();
+    }
+
+    /**
+     * Get an empty buffer to format run strings into.
+     * Buffers are reused once they have been written.
+     * @return RunLineFormatter
+     */
+    @NotNull
+    public RunLineFormatter newBuffer() {
+        RunLineFormatter buffer = pool.poll();
+        return buffer != null ? buffer : new RunLineFormatter(8192);
+    }
+
+    /**
+     * Hand over the run strings of a buffer.
+     * @param seq Integer Sequence number obtained from {@link #reserve()}.
+     * @param lines RunLineFormatter Run strings of the buffer.
+     */
+    public void submit(int seq, @NotNull RunLineFormatter lines) {
+        queue.offer(new Batch(seq, lines));
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Body of the writer thread.
+     * If writing fails (e.g. the filter throws), the writer thread keeps taking the buffers without writing them,
+     * so that the tasks are not blocked in {@link #reserve()}, and the failure is thrown by {@link #close()}.
+     * Should the writer thread die anyway, the waiting tasks are let through so that they do not block forever.
+     */
+    private void drain() {
+        try {
+            drainQueue();
+        } catch (Throwable t) {
+            if (error == null) {
+                error = new IOException("The run writer failed", t);
+            }
+            window.release(Integer.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * Write the buffers in sequence order until the writer is closed and all reserved buffers are written.
+     * Buffers which arrive out of order are parked until all buffers before them have been written.
+     */
+    private void drainQueue() {
+        Map<Integer, RunLineFormatter> pending = new HashMap<>();
+        int next = 0;
+        while (true) {
+            Batch batch = queue.poll();
+            if (batch == null) {
+                if (closed && next == reserved.get()) {
+                    break;
+                }
+                idle();
+                continue;
+            }
+            pending.put(batch.seq, batch.lines);
+            RunLineFormatter lines;
+            while ((lines = pending.remove(next)) != null) {
+                long start = Metrics.start();
+                try {
+                    write(lines);
+                } catch (RuntimeException e) {
+                    if (error == null) {
+                        error = new IOException("Writing the run file failed", e);
+                    }
+                }
+                Metrics.stop(Metrics.Stage.WRITE, start);
+                Metrics.count(Metrics.Counter.RUN_BYTES, lines.length());
+                lines.reset();
+                pool.offer(lines);
+                next++;
+                window.release();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Wait for more buffers. Flush the buffered bytes if they have been waiting for longer than "--flush-ms".
+     */
+    private void idle() {
+        if (position == 0) {
+            LockSupport.park(this);
+            return;
+        }
+        long wait = lastFlush + flushNanos - System.nanoTime();
+        if (wait <= 0) {
+            flush();
+        } else {
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    private void write(@NotNull RunLineFormatter lines) {
+        if (error != null) {
+            return;
+        }
+        byte[] b = lines.bytes();
+        if (filter == null) {
+            copy(b, 0, lines.length());
+            return;
+        }
+        // Only the filtered run strings are turned into Strings
+        int start = 0;
+        for (int i = 0; i < lines.length(); i++) {
+            if (b[i] == '\n') {
+                if (filter.test(new String(b, start, i - start, StandardCharsets.UTF_8))) {
+                    copy(b, start, i + 1 - start);
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Copy the bytes into the byte buffer, writing the byte buffer out whenever it is full.
+     */
+    private void copy(byte[] b, int off, int n) {
+        while (n > 0) {
+            if (position == bytes.length) {
+                writeBytes(false);
+            }
+            int k = Math.min(n, bytes.length - position);
+            System.arraycopy(b, off, bytes, position, k);
+            position += k;
+            off += k;
+            n -= k;
+        }
+    }
+
+    /**
+     * Write out the byte buffer and, if asked for, flush the file stream.
+     */
+    private void writeBytes(boolean flush) {
+        Events.RunFlush event = new Events.RunFlush();
+        event.begin();
+        int n = position;
+        try {
+            out.write(bytes, 0, position);
+            if (flush) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        position = 0;
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = n;
+            event.flushed = flush;
+            event.commit();
+        }
+    }
+
+    private void flush() {
+        writeBytes(true);
+        lastFlush = System.nanoTime();
+    }
+
+    /**
+     * Wait for all reserved buffers to be written, close the temporary file and rename it to the run file.
+     * @throws IOException If writing to the run file failed, or if interrupted while waiting for the writer thread
+     * (which may then still be writing). The run file is not touched in these cases and the temporary file is deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Files.deleteIfExists(temp);
+            throw new InterruptedIOException("Interrupted while waiting for the run file to be written");
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            Files.deleteIfExists(temp);
+            throw error;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
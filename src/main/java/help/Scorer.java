@@ -0,0 +1,27 @@
+package help;
+
+import java.io.IOException;
+
+/**
+ * A method which scores the support passages of a query-entity pair on request (e.g. by the server), using the
+ * rankings and the index it has loaded. The run strings are exactly those the method writes for the pair when it
+ * produces a whole run file.
+ * Some methods score all the entities of a query together; they may also format the run strings of the other
+ * entities of the query, so the caller picks out those of the pair ("queryId+entityId").
+ * A scorer must be safe to use from several threads at once, as the tasks of a run are.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public interface Scorer {
+
+    /**
+     * Format the run strings of the support passages of a query-entity pair.
+     * Nothing is formatted if the method has no support passages for the pair (e.g. if the entity is not a
+     * relevant entity retrieved for the query).
+     * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
+     */
+    void score(String queryId, String entityId, RunLineFormatter runStrings) throws IOException;
+}
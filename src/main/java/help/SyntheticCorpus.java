@@ -0,0 +1,386 @@
+package help;
+
+import co.nstant.in.cbor.CborEncoder;
+import co.nstant.in.cbor.CborException;
+import co.nstant.in.cbor.model.Array;
+import co.nstant.in.cbor.model.ByteString;
+import co.nstant.in.cbor.model.UnicodeString;
+import co.nstant.in.cbor.model.UnsignedInteger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generator of a synthetic TREC-CAR-like corpus for load tests, so that the whole pipeline can be run without the
+ * real paragraph corpus. It writes to a directory:
+ *
+ *      paragraphs.cbor  Paragraphs in the CBOR format of the TREC CAR paragraph corpus, readable by
+ *                       DeserializeData.iterableParagraphs: [0, paraId (bytes), [body, ...]], where a body is
+ *                       either [0, text] or [1, [0, page, [], pageId (bytes), anchorText]].
+ *      paragraphs.run   Paragraph run file: candidate paragraphs for every query.
+ *      entities.run     Entity run file: candidate entities for every query.
+ *      entities.qrels   Entity ground truth file.
+ *      passages.qrels   Support passage ground truth file (for every relevant query-entity pair).
+ *
+ * The words of the paragraphs and the entities they link to are drawn from Zipf distributions (with the exponent
+ * given by "--zipf-exponent=X", DEFAULT = 1.0), so that a few entities are linked from very many paragraphs and
+ * most from only a few, as in Wikipedia. The number of words of a paragraph follows a log-normal distribution
+ * with a median of 50 words, and a paragraph has about one link every 25 words. The anchor text of a link is the
+ * name of the entity, so the paragraphs which mention an entity also contain its name.
+ *
+ * A query is the name of an entity (as the page-level queries of TREC CAR). Its candidate paragraphs are paragraphs
+ * which link to the entity, ranked above random other paragraphs, and its candidate entities are the entities
+ * which are linked together with it most often. The corpus only depends on the sizes and the seed
+ * ("--seed=N", DEFAULT = 42), so a load test can be repeated exactly.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class SyntheticCorpus {
+    private static final int PARAS_PER_QUERY = 100;
+    private static final int ENTITIES_PER_QUERY = 50;
+    private static final int RELEVANT_PARAS_PER_QUERY = 60;
+    private static final int WORDS = 50000;
+    private static final int FIRST_NAME_WORD = 1000;
+    private static final String CONSONANTS = "bcdfghjklmnprstvwxyz";
+    private static final String VOWELS = "aeiou";
+
+    private final int numParagraphs;
+    private final int numEntities;
+    private final int numQueries;
+    private final long seed;
+    private final Random random;
+    private final double[] wordCdf;
+    private final double[] entityCdf;
+    // Entities used as queries (by Zipf rank) and the query of every such entity (or -1)
+    private final int[] queryEntities;
+    private final int[] queryOf;
+    // For every query: a sample of the paragraphs which link to its entity with their links,
+    // the number of paragraphs seen so far, and how often every other entity was linked together with it
+    private final List<List<int[]>> samples = new ArrayList<>();
+    private final int[] seen;
+    private final List<HashMap<Integer, Integer>> coLinks = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param numParagraphs Integer Number of paragraphs of the corpus.
+     * @param numEntities Integer Number of entities which the paragraphs can link to.
+     * @param numQueries Integer Number of queries.
+     */
+    public SyntheticCorpus(int numParagraphs, int numEntities, int numQueries) {
+        if (numQueries > numEntities / 2) {
+            throw new IllegalArgumentException("At most half of the " + numEntities + " entities can be queries.");
+        }
+        this.numParagraphs = numParagraphs;
+        this.numEntities = numEntities;
+        this.numQueries = numQueries;
+        this.seed = Options.getInt("seed", 42);
+        this.random = new Random(seed);
+        double exponent = Double.parseDouble(Options.get("zipf-exponent", "1.0"));
+        this.wordCdf = zipf(WORDS, exponent);
+        this.entityCdf = zipf(numEntities, exponent);
+        this.queryEntities = new int[numQueries];
+        this.queryOf = new int[numEntities];
+        this.seen = new int[numQueries];
+        Arrays.fill(queryOf, -1);
+        for (int q = 0; q < numQueries; q++) {
+            // Distinct entities, drawn like the links so that frequent entities are more likely to be queries
+            int e;
+            do {
+                e = sample(entityCdf);
+            } while (queryOf[e] >= 0);
+            queryEntities[q] = e;
+            queryOf[e] = q;
+            samples.add(new ArrayList<>());
+            coLinks.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Generate the corpus, runs and ground truth files.
+     * @param outDir String Directory to write to.
+     * @throws IOException IOException
+     */
+    public void generate(String outDir) throws IOException {
+        Path dir = Paths.get(outDir);
+        Files.createDirectories(dir);
+        System.out.print("Writing " + numParagraphs + " paragraphs linking to " + numEntities + " entities...");
+        writeParagraphs(dir.resolve("paragraphs.cbor"));
+        System.out.println("[Done].");
+        System.out.print("Writing runs and ground truth for " + numQueries + " queries...");
+        writeRuns(dir);
+        System.out.println("[Done].");
+    }
+
+    private void writeParagraphs(@NotNull Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            CborEncoder encoder = new CborEncoder(out);
+            for (int p = 0; p < numParagraphs; p++) {
+                encoder.encode(paragraph(p));
+            }
+        } catch (CborException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Make a paragraph and remember it if it links to the entity of a query.
+     */
+    @NotNull
+    private Array paragraph(int p) {
+        // Log-normal number of words with a median of 50
+        int length = (int) Math.max(5, Math.min(400, Math.round(50 * Math.exp(0.7 * random.nextGaussian()))));
+        int[] links = new int[poisson(length / 25.0)];
+        for (int i = 0; i < links.length; i++) {
+            links[i] = sample(entityCdf);
+        }
+        // Put every link after a random word of the text
+        int[] positions = new int[links.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(length);
+        }
+        Arrays.sort(positions);
+
+        Array bodies = new Array();
+        StringBuilder text = new StringBuilder();
+        int link = 0;
+        for (int w = 0; w < length; w++) {
+            text.append(w == 0 ? "" : " ").append(word(sample(wordCdf)));
+            while (link < links.length && positions[link] == w) {
+                bodies.add(new Array().add(new UnsignedInteger(0)).add(new UnicodeString(text.append(' ').toString())));
+                text.setLength(0);
+                String name = entityName(links[link]);
+                bodies.add(new Array()
+                        .add(new UnsignedInteger(1))
+                        .add(new Array()
+                                .add(new UnsignedInteger(0))
+                                .add(new UnicodeString(name))
+                                .add(new Array())
+                                .add(new ByteString(entityId(links[link]).getBytes(StandardCharsets.UTF_8)))
+                                .add(new UnicodeString(name))));
+                link++;
+            }
+        }
+        if (text.length() > 0) {
+            bodies.add(new Array().add(new UnsignedInteger(0)).add(new UnicodeString(text.toString())));
+        }
+        for (int e : new LinkedHashSet<>(toList(links))) {
+            if (queryOf[e] >= 0) {
+                remember(queryOf[e], p, links);
+            }
+        }
+        return new Array()
+                .add(new UnsignedInteger(0))
+                .add(new ByteString(paraId(p).getBytes(StandardCharsets.UTF_8)))
+                .add(bodies);
+    }
+
+    /**
+     * Remember a paragraph which links to the entity of a query: count the entities linked together with it,
+     * and keep a uniform sample (reservoir) of such paragraphs as the relevant candidates of the query.
+     */
+    private void remember(int q, int p, @NotNull int[] links) {
+        int self = queryEntities[q];
+        for (int e : new LinkedHashSet<>(toList(links))) {
+            if (e != self) {
+                coLinks.get(q).merge(e, 1, Integer::sum);
+            }
+        }
+        int[] entry = new int[links.length + 1];
+        entry[0] = p;
+        System.arraycopy(links, 0, entry, 1, links.length);
+        List<int[]> sample = samples.get(q);
+        int n = seen[q]++;
+        if (sample.size() < RELEVANT_PARAS_PER_QUERY) {
+            sample.add(entry);
+        } else {
+            int i = random.nextInt(n + 1);
+            if (i < RELEVANT_PARAS_PER_QUERY) {
+                sample.set(i, entry);
+            }
+        }
+    }
+
+    private void writeRuns(@NotNull Path dir) throws IOException {
+        try (PrintWriter paraRun = writer(dir.resolve("paragraphs.run"));
+             PrintWriter entityRun = writer(dir.resolve("entities.run"));
+             PrintWriter entityQrels = writer(dir.resolve("entities.qrels"));
+             PrintWriter passageQrels = writer(dir.resolve("passages.qrels"))) {
+            for (int q = 0; q < numQueries; q++) {
+                String queryId = entityId(queryEntities[q]);
+
+                // Candidate paragraphs: those linking to the entity of the query above random other paragraphs
+                HashMap<Integer, Double> paraScores = new HashMap<>();
+                for (int[] entry : samples.get(q)) {
+                    paraScores.put(entry[0], 10 + 2 * random.nextGaussian());
+                }
+                while (paraScores.size() < Math.min(PARAS_PER_QUERY, numParagraphs)) {
+                    paraScores.putIfAbsent(random.nextInt(numParagraphs), 5 + 2 * random.nextGaussian());
+                }
+                int rank = 1;
+                for (Map.Entry<Integer, Double> entry : Utilities.sortByValueDescending(paraScores).entrySet()) {
+                    paraRun.println(runLine(queryId, paraId(entry.getKey()), rank++, entry.getValue()));
+                }
+
+                // Candidate entities: the entity of the query and the entities most often linked together with it
+                List<Integer> entities = new ArrayList<>();
+                entities.add(queryEntities[q]);
+                for (Integer e : Utilities.sortByValueDescending(coLinks.get(q)).keySet()) {
+                    if (entities.size() == ENTITIES_PER_QUERY) {
+                        break;
+                    }
+                    entities.add(e);
+                }
+                LinkedHashSet<Integer> relevant = new LinkedHashSet<>();
+                for (int i = 0; i < entities.size(); i++) {
+                    int e = entities.get(i);
+                    entityRun.println(runLine(queryId, entityId(e), i + 1, entities.size() - i));
+                    // The entity of the query and entities often linked with it are more likely to be relevant
+                    Integer count = coLinks.get(q).get(e);
+                    if (i == 0 || (count != null && count >= 2 && random.nextDouble() < 0.7)) {
+                        relevant.add(e);
+                        entityQrels.println(queryId + " 0 " + entityId(e) + " 1");
+                    }
+                }
+
+                // Support passages: candidate paragraphs linking to both the entity of the query and a relevant entity
+                for (int e : relevant) {
+                    for (int[] entry : samples.get(q)) {
+                        for (int i = 1; i < entry.length; i++) {
+                            if (entry[i] == e) {
+                                passageQrels.println(queryId + "+" + entityId(e) + " 0 " + paraId(entry[0]) + " 1");
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static PrintWriter writer(@NotNull Path file) throws IOException {
+        return new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    private static String runLine(String queryId, String id, int rank, double score) {
+        return queryId + " Q0 " + id + " " + rank + " " + String.format(Locale.ROOT, "%.4f", score) + " synthetic";
+    }
+
+    /**
+     * The paragraph ID of a paragraph: 40 hex digits (as the SHA-1 IDs of TREC CAR) made from its number and the seed.
+     */
+    @NotNull
+    private String paraId(int p) {
+        StringBuilder sb = new StringBuilder(40);
+        long h = seed * 0x9E3779B97F4A7C15L + p;
+        for (int i = 0; i < 3; i++) {
+            h = mix(h + i);
+            String hex = Long.toHexString(h);
+            for (int j = hex.length(); j < 16; j++) {
+                sb.append('0');
+            }
+            sb.append(hex);
+        }
+        return sb.substring(0, 40);
+    }
+
+    /**
+     * The page name of an entity: two capitalized words, unique for every entity (e.g. "Bakofe Tisuma").
+     */
+    @NotNull
+    private static String entityName(int e) {
+        int first = e % 1000;
+        int second = e / 1000 + 37 * first;
+        return capitalize(word(FIRST_NAME_WORD + first)) + " " + capitalize(word(FIRST_NAME_WORD + second));
+    }
+
+    @NotNull
+    private static String entityId(int e) {
+        return "enwiki:" + entityName(e).replace(" ", "%20");
+    }
+
+    /**
+     * The word with a given rank: syllables made from the rank. Every word has at least two syllables,
+     * so that no word is a stop word.
+     */
+    @NotNull
+    private static String word(int rank) {
+        StringBuilder sb = new StringBuilder();
+        int n = rank + CONSONANTS.length() * VOWELS.length();
+        do {
+            int syllable = n % (CONSONANTS.length() * VOWELS.length());
+            sb.append(CONSONANTS.charAt(syllable / VOWELS.length())).append(VOWELS.charAt(syllable % VOWELS.length()));
+            n /= CONSONANTS.length() * VOWELS.length();
+        } while (n > 0);
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String capitalize(@NotNull String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    @NotNull
+    private static List<Integer> toList(@NotNull int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int v : values) {
+            list.add(v);
+        }
+        return list;
+    }
+
+    /**
+     * Cumulative distribution of a Zipf distribution over n ranks.
+     */
+    @NotNull
+    private static double[] zipf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private int sample(@NotNull double[] cdf) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return i >= 0 ? i : Math.min(-i - 1, cdf.length - 1);
+    }
+
+    private int poisson(double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int n = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            n++;
+        }
+        return n;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,151 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Class to run the tasks of a feature (one per query or one per query-entity pair) on an executor.
+ * Every task formats its run strings into its own buffer. The buffers are handed to a {@link RunWriter} which
+ * writes them in the order in which the tasks were given, so the run file is byte-identical to the one
+ * produced by running the tasks serially.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class TaskRunner {
+
+    /**
+     * A unit of work which formats its run strings into the buffer passed to it.
+     */
+    public interface Task {
+        void run(RunLineFormatter runStrings) throws IOException;
+    }
+
+    private static volatile boolean warned = false;
+
+    /**
+     * Create a dedicated executor, named after the part of the program which uses it (e.g. "ecn" or "index").
+     * Its number of threads is set using "--NAME-threads=N" (e.g. "--ecn-threads=16"), or else the "threads"
+     * option. Its threads are named "NAME-1", "NAME-2", ... and its queue depth and busy threads are reported by
+     * {@link Metrics}.
+     * With "--virtual-threads=true" every task runs on its own virtual thread instead, so that tasks waiting for
+     * I/O do not hold a thread of the pool; the CPU-heavy stages are then limited by {@link Limits} and the number
+     * of tasks in flight by "--pending=N". Virtual threads need Java 21 or later (the code is built for Java 11,
+     * so they are looked up when the program runs); on an older JVM the pool of threads is used.
+     * @param name String Name of the executor.
+     * @return ExecutorService
+     */
+    @NotNull
+    public static ExecutorService newExecutor(@NotNull String name) {
+        return newExecutor(name, Options.threads());
+    }
+
+    /**
+     * Create a dedicated executor (see {@link #newExecutor(String)}) with a given default number of threads.
+     * @param name String Name of the executor.
+     * @param defaultThreads Integer Number of threads if "--NAME-threads=N" is not given.
+     * @return ExecutorService
+     */
+    @NotNull
+    public static ExecutorService newExecutor(@NotNull String name, int defaultThreads) {
+        int threads = Math.max(1, Options.getInt(name + "-threads", defaultThreads));
+        if (Options.virtualThreads()) {
+            try {
+                // Thread.ofVirtual().name(name + "-", 1).factory()
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                Object ofVirtual = Thread.class.getMethod("ofVirtual").invoke(null);
+                Object named = builder.getMethod("name", String.class, long.class).invoke(ofVirtual, name + "-", 1L);
+                return NamedExecutor.unbounded(name, (ThreadFactory) builder.getMethod("factory").invoke(named));
+            } catch (ReflectiveOperationException e) {
+                if (!warned) {
+                    warned = true;
+                    System.out.println("Virtual threads need Java 21 or later. Using " + threads + " threads.");
+                }
+            }
+        }
+        return NamedExecutor.fixed(name, threads);
+    }
+
+    /**
+     * Do an action for every item on the executor, with at most "--pending=N" items in flight, and wait for all of
+     * them. The executor is shut down afterwards. An item whose action fails is reported and skipped.
+     * @param items Iterable Items (e.g. the paragraphs of a CBOR file, which are read as they are needed).
+     * @param executor ExecutorService Executor to do the actions on.
+     * @param action Consumer Action to do for an item.
+     */
+    public static <T> void forEach(@NotNull Iterable<T> items,
+                                   @NotNull ExecutorService executor,
+                                   @NotNull Consumer<T> action) {
+        Semaphore window = new Semaphore(Options.pending());
+        try {
+            for (T item : items) {
+                window.acquire();
+                executor.execute(() -> {
+                    try {
+                        action.accept(item);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    } finally {
+                        window.release();
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the tasks on the executor and hand their run strings to the writer in task order.
+     * The run file is complete once the writer has been closed.
+     * If the executor rejects a task (e.g. it has been shut down), no more tasks are run.
+     * @param tasks List List of tasks.
+     * @param executor ExecutorService Executor to run the tasks on.
+     * @param writer RunWriter Writer to which the run strings are handed.
+     */
+    public static void run(@NotNull List<Task> tasks,
+                           @NotNull ExecutorService executor,
+                           @NotNull RunWriter writer) {
+        for (Task task : tasks) {
+            int seq;
+            try {
+                seq = writer.reserve();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    RunLineFormatter buffer = writer.newBuffer();
+                    long start = Metrics.start();
+                    try {
+                        task.run(buffer);
+                    } catch (IOException | RuntimeException e) {
+                        Metrics.count(Metrics.Counter.TASK_ERRORS, 1);
+                        e.printStackTrace();
+                    } finally {
+                        Metrics.stop(Metrics.Stage.TASK, start);
+                        Metrics.count(Metrics.Counter.TASKS, 1);
+                        writer.submit(seq, buffer);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Hand the sequence number back, or closing the writer would wait for it forever
+                Metrics.count(Metrics.Counter.TASK_ERRORS, 1);
+                e.printStackTrace();
+                writer.submit(seq, writer.newBuffer());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package help;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to select the K highest scores without sorting all of them.
+ * A bounded min-heap of K indices is kept over the scores, so selecting the top K of N scores takes
+ * O(N log K) time and O(K) space instead of the O(N log N) of a full sort.
+ * Ties are broken by position: of two equal scores the one which comes first wins, so the result is the same
+ * as the first K entries of a stable descending sort (e.g. {@link Utilities#sortByValueDescending(Map)}).
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class TopK {
+
+    /**
+     * Select the K highest of the first N scores.
+     * @param scores float[] Scores.
+     * @param n Integer Number of scores to look at.
+     * @param k Integer Number of scores to select.
+     * @return int[] Indices of the selected scores in descending order of score.
+     */
+    @NotNull
+    public static int[] select(@NotNull float[] scores, int n, int k) {
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return new int[0];
+        }
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            } else if (Float.compare(scores[i], scores[heap[0]]) > 0) {
+                // Equal scores never replace the root, as the root came first
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+        return drain(heap, size, scores);
+    }
+
+    /**
+     * Select the K highest of the first N scores.
+     * @param scores double[] Scores.
+     * @param n Integer Number of scores to look at.
+     * @param k Integer Number of scores to select.
+     * @return int[] Indices of the selected scores in descending order of score.
+     */
+    @NotNull
+    public static int[] select(@NotNull double[] scores, int n, int k) {
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return new int[0];
+        }
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            } else if (Double.compare(scores[i], scores[heap[0]]) > 0) {
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+        return drain(heap, size, scores);
+    }
+
+    /**
+     * Get the K entries of a map with the highest values, in descending order of value.
+     * Entries with equal values are kept in the iteration order of the map.
+     * @param map Map Map to select from.
+     * @param k Integer Number of entries to select.
+     * @return LinkedHashMap The selected entries.
+     */
+    @NotNull
+    public static <K, V extends Number> LinkedHashMap<K, V> topByValue(@NotNull Map<K, V> map, int k) {
+        List<Map.Entry<K, V>> entries = topEntries(map, k);
+        LinkedHashMap<K, V> top = new LinkedHashMap<>();
+        for (Map.Entry<K, V> entry : entries) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    /**
+     * Get the K entries of a map with the highest values, in descending order of value.
+     * Entries with equal values are kept in the iteration order of the map.
+     * @param map Map Map to select from.
+     * @param k Integer Number of entries to select.
+     * @return List The selected entries.
+     */
+    @NotNull
+    public static <K, V extends Number> List<Map.Entry<K, V>> topEntries(@NotNull Map<K, V> map, int k) {
+        int n = map.size();
+        List<Map.Entry<K, V>> entries = new ArrayList<>(n);
+        double[] scores = new double[n];
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            scores[entries.size()] = entry.getValue().doubleValue();
+            entries.add(entry);
+        }
+        int[] top = select(scores, n, k);
+        List<Map.Entry<K, V>> result = new ArrayList<>(top.length);
+        for (int i : top) {
+            result.add(entries.get(i));
+        }
+        return result;
+    }
+
+    /*
+     * The heap is a min-heap where the "smallest" index is the one with the lowest score,
+     * and of two equal scores the one which came later.
+     */
+
+    private static boolean worse(int a, int b, @NotNull float[] scores) {
+        int c = Float.compare(scores[a], scores[b]);
+        return c < 0 || (c == 0 && a > b);
+    }
+
+    private static boolean worse(int a, int b, @NotNull double[] scores) {
+        int c = Double.compare(scores[a], scores[b]);
+        return c < 0 || (c == 0 && a > b);
+    }
+
+    private static void siftUp(@NotNull int[] heap, int i, @NotNull float[] scores) {
+        int x = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(x, heap[parent], scores)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = x;
+    }
+
+    private static void siftUp(@NotNull int[] heap, int i, @NotNull double[] scores) {
+        int x = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(x, heap[parent], scores)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = x;
+    }
+
+    private static void siftDown(@NotNull int[] heap, int size, @NotNull float[] scores) {
+        int x = heap[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && worse(heap[child + 1], heap[child], scores)) {
+                child++;
+            }
+            if (!worse(heap[child], x, scores)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = x;
+    }
+
+    private static void siftDown(@NotNull int[] heap, int size, @NotNull double[] scores) {
+        int x = heap[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && worse(heap[child + 1], heap[child], scores)) {
+                child++;
+            }
+            if (!worse(heap[child], x, scores)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = x;
+    }
+
+    /**
+     * Empty the heap, worst first, filling the result from the back.
+     */
+    @NotNull
+    private static int[] drain(@NotNull int[] heap, int size, @NotNull float[] scores) {
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return result;
+    }
+
+    @NotNull
+    private static int[] drain(@NotNull int[] heap, int size, @NotNull double[] scores) {
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return result;
+    }
+}
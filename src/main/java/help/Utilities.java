@@ -1,6 +1,8 @@
 package help;
+import lucene.EntityPostings;
 import lucene.Index;
 import lucene.RAMIndex;
+import lucene.Workload;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
@@ -29,6 +31,7 @@ public class Utilities {
      * @return HashMap where Key = queryID and Value = List of rankings of paragraphs or entities
      */
     public static HashMap<String, ArrayList<String>> getRankings(String inFilePath) {
+        long start = Metrics.start();
         HashMap<String,ArrayList<String>> rankings = new HashMap<> ();
         BufferedReader br;
         String line , queryID ,field2;
@@ -48,10 +51,45 @@ public class Utilities {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        Metrics.stop(Metrics.Stage.LOAD_RUNS, start);
+        return rankings;
+    }
+
+    /**
+     * Method to get rankings from a run file together with the score of every line of the rankings.
+     * @param inFilePath Path to file from which rankings must be taken
+     * @param scores HashMap into which the scores are put: Key = queryID and Value = score of every item of the
+     *               ranking of the query, in the same order
+     * @return HashMap where Key = queryID and Value = List of rankings of paragraphs or entities
+     */
+    public static HashMap<String, ArrayList<String>> getScoredRankings(String inFilePath,
+                                                                       @NotNull HashMap<String, double[]> scores) {
+        long start = Metrics.start();
+        HashMap<String, ArrayList<String>> rankings = new HashMap<>();
+        HashMap<String, ArrayList<Double>> scoreLists = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(inFilePath))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.split(" ");
+                rankings.computeIfAbsent(fields[0], q -> new ArrayList<>()).add(fields[2]);
+                scoreLists.computeIfAbsent(fields[0], q -> new ArrayList<>()).add(Double.parseDouble(fields[4]));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Map.Entry<String, ArrayList<Double>> entry : scoreLists.entrySet()) {
+            double[] values = new double[entry.getValue().size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = entry.getValue().get(i);
+            }
+            scores.put(entry.getKey(), values);
+        }
+        Metrics.stop(Metrics.Stage.LOAD_RUNS, start);
         return rankings;
     }
 
     public static void getRankings(String inFilePath,  HashMap<String, LinkedHashMap<String, Double>> rankings) {
+        long start = Metrics.start();
         BufferedReader br = null;
         String line , queryID ,field2;
         double score;
@@ -83,6 +121,7 @@ public class Utilities {
                 e.printStackTrace();
             }
         }
+        Metrics.stop(Metrics.Stage.LOAD_RUNS, start);
     }
 
 
@@ -94,7 +133,7 @@ public class Utilities {
     public static void writeFile(@NotNull ArrayList<String> runStrings, String filePath) {
         BufferedWriter out = null;
         try {
-            out = new BufferedWriter(new FileWriter(filePath,true));
+            out = new BufferedWriter(new FileWriter(filePath, false));
 
             for(String s : runStrings) {
                 if (s != null) {
@@ -150,9 +189,17 @@ public class Utilities {
      */
 
     public static String process(String entityID) {
-        entityID = entityID.substring(entityID.indexOf(":")+1);
-        entityID = entityID.replaceAll("%20", "_").toLowerCase();
-        return entityID;
+        return IdNormalizer.entity(entityID);
+    }
+
+    /**
+     * Convert a query id to the query text: remove enwiki:, replace %20 with whitespace and convert to lowercase.
+     * @param queryID String
+     * @return String
+     */
+
+    public static String processQuery(@NotNull String queryID) {
+        return IdNormalizer.query(queryID);
     }
 
     /**
@@ -165,9 +212,7 @@ public class Utilities {
         ArrayList<String> list = new ArrayList<>();
         for(String s : entity)
         {
-            s = s.substring(s.indexOf(":")+1);
-            s = s.replaceAll("%20", "_").toLowerCase();
-            list.add(s);
+            list.add(IdNormalizer.entity(s));
         }
         return list;
     }
@@ -242,6 +287,9 @@ public class Utilities {
 
     /**
      * Method to create a Pseudo-Document for an entity.
+     * If entity postings are given using "--entity-postings=DIR", the paragraphs which mention the entity are
+     * found by intersecting the posting list of the entity with the docIDs of the paragraphs, and only those
+     * paragraphs are loaded from the index.
      * @param entity String EntityID
      * @param paraList ArrayList List of paragraphs relevant for query
      * @param searcher IndexSearcher
@@ -250,6 +298,28 @@ public class Utilities {
 
     @Nullable
     public static PseudoDocument createPseudoDocument(String entity, @NotNull ArrayList<String> paraList, IndexSearcher searcher) {
+        long start = Metrics.start();
+        Events.PseudoDocumentBuilt event = new Events.PseudoDocumentBuilt();
+        event.begin();
+        PseudoDocument d = buildPseudoDocument(entity, paraList, searcher);
+        Metrics.stop(Metrics.Stage.PSEUDO_DOC, start);
+        Events.pseudoDocumentBuilt(event, entity, d);
+        return d;
+    }
+
+    @Nullable
+    private static PseudoDocument buildPseudoDocument(String entity, @NotNull ArrayList<String> paraList, IndexSearcher searcher) {
+        EntityPostings postings = EntityPostings.shared();
+        if (postings != null && postings.matches(searcher)) {
+            try {
+                // Get the docIDs of the paragraphs relevant for the query
+                int[] candidates = EntityPostings.lookup(paraList, Options.idField(), searcher);
+                return createPseudoDocument(entity, candidates, searcher, postings);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
         ArrayList<Document> documentList = new ArrayList<>();
         ArrayList<String> pseudoDocEntityList = new ArrayList<>();
         // Get the list of paragraphs relevant for the query
@@ -257,7 +327,7 @@ public class Utilities {
         for (String paraId : paraList) {
             try {
                 // Get the document corresponding to the paragraph from the lucene index
-                Document doc = Index.Search.searchIndex("id", paraId, searcher);
+                Document doc = Index.Search.searchIndex(Options.idField(), paraId, searcher);
                 // Get the entities in the paragraph
                 String[] entityList = Utilities.clean(doc.getField("entity").stringValue().split(" "));
                 // Make an ArrayList from the String array
@@ -287,6 +357,107 @@ public class Utilities {
         return new PseudoDocument(documentList, entity, pseudoDocEntityList);
     }
 
+    /**
+     * Method to create a Pseudo-Document for an entity from the docIDs of the paragraphs relevant for the query
+     * (e.g. given by a {@link lucene.Workload}). Paragraphs which are not in the index have docID -1 and are left out.
+     * @param entity String EntityID
+     * @param candidates int[] DocIDs of the paragraphs relevant for query
+     * @param searcher IndexSearcher
+     * @return A Pseudo-Document for the (query, entity) pair
+     */
+
+    @Nullable
+    public static PseudoDocument createPseudoDocument(String entity, @NotNull int[] candidates, IndexSearcher searcher) {
+        long start = Metrics.start();
+        Events.PseudoDocumentBuilt event = new Events.PseudoDocumentBuilt();
+        event.begin();
+        PseudoDocument d = buildPseudoDocument(entity, candidates, searcher);
+        Metrics.stop(Metrics.Stage.PSEUDO_DOC, start);
+        Events.pseudoDocumentBuilt(event, entity, d);
+        return d;
+    }
+
+    @Nullable
+    private static PseudoDocument buildPseudoDocument(String entity, @NotNull int[] candidates, IndexSearcher searcher) {
+        try {
+            EntityPostings postings = EntityPostings.shared();
+            if (postings != null && postings.matches(searcher)) {
+                return createPseudoDocument(entity, candidates, searcher, postings);
+            }
+            ArrayList<Document> documentList = new ArrayList<>();
+            ArrayList<String> pseudoDocEntityList = new ArrayList<>();
+            String processedEntity = Utilities.process(entity);
+            for (int doc : candidates) {
+                if (doc < 0) {
+                    continue;
+                }
+                Document d = searcher.doc(doc);
+                ArrayList<String> pEntList = new ArrayList<>(Arrays.asList(Utilities.clean(d.getField("entity").stringValue().split(" "))));
+                if (pEntList.contains(processedEntity)) {
+                    documentList.add(d);
+                    pseudoDocEntityList.addAll(pEntList);
+                }
+            }
+            if (documentList.size() == 0) {
+                return null;
+            }
+            return new PseudoDocument(documentList, entity, pseudoDocEntityList);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Method to create a Pseudo-Document for an entity from the work of a query.
+     * The paragraphs are loaded by docID if the work has them, else they are searched for by paragraph ID.
+     * @param entity String EntityID
+     * @param work Workload.Query Work of the query.
+     * @param searcher IndexSearcher
+     * @return A Pseudo-Document for the (query, entity) pair
+     */
+
+    @Nullable
+    public static PseudoDocument createPseudoDocument(String entity, @NotNull Workload.Query work, IndexSearcher searcher) {
+        int[] docIds = work.getDocIds();
+        return docIds != null
+                ? createPseudoDocument(entity, docIds, searcher)
+                : createPseudoDocument(entity, work.getParaList(), searcher);
+    }
+
+    /**
+     * Method to create a Pseudo-Document for an entity using the entity postings.
+     * The documents are in the order of the list of paragraphs, as without the postings.
+     * @param entity String EntityID
+     * @param candidates int[] DocIDs of the paragraphs relevant for query (-1 if not in the index)
+     * @param searcher IndexSearcher
+     * @param postings EntityPostings Entity postings of the index of the searcher.
+     * @return A Pseudo-Document for the (query, entity) pair
+     * @throws IOException IOException
+     */
+    @Nullable
+    private static PseudoDocument createPseudoDocument(String entity,
+                                                       @NotNull int[] candidates,
+                                                       @NotNull IndexSearcher searcher,
+                                                       @NotNull EntityPostings postings) throws IOException {
+        ArrayList<Document> documentList = new ArrayList<>();
+        ArrayList<String> pseudoDocEntityList = new ArrayList<>();
+
+        // Get the paragraphs which mention the entity
+        IdSet mentions = IdSet.of(postings.docIds(process(entity))).and(IdSet.of(candidates));
+        if (mentions.isEmpty()) {
+            return null;
+        }
+        for (int doc : candidates) {
+            if (mentions.contains(doc)) {
+                Document d = searcher.doc(doc);
+                documentList.add(d);
+                pseudoDocEntityList.addAll(Arrays.asList(Utilities.clean(d.getField("entity").stringValue().split(" "))));
+            }
+        }
+        return new PseudoDocument(documentList, entity, pseudoDocEntityList);
+    }
+
     /**
      * Find the intersection of two lists.
      * @param list1 The first list
@@ -296,7 +467,8 @@ public class Utilities {
      */
 
     public static <T> List<T> intersection(@NotNull List<T> list1, @NotNull List<T> list2) {
-        return list1.stream().filter(list2::contains).collect(Collectors.toList());
+        Set<T> set2 = new HashSet<>(list2);
+        return list1.stream().filter(set2::contains).collect(Collectors.toList());
 
     }
     public static ArrayList<PseudoDocument> getPseudoDocs(@NotNull ArrayList<String> entityList, ArrayList<String> paraList, IndexSearcher searcher) {
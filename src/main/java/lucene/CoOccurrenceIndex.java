@@ -0,0 +1,440 @@
+package lucene;
+
+import help.Options;
+import help.TopK;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class for a corpus-wide entity co-occurrence index.
+ * The index is a sparse, symmetric matrix over the entity IDs of an {@link EntityDictionary} in CSR form:
+ * the entry (a, b) is the number of paragraphs in the corpus which mention both a and b, and the diagonal
+ * entry (a, a) is the number of paragraphs which mention a.
+ * Row a holds the columns b in increasing order, so a single count is found by binary search and a row can be
+ * intersected with a sorted set of candidate entities by merging.
+ *
+ * The matrix is stored in the file "cooccurrence.bin" (big-endian) which is memory-mapped when opened:
+ *  int magic, int version, int numEntities, int maxDoc, int numDocs, int unused, long nnz,
+ *  byte[32] {@link IndexIdentity} of the index, long[numEntities + 1] rowStart, int[nnz] column, int[nnz] count.
+ * The counts are paragraph-level: an entity mentioned twice in one paragraph is counted once, and they are
+ * counted over the whole corpus and not just over the candidate passages of a query.
+ * The counts are those of the index the matrix was built from, so it must be built again whenever the index
+ * changes. The identity, the maxDoc and the number of documents of the index are stored to catch this. The file
+ * is written to a temporary file and renamed when complete.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class CoOccurrenceIndex {
+    public static final String FILE_NAME = "cooccurrence.bin";
+    private static final int MAGIC = 0x434f4f43;
+    private static final int VERSION = 2;
+    private static final long HEADER = 32 + IndexIdentity.BYTES;
+
+    private final EntityDictionary dictionary;
+    private final MappedFile file;
+    private final int numEntities;
+    private final int maxDoc;
+    private final int numDocs;
+    private final byte[] identity;
+    private final long columnStart;
+    private final long countStart;
+
+    private CoOccurrenceIndex(@NotNull EntityDictionary dictionary, @NotNull MappedFile file) throws IOException {
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+            throw new IOException("Not a co-occurrence index (or wrong version)");
+        }
+        this.dictionary = dictionary;
+        this.file = file;
+        this.numEntities = file.getInt(8);
+        this.maxDoc = file.getInt(12);
+        this.numDocs = file.getInt(16);
+        long nnz = file.getLong(24);
+        this.identity = new byte[IndexIdentity.BYTES];
+        file.getBytes(32, identity, IndexIdentity.BYTES);
+        if (numEntities != dictionary.size()) {
+            throw new IOException("Co-occurrence index does not match the entity dictionary");
+        }
+        if (file.length() != HEADER + 8L * (numEntities + 1) + 8L * nnz) {
+            throw new IOException("Co-occurrence index has the wrong length (a truncated file?)");
+        }
+        this.columnStart = HEADER + 8L * (numEntities + 1);
+        this.countStart = columnStart + 4L * nnz;
+    }
+
+    /**
+     * Open the co-occurrence index in a directory.
+     * @param dir String Directory containing the co-occurrence index and the entity dictionary.
+     * @return CoOccurrenceIndex
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static CoOccurrenceIndex open(String dir) throws IOException {
+        Path path = Paths.get(dir);
+        return new CoOccurrenceIndex(EntityDictionary.read(path), new MappedFile(path.resolve(FILE_NAME)));
+    }
+
+    /**
+     * Open the co-occurrence index given by the option "--cooc-index=DIR", if any.
+     * @param reader IndexReader Reader of the paragraph index the counts must have been made from.
+     * @return CoOccurrenceIndex The index, or null if the option is not set, the index could not be opened or it
+     * was built from another paragraph index.
+     */
+    @Nullable
+    public static CoOccurrenceIndex fromOptions(@NotNull IndexReader reader) {
+        String dir = Options.get("cooc-index", null);
+        if (dir == null) {
+            return null;
+        }
+        try {
+            System.out.print("Opening co-occurrence index...");
+            CoOccurrenceIndex index = open(dir);
+            System.out.println("[Done].");
+            if (!index.matches(reader)) {
+                System.out.println("The co-occurrence index does not match the index. Build it again using cooc-index.");
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the co-occurrence index was built from an index: the same segments (see {@link IndexIdentity})
+     * with the same deleted documents.
+     * @param reader IndexReader Reader of the index.
+     * @return Boolean
+     */
+    public boolean matches(@NotNull IndexReader reader) {
+        return reader.maxDoc() == maxDoc && reader.numDocs() == numDocs && IndexIdentity.matches(reader, identity);
+    }
+
+    public EntityDictionary getDictionary() {
+        return dictionary;
+    }
+
+    private long rowStart(int a) {
+        return file.getLong(HEADER + 8L * a);
+    }
+
+    /**
+     * Number of paragraphs which mention both entities.
+     * @param a Integer ID of the first entity.
+     * @param b Integer ID of the second entity.
+     * @return Integer
+     */
+    public int count(int a, int b) {
+        long lo = rowStart(a), hi = rowStart(a + 1) - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int col = file.getInt(columnStart + 4 * mid);
+            if (col < b) {
+                lo = mid + 1;
+            } else if (col > b) {
+                hi = mid - 1;
+            } else {
+                return file.getInt(countStart + 4 * mid);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the co-occurrence counts of an entity with the candidate entities.
+     * Candidates which never co-occur with the entity are left out.
+     * @param entity String Entity as stored in the index (see {@link help.Utilities#process(String)}).
+     * @param candidates Collection Candidate entities as stored in the index.
+     * @return LinkedHashMap where Key = candidate entity and Value = number of paragraphs mentioning both,
+     * in the order of the entity IDs.
+     */
+    @NotNull
+    public LinkedHashMap<String, Integer> counts(String entity, @NotNull Collection<String> candidates) {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        int a = dictionary.id(entity);
+        if (a < 0) {
+            return counts;
+        }
+        int[] ids = dictionary.ids(candidates);
+        long start = rowStart(a), end = rowStart(a + 1);
+        long rowLength = end - start;
+        if (ids.length * 16L < rowLength) {
+            // Few candidates: binary search for each of them
+            for (int b : ids) {
+                int c = count(a, b);
+                if (c > 0) {
+                    counts.put(dictionary.name(b), c);
+                }
+            }
+        } else {
+            // Merge the row with the sorted candidates
+            int i = 0;
+            for (long p = start; p < end && i < ids.length; p++) {
+                int col = file.getInt(columnStart + 4 * p);
+                while (i < ids.length && ids[i] < col) {
+                    i++;
+                }
+                if (i < ids.length && ids[i] == col) {
+                    counts.put(dictionary.name(col), file.getInt(countStart + 4 * p));
+                    i++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get the K candidate entities which co-occur most often with an entity, in descending order of count.
+     * Ties are broken by entity ID.
+     * @param entity String Entity as stored in the index.
+     * @param candidates Collection Candidate entities as stored in the index.
+     * @param k Integer Number of entities.
+     * @return List of (entity, count) pairs.
+     */
+    @NotNull
+    public List<Map.Entry<String, Integer>> top(String entity, @NotNull Collection<String> candidates, int k) {
+        return TopK.topEntries(counts(entity, candidates), k);
+    }
+
+    /**
+     * Build the co-occurrence index (and the entity dictionary) of a paragraph index.
+     * The segments of the paragraph index are counted in parallel and the counts of the segments are then
+     * merged into the CSR matrix.
+     * @param indexDir String Path to the paragraph index.
+     * @param outDir String Directory to write the co-occurrence index to.
+     * @param field String Name of the entity field of the paragraph index.
+     * @param executor ExecutorService Executor to count the segments on.
+     * @throws IOException IOException
+     */
+    public static void build(String indexDir,
+                             String outDir,
+                             String field,
+                             @NotNull ExecutorService executor) throws IOException {
+        Path out = Paths.get(outDir);
+        Files.createDirectories(out);
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexDir)))) {
+            byte[] identity = IndexIdentity.of(reader);
+            if (identity == null) {
+                throw new IOException("The segments of the index have no IDs");
+            }
+            System.out.print("Building entity dictionary...");
+            EntityDictionary dictionary = EntityDictionary.build(reader, field, executor);
+            dictionary.write(out);
+            System.out.println("[Done]. Found " + dictionary.size() + " entities.");
+
+            System.out.print("Counting co-occurrences in " + reader.leaves().size() + " segments...");
+            List<Future<long[][]>> futures = new ArrayList<>();
+            for (LeafReaderContext leaf : reader.leaves()) {
+                futures.add(executor.submit(() -> countSegment(leaf.reader(), field, dictionary)));
+            }
+            List<long[][]> segments = new ArrayList<>();
+            for (Future<long[][]> future : futures) {
+                segments.add(EntityDictionary.get(future));
+            }
+            System.out.println("[Done].");
+
+            System.out.print("Writing co-occurrence index...");
+            // Written to a temporary file first, so that a run which fails on the way leaves no truncated matrix
+            Path temp = out.resolve(FILE_NAME + ".tmp");
+            try {
+                write(temp, dictionary.size(), reader.maxDoc(), reader.numDocs(), identity, segments);
+                MappedFile.moveIntoPlace(temp, out.resolve(FILE_NAME));
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            System.out.println("[Done].");
+        }
+    }
+
+    /**
+     * Count the co-occurrences in one segment.
+     * @return long[][] {sorted keys (a << 32 | b), counts}
+     */
+    @NotNull
+    private static long[][] countSegment(@NotNull LeafReader reader,
+                                         String field,
+                                         @NotNull EntityDictionary dictionary) throws IOException {
+        PairCounts counts = new PairCounts();
+        Bits liveDocs = reader.getLiveDocs();
+        for (int doc = 0; doc < reader.maxDoc(); doc++) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            int[] ids = dictionary.ids(Arrays.asList(EntityDictionary.entities(reader, doc, field)));
+            for (int a : ids) {
+                for (int b : ids) {
+                    counts.increment(((long) a << 32) | b);
+                }
+            }
+        }
+        return counts.sorted();
+    }
+
+    /**
+     * Merge the sorted counts of the segments and write them as a CSR matrix.
+     */
+    private static void write(@NotNull Path path,
+                              int numEntities,
+                              int maxDoc,
+                              int numDocs,
+                              @NotNull byte[] identity,
+                              @NotNull List<long[][]> segments) throws IOException {
+        // First pass: the number of distinct entries in every row
+        long[] rowStart = new long[numEntities + 1];
+        long nnz = merge(segments, (key, count) -> rowStart[(int) (key >>> 32) + 1]++);
+        for (int a = 0; a < numEntities; a++) {
+            rowStart[a + 1] += rowStart[a];
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 20))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(numEntities);
+            dos.writeInt(maxDoc);
+            dos.writeInt(numDocs);
+            dos.writeInt(0);
+            dos.writeLong(nnz);
+            dos.write(identity);
+            for (long start : rowStart) {
+                dos.writeLong(start);
+            }
+            // Second pass: the columns, then the counts
+            merge(segments, (key, count) -> dos.writeInt((int) key));
+            merge(segments, (key, count) -> dos.writeInt((int) Math.min(count, Integer.MAX_VALUE)));
+        }
+    }
+
+    private interface EntryConsumer {
+        void accept(long key, long count) throws IOException;
+    }
+
+    /**
+     * K-way merge of the sorted keys of the segments, adding up the counts of equal keys.
+     * @return Long Number of distinct keys.
+     */
+    private static long merge(@NotNull List<long[][]> segments, @NotNull EntryConsumer consumer)
+            throws IOException {
+        int k = segments.size();
+        int[] pos = new int[k];
+        long distinct = 0;
+        while (true) {
+            long min = Long.MAX_VALUE;
+            for (int s = 0; s < k; s++) {
+                long[] keys = segments.get(s)[0];
+                if (pos[s] < keys.length && keys[pos[s]] < min) {
+                    min = keys[pos[s]];
+                }
+            }
+            if (min == Long.MAX_VALUE) {
+                return distinct;
+            }
+            long count = 0;
+            for (int s = 0; s < k; s++) {
+                long[] keys = segments.get(s)[0];
+                if (pos[s] < keys.length && keys[pos[s]] == min) {
+                    count += segments.get(s)[1][pos[s]++];
+                }
+            }
+            consumer.accept(min, count);
+            distinct++;
+        }
+    }
+
+    /**
+     * Open addressing hash map from a pair of entity IDs to a count.
+     */
+    private static final class PairCounts {
+        private static final long EMPTY = -1L;
+        private long[] keys = newKeys(1 << 16);
+        private long[] values = new long[1 << 16];
+        private int size = 0;
+
+        private static long[] newKeys(int n) {
+            long[] keys = new long[n];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private void increment(long key) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                size++;
+            }
+            values[i]++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys, oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new long[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (keys[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @NotNull
+        private long[][] sorted() {
+            long[] k = new long[size];
+            int n = 0;
+            for (long key : keys) {
+                if (key != EMPTY) {
+                    k[n++] = key;
+                }
+            }
+            Arrays.sort(k);
+            long[] v = new long[size];
+            int mask = keys.length - 1;
+            for (int j = 0; j < size; j++) {
+                int i = hash(k[j]) & mask;
+                while (keys[i] != k[j]) {
+                    i = (i + 1) & mask;
+                }
+                v[j] = values[i];
+            }
+            keys = null;
+            values = null;
+            return new long[][] {k, v};
+        }
+    }
+}
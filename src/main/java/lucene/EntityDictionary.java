@@ -0,0 +1,226 @@
+package lucene;
+
+import help.Options;
+import help.Utilities;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class to map the entities in the paragraph index to dense int IDs and back.
+ * The IDs are the positions of the entities in sorted order, so the dictionary is the same for the same index.
+ * The dictionary is stored as a text file with one entity per line (the line number is the ID).
+ * The entities are the tokens of the stored entity field of the paragraphs (e.g. "new_york_city"),
+ * which is the form returned by {@link Utilities#process(String)}.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class EntityDictionary {
+    public static final String FILE_NAME = "entities.txt";
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+
+    private EntityDictionary(@NotNull String[] names) {
+        this.names = names;
+        this.ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+    }
+
+    /**
+     * Get the ID of an entity.
+     * @param entity String Entity as stored in the index.
+     * @return Integer ID of the entity, or -1 if the entity does not occur in the index.
+     */
+    public int id(String entity) {
+        Integer id = ids.get(entity);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the entity with the given ID.
+     * @param id Integer ID of the entity.
+     * @return String
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Number of entities in the dictionary.
+     * @return Integer
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Get the sorted IDs of the entities in a collection. Entities which are not in the dictionary are skipped.
+     * @param entities Iterable Entities as stored in the index.
+     * @return int[] Sorted IDs without duplicates.
+     */
+    @NotNull
+    public int[] ids(@NotNull Iterable<String> entities) {
+        int[] result = new int[16];
+        int n = 0;
+        for (String e : entities) {
+            int id = id(e);
+            if (id >= 0) {
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, n * 2);
+                }
+                result[n++] = id;
+            }
+        }
+        return distinct(result, n);
+    }
+
+    /**
+     * Read the dictionary from a directory.
+     * @param dir Path Directory containing the dictionary file.
+     * @return EntityDictionary
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static EntityDictionary read(@NotNull Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(dir.resolve(FILE_NAME), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                names.add(line);
+            }
+        }
+        return new EntityDictionary(names.toArray(new String[0]));
+    }
+
+    /**
+     * Write the dictionary to a directory.
+     * @param dir Path Directory to write the dictionary file to.
+     * @throws IOException IOException
+     */
+    public void write(@NotNull Path dir) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(dir.resolve(FILE_NAME), StandardCharsets.UTF_8)) {
+            for (String name : names) {
+                bw.write(name);
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Build the dictionary of all entities in the entity field of the index.
+     * The segments of the index are read in parallel.
+     * @param reader IndexReader Reader over the paragraph index.
+     * @param field String Name of the entity field.
+     * @param executor ExecutorService Executor to read the segments on.
+     * @return EntityDictionary
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static EntityDictionary build(@NotNull IndexReader reader,
+                                         String field,
+                                         @NotNull ExecutorService executor) throws IOException {
+        List<Future<Set<String>>> futures = new ArrayList<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            futures.add(executor.submit(() -> {
+                Set<String> entities = new HashSet<>();
+                LeafReader r = leaf.reader();
+                Bits liveDocs = r.getLiveDocs();
+                for (int doc = 0; doc < r.maxDoc(); doc++) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        Collections.addAll(entities, entities(r, doc, field));
+                    }
+                }
+                return entities;
+            }));
+        }
+        Set<String> all = new HashSet<>();
+        for (Future<Set<String>> future : futures) {
+            all.addAll(get(future));
+        }
+        String[] names = all.toArray(new String[0]);
+        Arrays.sort(names);
+        return new EntityDictionary(names);
+    }
+
+    /**
+     * Get the entities stored in the entity field of a paragraph.
+     * @param reader LeafReader Reader over a segment of the index.
+     * @param doc Integer Document number within the segment.
+     * @param field String Name of the entity field.
+     * @return String[] Entities of the paragraph (with duplicates).
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static String[] entities(@NotNull LeafReader reader, int doc, String field) throws IOException {
+        Document d = reader.document(doc, Collections.singleton(field));
+        String value = d.get(field);
+        return value == null ? new String[0] : Utilities.clean(value.split(" "));
+    }
+
+    /**
+     * Name of the entity field of the paragraph index. Set with "--entity-field=NAME" (DEFAULT = entity).
+     * @return String
+     */
+    public static String entityField() {
+        return Options.get("entity-field", "entity");
+    }
+
+    /**
+     * Sort the first N ints of the array and remove duplicates.
+     * @param a int[] Array.
+     * @param n Integer Number of ints to look at.
+     * @return int[] Sorted distinct ints.
+     */
+    @NotNull
+    static int[] distinct(@NotNull int[] a, int n) {
+        Arrays.sort(a, 0, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || a[i] != a[m - 1]) {
+                a[m++] = a[i];
+            }
+        }
+        return Arrays.copyOf(a, m);
+    }
+
+    /**
+     * Wait for a future, passing on the failure of its task as an IOException.
+     */
+    static <T> T get(@NotNull Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
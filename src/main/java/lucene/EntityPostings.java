@@ -0,0 +1,413 @@
+package lucene;
+
+import help.Metrics;
+import help.Options;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class for an inverted index from entities to the paragraphs which mention them.
+ * For every entity ID of an {@link EntityDictionary} the index holds the sorted Lucene docIDs of the paragraphs
+ * whose entity field contains the entity. Finding the candidate paragraphs of a query which mention an entity
+ * is then an intersection of two sorted int arrays, instead of loading the stored entity field of every
+ * candidate paragraph.
+ *
+ * The posting lists are stored in the file "postings.bin" (big-endian), which is memory-mapped when opened:
+ *  int magic, int version, int numEntities, int maxDoc, byte[32] {@link IndexIdentity} of the index,
+ *  long[numEntities + 1] start, int[numEntities] length,
+ *  followed by the posting lists, each encoded as the differences between consecutive docIDs written as
+ *  variable-length ints (7 bits per byte).
+ * The docIDs are those of the index the postings were built from, so the postings must be rebuilt whenever
+ * the index changes (including building it again or merging it, which reorders the docIDs). The identity and the
+ * maxDoc of the index are stored to catch this. A build writes "postings.bin.tmp" and only replaces the postings
+ * once it is complete.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class EntityPostings {
+    public static final String FILE_NAME = "postings.bin";
+    private static final int MAGIC = 0x454e5450;
+    private static final int VERSION = 2;
+    private static final long HEADER = 16 + IndexIdentity.BYTES;
+
+    private static volatile EntityPostings shared = null;
+    private static volatile boolean sharedLoaded = false;
+
+    private final EntityDictionary dictionary;
+    private final MappedFile file;
+    private final int numEntities;
+    private final int maxDoc;
+    private final byte[] identity;
+    private final long lengthStart;
+
+    private EntityPostings(@NotNull EntityDictionary dictionary, @NotNull MappedFile file) throws IOException {
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+            throw new IOException("Not an entity posting file (or wrong version)");
+        }
+        this.dictionary = dictionary;
+        this.file = file;
+        this.numEntities = file.getInt(8);
+        this.maxDoc = file.getInt(12);
+        this.identity = new byte[IndexIdentity.BYTES];
+        file.getBytes(16, identity, IndexIdentity.BYTES);
+        if (numEntities != dictionary.size()) {
+            throw new IOException("Entity postings do not match the entity dictionary");
+        }
+        this.lengthStart = HEADER + 8L * (numEntities + 1);
+    }
+
+    /**
+     * Open the entity postings in a directory.
+     * @param dir String Directory containing the postings and the entity dictionary.
+     * @return EntityPostings
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static EntityPostings open(String dir) throws IOException {
+        Path path = Paths.get(dir);
+        return new EntityPostings(EntityDictionary.read(path), new MappedFile(path.resolve(FILE_NAME)));
+    }
+
+    /**
+     * Get the entity postings given by the option "--entity-postings=DIR", if any.
+     * The postings are opened once and shared by all threads.
+     * @return EntityPostings The postings, or null if the option is not set or the postings could not be opened.
+     */
+    @Nullable
+    public static EntityPostings shared() {
+        if (!sharedLoaded) {
+            synchronized (EntityPostings.class) {
+                if (!sharedLoaded) {
+                    String dir = Options.get("entity-postings", null);
+                    if (dir != null) {
+                        try {
+                            shared = open(dir);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    sharedLoaded = true;
+                }
+            }
+        }
+        return shared;
+    }
+
+    public EntityDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Number of documents (maxDoc) of the index the postings were built from.
+     * @return Integer
+     */
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    /**
+     * Check whether the postings were built from the index of the searcher (the same segments, see
+     * {@link IndexIdentity}).
+     * @param searcher IndexSearcher
+     * @return Boolean
+     */
+    public boolean matches(@NotNull IndexSearcher searcher) {
+        IndexReader reader = searcher.getIndexReader();
+        return reader.maxDoc() == maxDoc && IndexIdentity.matches(reader, identity);
+    }
+
+    /**
+     * Number of paragraphs which mention the entity.
+     * @param id Integer ID of the entity.
+     * @return Integer
+     */
+    public int docFreq(int id) {
+        return file.getInt(lengthStart + 4L * id);
+    }
+
+    /**
+     * Get the docIDs of the paragraphs which mention the entity.
+     * @param entity String Entity as stored in the index (see {@link help.Utilities#process(String)}).
+     * @return int[] Sorted docIDs.
+     */
+    @NotNull
+    public int[] docIds(String entity) {
+        int id = dictionary.id(entity);
+        return id < 0 ? new int[0] : docIds(id);
+    }
+
+    /**
+     * Get the docIDs of the paragraphs which mention the entity.
+     * @param id Integer ID of the entity.
+     * @return int[] Sorted docIDs.
+     */
+    @NotNull
+    public int[] docIds(int id) {
+        int n = docFreq(id);
+        int[] docs = new int[n];
+        long p = file.getLong(HEADER + 8L * id);
+        int doc = 0;
+        for (int i = 0; i < n; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = file.getByte(p++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    /**
+     * Intersect two sorted int arrays.
+     * @param a int[] Sorted array.
+     * @param b int[] Sorted array.
+     * @return int[] Sorted ints in both arrays.
+     */
+    @NotNull
+    public static int[] intersect(@NotNull int[] a, @NotNull int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Look up the docIDs of paragraphs by their paragraph IDs.
+     * Only the terms dictionary of the ID field is used (or the {@link ParagraphIdColumn} of the index if it has one);
+     * no stored fields are loaded.
+     * @param paraList List List of paragraph IDs.
+     * @param field String Name of the paragraph ID field.
+     * @param searcher IndexSearcher Searcher over the paragraph index.
+     * @return int[] The docID of every paragraph in the list (in the order of the list), or -1 if it is not found.
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static int[] lookup(@NotNull List<String> paraList, String field, @NotNull IndexSearcher searcher)
+            throws IOException {
+        long start = Metrics.start();
+        int[] docs = new int[paraList.size()];
+        ParagraphIdColumn column = Index.paraIdColumn(searcher);
+        if (column != null && column.getField().equals(field)) {
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = column.docId(paraList.get(i));
+            }
+            Metrics.stop(Metrics.Stage.INDEX_LOOKUP, start);
+            return docs;
+        }
+        Arrays.fill(docs, -1);
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            Terms terms = leaf.reader().terms(field);
+            if (terms == null) {
+                continue;
+            }
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            TermsEnum termsEnum = terms.iterator();
+            PostingsEnum postings = null;
+            for (int i = 0; i < docs.length; i++) {
+                if (docs[i] >= 0 || !termsEnum.seekExact(new BytesRef(paraList.get(i)))) {
+                    continue;
+                }
+                postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        docs[i] = leaf.docBase + doc;
+                        break;
+                    }
+                }
+            }
+        }
+        Metrics.stop(Metrics.Stage.INDEX_LOOKUP, start);
+        return docs;
+    }
+
+    /**
+     * Build the entity postings of a paragraph index.
+     * The entity dictionary in the output directory is used if there is one (e.g. written by "cooc-index"),
+     * otherwise it is built. The segments of the index are read in parallel.
+     * @param indexDir String Path to the paragraph index.
+     * @param outDir String Directory to write the postings to.
+     * @param field String Name of the entity field of the paragraph index.
+     * @param executor ExecutorService Executor to read the segments on.
+     * @throws IOException IOException
+     */
+    public static void build(String indexDir,
+                             String outDir,
+                             String field,
+                             @NotNull ExecutorService executor) throws IOException {
+        Path out = Paths.get(outDir);
+        Files.createDirectories(out);
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexDir)))) {
+            byte[] identity = IndexIdentity.of(reader);
+            if (identity == null) {
+                throw new IOException("The segments of the index have no IDs");
+            }
+            EntityDictionary dictionary;
+            if (Files.exists(out.resolve(EntityDictionary.FILE_NAME))) {
+                System.out.print("Reading entity dictionary...");
+                dictionary = EntityDictionary.read(out);
+            } else {
+                System.out.print("Building entity dictionary...");
+                dictionary = EntityDictionary.build(reader, field, executor);
+                dictionary.write(out);
+            }
+            System.out.println("[Done]. Found " + dictionary.size() + " entities.");
+
+            System.out.print("Reading the entities of " + reader.maxDoc() + " paragraphs in "
+                    + reader.leaves().size() + " segments...");
+            List<Future<int[][]>> futures = new ArrayList<>();
+            for (LeafReaderContext leaf : reader.leaves()) {
+                futures.add(executor.submit(() -> segmentPostings(leaf, field, dictionary)));
+            }
+            // The segments are in docID order, so appending their posting lists keeps the docIDs sorted
+            List<int[][]> segments = new ArrayList<>();
+            for (Future<int[][]> future : futures) {
+                segments.add(EntityDictionary.get(future));
+            }
+            System.out.println("[Done].");
+
+            System.out.print("Writing entity postings...");
+            // Written to a temporary file first, so that a run which fails on the way leaves no truncated postings
+            Path temp = out.resolve(FILE_NAME + ".tmp");
+            try {
+                write(temp, dictionary.size(), reader.maxDoc(), identity, segments);
+                MappedFile.moveIntoPlace(temp, out.resolve(FILE_NAME));
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            System.out.println("[Done].");
+        }
+    }
+
+    /**
+     * Get the posting lists of one segment in CSR form.
+     * @return int[][] {start of the list of every entity (numEntities + 1), global docIDs}
+     */
+    @NotNull
+    private static int[][] segmentPostings(@NotNull LeafReaderContext leaf,
+                                           String field,
+                                           @NotNull EntityDictionary dictionary) throws IOException {
+        LeafReader reader = leaf.reader();
+        Bits liveDocs = reader.getLiveDocs();
+        int[][] docEntities = new int[reader.maxDoc()][];
+        int[] start = new int[dictionary.size() + 1];
+        for (int doc = 0; doc < reader.maxDoc(); doc++) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            docEntities[doc] = dictionary.ids(Arrays.asList(EntityDictionary.entities(reader, doc, field)));
+            for (int e : docEntities[doc]) {
+                start[e + 1]++;
+            }
+        }
+        for (int e = 0; e < dictionary.size(); e++) {
+            start[e + 1] += start[e];
+        }
+        int[] docs = new int[start[dictionary.size()]];
+        int[] next = Arrays.copyOf(start, dictionary.size());
+        for (int doc = 0; doc < docEntities.length; doc++) {
+            if (docEntities[doc] != null) {
+                for (int e : docEntities[doc]) {
+                    docs[next[e]++] = leaf.docBase + doc;
+                }
+            }
+        }
+        return new int[][] {start, docs};
+    }
+
+    private static void write(@NotNull Path path,
+                              int numEntities,
+                              int maxDoc,
+                              @NotNull byte[] identity,
+                              @NotNull List<int[][]> segments) throws IOException {
+        // Encode the posting lists, remembering where each one starts
+        Path data = path.resolveSibling(path.getFileName() + ".data");
+        long[] start = new long[numEntities + 1];
+        int[] length = new int[numEntities];
+        long position = HEADER + 8L * (numEntities + 1) + 4L * numEntities;
+        try (BufferedOutputStream bos = new BufferedOutputStream(Files.newOutputStream(data), 1 << 20)) {
+            ByteArrayOutputStream list = new ByteArrayOutputStream();
+            for (int e = 0; e < numEntities; e++) {
+                list.reset();
+                int previous = 0;
+                for (int[][] segment : segments) {
+                    int[] segmentStart = segment[0];
+                    int[] docs = segment[1];
+                    for (int i = segmentStart[e]; i < segmentStart[e + 1]; i++) {
+                        writeVInt(list, docs[i] - previous);
+                        previous = docs[i];
+                        length[e]++;
+                    }
+                }
+                start[e] = position;
+                list.writeTo(bos);
+                position += list.size();
+            }
+            start[numEntities] = position;
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 20))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(numEntities);
+            dos.writeInt(maxDoc);
+            dos.write(identity);
+            for (long s : start) {
+                dos.writeLong(s);
+            }
+            for (int l : length) {
+                dos.writeInt(l);
+            }
+            Files.copy(data, dos);
+        } finally {
+            Files.deleteIfExists(data);
+        }
+    }
+
+    private static void writeVInt(@NotNull ByteArrayOutputStream out, int i) {
+        while ((i & ~0x7F) != 0) {
+            out.write((i & 0x7F) | 0x80);
+            i >>>= 7;
+        }
+        out.write(i);
+    }
+}
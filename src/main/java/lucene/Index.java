@@ -1,20 +1,27 @@
 package lucene;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.StreamSupport;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
@@ -24,13 +31,21 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
 import edu.unh.cs.treccar_v2.Data;
+import help.Events;
+import help.Metrics;
+import help.Options;
+import help.TaskRunner;
 import edu.unh.cs.treccar_v2.read_data.DeserializeData;
 import me.tongfei.progressbar.ProgressBar;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This class is used to index the documents into a Lucene index
@@ -49,14 +64,18 @@ public class Index
      */
     private  static String CBOR_FILE ;
     /**
-     * Number of documents indexed
+     * Number of documents indexed (by the threads of the "index" executor)
      */
-    private static int COUNT;
+    private static final AtomicInteger COUNT = new AtomicInteger();
 
     //private static String ENTITY_FILE;
     private  static IndexSearcher is = null;
     private  static QueryParser qp = null;
     private static ProgressBar pb;
+    /**
+     * Paragraph ID columns of the indexes opened by {@link Setup}, by their readers
+     */
+    private static final Map<IndexReader, ParagraphIdColumn> COLUMNS = new ConcurrentHashMap<>();
     /**
      * Inner class to build a luecene index
      * @author Shubham Chatterjee
@@ -75,7 +94,7 @@ public class Index
             Index.INDEX_DIR = INDEX_DIR;
             Index.CBOR_FILE = CBOR_FILE;
             //Index.ENTITY_FILE = ENTITY_FILE;
-            COUNT = 0;
+            COUNT.set(0);
             pb = new ProgressBar("Progress",29794697 );
         }
         /**
@@ -102,11 +121,12 @@ public class Index
         private static Document createDocument(String entity, String text, String id)
         {
 
-            COUNT++;
+            COUNT.incrementAndGet();
             Document doc = new Document();
             doc.add(new StringField("paraentity", entity, Field.Store.YES));
             doc.add(new TextField("parabody", text, Field.Store.YES));
-            doc.add(new StringField("paraid", id, Field.Store.YES));
+            doc.add(new StringField(Options.idField(), id, Field.Store.YES));
+            doc.add(new SortedDocValuesField(Options.idField(), new BytesRef(id)));
             System.out.println(id);
             return doc;
         }
@@ -117,7 +137,7 @@ public class Index
          */
         private static Document createDocument(Data.Paragraph para)
         {
-            COUNT++;
+            COUNT.incrementAndGet();
             Document paradoc = new Document();
             List<String> entity = para.getEntitiesOnly();
             String entityString = "";
@@ -139,7 +159,10 @@ public class Index
                 entityString += " "+s;
             }
             entity = null;
-            paradoc.add(new StringField("paraid", para.getParaId(), Field.Store.YES));
+            // The paragraph ID goes into the field the methods read it from ("--id-field=NAME")
+            paradoc.add(new StringField(Options.idField(), para.getParaId(), Field.Store.YES));
+            // The paragraph ID as doc values too, so that the run strings are made without loading the documents
+            paradoc.add(new SortedDocValuesField(Options.idField(), new BytesRef(para.getParaId())));
             paradoc.add(new StringField("paraentity", entityString, Field.Store.YES));
             paradoc.add(new TextField("parabody", para.getTextOnly(), Field.Store.YES));
             System.out.println(para.getParaId());
@@ -169,8 +192,8 @@ public class Index
 			}*/
             Iterable<Data.Paragraph> ip = DeserializeData.iterableParagraphs(bis);
 
-            StreamSupport.stream(ip.spliterator(), true)
-                    .forEach(paragraph ->
+            // Index the paragraphs on the "index" executor ("--index-threads=N"), not on the common pool
+            TaskRunner.forEach(ip, TaskRunner.newExecutor("index"), paragraph ->
                     {
                         try {
                             writer.addDocument(createDocument(paragraph));
@@ -189,6 +212,9 @@ public class Index
             writer.commit();
             writer.close();
             pb.close();
+            System.out.println("Number of paragraphs indexed = " + COUNT.get());
+            // The docIDs are only known once the index is written
+            ParagraphIdColumn.build(INDEX_DIR, Options.idField());
         }
         /**
          * Create a Lucene index for each entity in each paragraph using the given analyzer
@@ -231,6 +257,7 @@ public class Index
      */
     public final static class Setup
     {
+        private static ExecutorService searchExecutor = null;
         /**
          * Set up the searcher with default BM25 similarity and StandardAnalyzer to search in the INDEX_DIR
          * @param INDEX_DIR
@@ -278,7 +305,8 @@ public class Index
         {
             Directory dir = FSDirectory.open((new File(INDEX_DIR).toPath()));
             IndexReader reader = DirectoryReader.open(dir);
-            IndexSearcher searcher = new IndexSearcher(reader);
+            IndexSearcher searcher = newSearcher(reader, searchExecutor());
+            openColumn(reader);
             searcher.setSimilarity(sim);
             return searcher;
         }
@@ -291,10 +319,113 @@ public class Index
         {
             Directory dir = FSDirectory.open((new File(INDEX_DIR).toPath()));
             IndexReader reader = DirectoryReader.open(dir);
-            IndexSearcher searcher = new IndexSearcher(reader);
+            IndexSearcher searcher = newSearcher(reader, searchExecutor());
+            openColumn(reader);
             searcher.setSimilarity(new BM25Similarity());
             return searcher;
         }
+        /**
+         * Open the paragraph ID column of the index (see {@link ParagraphIdColumn}), if it has one which matches the
+         * reader and it is not switched off with "--paraid-column=false".
+         * @param reader IndexReader Reader of the index.
+         */
+        private static void openColumn(IndexReader reader)
+        {
+            if (!Boolean.parseBoolean(Options.get("paraid-column", "true")) || !ParagraphIdColumn.exists(INDEX_DIR))
+            {
+                return;
+            }
+            try
+            {
+                ParagraphIdColumn column = ParagraphIdColumn.open(INDEX_DIR);
+                if (column.matches(reader))
+                {
+                    COLUMNS.put(reader, column);
+                }
+                else
+                {
+                    System.out.println("The paragraph ID column does not match the index. Build it again using paraid-column.");
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        /**
+         * Get the executor of the segment-parallel searches.
+         * With "--search-threads=N" (N > 0) every search of the index is split into slices of segments which are
+         * searched on N threads of the "search" executor, so that a single large query (e.g. an expanded query
+         * with many clauses) uses more than one processor. By default (N = 0) a search runs on the calling thread.
+         * @return ExecutorService The executor, or null if the searches are not parallel.
+         */
+        @Nullable
+        private static synchronized ExecutorService searchExecutor()
+        {
+            int threads = Options.getInt("search-threads", 0);
+            if (threads > 0 && searchExecutor == null)
+            {
+                searchExecutor = TaskRunner.newExecutor("search", threads);
+            }
+            return searchExecutor;
+        }
+        /**
+         * Create a searcher of the index which searches its slices of segments on the executor.
+         * A slice holds at most "--slice-docs=N" documents (DEFAULT = 250000) and at most "--slice-segments=N"
+         * segments (DEFAULT = 5); a segment larger than that is a slice by itself. Fewer, larger slices cost less
+         * to hand out and merge, more, smaller slices spread a query over more threads.
+         * @param reader IndexReader Reader of the index.
+         * @param executor ExecutorService Executor to search the slices on, or null to search on the calling thread.
+         * @return IndexSearcher
+         */
+        @NotNull
+        public static IndexSearcher newSearcher(IndexReader reader, @Nullable ExecutorService executor)
+        {
+            int maxDocs = Options.getInt("slice-docs", 250000);
+            int maxSegments = Options.getInt("slice-segments", 5);
+            return new IndexSearcher(reader, executor)
+            {
+                @Override
+                protected LeafSlice[] slices(List<LeafReaderContext> leaves)
+                {
+                    return Setup.slices(leaves, maxDocs, maxSegments);
+                }
+            };
+        }
+        /**
+         * Group the segments of an index into slices: the largest segments first, each slice filled up to the
+         * given number of documents and segments.
+         * @param leaves List Segments of the index.
+         * @param maxDocs Integer Maximum number of documents of a slice (unless it has a single segment).
+         * @param maxSegments Integer Maximum number of segments of a slice.
+         * @return LeafSlice[]
+         */
+        @NotNull
+        public static IndexSearcher.LeafSlice[] slices(@NotNull List<LeafReaderContext> leaves, int maxDocs, int maxSegments)
+        {
+            List<LeafReaderContext> sorted = new ArrayList<>(leaves);
+            sorted.sort(Comparator.comparingInt((LeafReaderContext leaf) -> leaf.reader().maxDoc()).reversed());
+            List<IndexSearcher.LeafSlice> slices = new ArrayList<>();
+            List<LeafReaderContext> group = new ArrayList<>();
+            long docs = 0;
+            for (LeafReaderContext leaf : sorted)
+            {
+                int size = leaf.reader().maxDoc();
+                if (!group.isEmpty() && (docs + size > maxDocs || group.size() >= maxSegments))
+                {
+                    slices.add(new IndexSearcher.LeafSlice(group.toArray(new LeafReaderContext[0])));
+                    group.clear();
+                    docs = 0;
+                }
+                group.add(leaf);
+                docs += size;
+            }
+            if (!group.isEmpty())
+            {
+                slices.add(new IndexSearcher.LeafSlice(group.toArray(new LeafReaderContext[0])));
+            }
+            return slices.toArray(new IndexSearcher.LeafSlice[0]);
+        }
         /**
          * Create a query parser which parses queries using the standard analyzer and searcher in the parabody
          * @return QueryParser Parser to parse the query
@@ -351,8 +482,13 @@ public class Index
          */
         public static TopDocs searchIndex(String query,int n)throws IOException,ParseException
         {
+            long start = Metrics.start();
+            Events.LuceneSearch event = new Events.LuceneSearch();
+            event.begin();
             Query q = qp.parse(query);
             TopDocs tds = is.search(q, n);
+            Metrics.stop(Metrics.Stage.SEARCH, start);
+            Events.luceneSearch(event, "main", q, tds);
             return tds;
         }
         /**
@@ -366,19 +502,67 @@ public class Index
          */
         public static TopDocs searchIndex(BooleanQuery query,int n)throws IOException
         {
+            long start = Metrics.start();
+            Events.LuceneSearch event = new Events.LuceneSearch();
+            event.begin();
             TopDocs tds = is.search(query, n);
+            Metrics.stop(Metrics.Stage.SEARCH, start);
+            Events.luceneSearch(event, "main", query, tds);
             return tds;
         }
+        /**
+         * Search the index for the given query and return the top n hits.
+         * The hits are the same as those of an exhaustive search, but the total number of hits is only counted up
+         * to "--total-hits-threshold=N" (DEFAULT = n), so it is a lower bound for a query with many matches.
+         * The query is pruned first if the pruning is switched on (see {@link QueryPruner}).
+         * The results are cached if the query cache is switched on (see {@link QueryCache}).
+         * @param booleanQuery BooleanQuery Query to search
+         * @param n Integer Top hits for the query
+         * @param searcher IndexSearcher Searcher of the index
+         * @return TopDocs
+         * @throws IOException
+         */
         public static TopDocs searchIndex(BooleanQuery booleanQuery,
                                           int n,
                                           IndexSearcher searcher)throws IOException
         {
-            TopDocs search = searcher.search(booleanQuery, n);
+            BooleanQuery query = QueryPruner.enabled()
+                    ? QueryPruner.prune(booleanQuery, searcher.getIndexReader())
+                    : booleanQuery;
+            QueryCache.Key key = QueryCache.key(query, n, searcher);
+            if (key != null)
+            {
+                TopDocs cached = QueryCache.get(key);
+                if (cached != null)
+                {
+                    return cached;
+                }
+            }
+            long start = Metrics.start();
+            Events.LuceneSearch event = new Events.LuceneSearch();
+            event.begin();
+            // Only count the matching documents up to the threshold: after that, the search skips the blocks of
+            // documents which cannot make it into the top n (block-max WAND), which is where the time of an
+            // expanded query with many SHOULD clauses goes
+            int threshold = Options.getInt("total-hits-threshold", n);
+            TopDocs search = searcher.search(query,
+                    TopScoreDocCollector.createSharedManager(n, null, threshold));
+            Metrics.stop(Metrics.Stage.SEARCH, start);
+            Events.luceneSearch(event, "main", query, search);
+            if (QueryPruner.checking())
+            {
+                QueryPruner.check(booleanQuery, search, n, searcher);
+            }
+            if (key != null)
+            {
+                QueryCache.put(key, search);
+            }
             return search;
         }
         /**
          * Search the index for the given query in given field and return topmost hit
          * Use this to search an id or a phone number or another query which is not tokenized by lucene
+         * If the index has a paragraph ID column of the field, the paragraph is found using the column instead
          * @param field String Field to search
          * @param query String Query to search
          * @return Document The top document matching the query
@@ -387,16 +571,27 @@ public class Index
          */
         public static Document searchIndex(String field,String query)throws IOException,ParseException
         {
+            long start = Metrics.start();
+            ParagraphIdColumn column = paraIdColumn(is);
+            if (column != null && column.getField().equals(field))
+            {
+                int doc = column.docId(query);
+                Document d = doc < 0 ? null : is.doc(doc);
+                Metrics.stop(Metrics.Stage.INDEX_LOOKUP, start);
+                return d;
+            }
             Term term = new Term(field,query);
             Query q = new TermQuery(term);
             TopDocs tds = is.search(q,1);
             ScoreDoc[] retDocs = tds.scoreDocs;
             Document d = is.doc(retDocs[0].doc);
+            Metrics.stop(Metrics.Stage.INDEX_LOOKUP, start);
             return d;
         }
         /**
          * Search the index for the given query in given field and return topmost hit using the given searcher instance
          * Use this to search an id or a phone number or another query which is not tokenized by lucene
+         * If the index has a paragraph ID column of the field, the paragraph is found using the column instead
          * @param field String Field to search
          * @param query String Query to search
          * @return Document The top document matching the query
@@ -405,7 +600,20 @@ public class Index
          */
         public static Document searchIndex(String field,String query,IndexSearcher searcher)throws IOException,ParseException
         {
-            Document d;
+            long start = Metrics.start();
+            Document d = null;
+            ParagraphIdColumn column = paraIdColumn(searcher);
+            if (column != null && column.getField().equals(field))
+            {
+                // Find the paragraph by the minimal perfect hash of the column instead of the terms of the index
+                int doc = column.docId(query);
+                if (doc >= 0)
+                {
+                    d = searcher.doc(doc);
+                }
+                Metrics.stop(Metrics.Stage.INDEX_LOOKUP, start);
+                return d;
+            }
             Term term = new Term(field,query);
             Query q = new TermQuery(term);
             TopDocs tds = searcher.search(q,1);
@@ -413,9 +621,9 @@ public class Index
             if(retDocs.length != 0)
             {
                 d = searcher.doc(retDocs[0].doc);
-                return d;
             }
-            return null;
+            Metrics.stop(Metrics.Stage.INDEX_LOOKUP, start);
+            return d;
         }
         /**
          * Search the index for the given query in given field and return topmost n hits
@@ -428,6 +636,9 @@ public class Index
          */
         public static HashMap<Document, Float> searchIndex(String field,String query,int n)throws IOException
         {
+            long start = Metrics.start();
+            Events.LuceneSearch event = new Events.LuceneSearch();
+            event.begin();
             HashMap<Document,Float> results = new HashMap<Document,Float>();
             Term term = new Term(field,query);
             Query q = new TermQuery(term);
@@ -435,16 +646,30 @@ public class Index
             ScoreDoc[] retDocs = tds.scoreDocs;
             for (int i = 0; i < retDocs.length; i++)
                 results.put(is.doc(retDocs[i].doc),tds.scoreDocs[i].score);
+            Metrics.stop(Metrics.Stage.SEARCH, start);
+            Events.luceneSearch(event, "main", q, tds);
             return results;
         }
     }
+    /**
+     * Get the paragraph ID column of the index of a searcher
+     * @param searcher IndexSearcher Searcher of the index
+     * @return ParagraphIdColumn The column, or null if the index does not have one (or it was not opened by {@link Setup})
+     */
+    @Nullable
+    public static ParagraphIdColumn paraIdColumn(IndexSearcher searcher)
+    {
+        return COLUMNS.get(searcher.getIndexReader());
+    }
     /**
      * Get the index size
+     * If the index has been opened by {@link Setup}, this is the number of documents in it. Otherwise it is the number of
+     * documents indexed by {@link Build}. Use "index-stats" for the segments and fields of an index.
      * @return Integer Size of the index (number of documents)
      */
     public static int getIndexSize()
     {
-        return COUNT;
+        return is != null ? is.getIndexReader().numDocs() : COUNT.get();
     }
 	/*public static void main(String[] args) throws IOException
 	{
@@ -0,0 +1,92 @@
+package lucene;
+
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Identity of the segments of an index, to check that a file holding docIDs of an index (the
+ * {@link ParagraphIdColumn}, the {@link EntityPostings} and the {@link Workload}) or counts made from it (the
+ * {@link CoOccurrenceIndex}) is used with that index.
+ * The docID of a paragraph depends on the segments of the index and on the order of the documents in them. This
+ * changes whenever the index is built again (the paragraphs are indexed on several threads) or merged, even if the
+ * number of documents stays the same. Lucene gives every segment a random ID when it writes the segment, so the
+ * identity is the SHA-256 digest of the IDs and sizes (maxDoc) of the segments, in docID order.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class IndexIdentity {
+    /**
+     * Length of an identity in bytes.
+     */
+    public static final int BYTES = 32;
+
+    private static final Map<IndexReader, byte[]> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private IndexIdentity() {
+    }
+
+    /**
+     * Get the identity of an index.
+     * @param reader IndexReader Reader of the index.
+     * @return byte[] The identity, or null if a segment of the index has no ID (e.g. a reader which is not over
+     * segments of a directory).
+     */
+    @Nullable
+    public static byte[] of(@NotNull IndexReader reader) {
+        byte[] identity = CACHE.get(reader);
+        if (identity == null) {
+            identity = compute(reader);
+            if (identity != null) {
+                CACHE.put(reader, identity);
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * Check whether an index has the given identity.
+     * @param reader IndexReader Reader of the index.
+     * @param identity byte[] Identity stored with a file built from an index.
+     * @return Boolean
+     */
+    public static boolean matches(@NotNull IndexReader reader, @NotNull byte[] identity) {
+        byte[] actual = of(reader);
+        return actual != null && Arrays.equals(actual, identity);
+    }
+
+    @Nullable
+    private static byte[] compute(@NotNull IndexReader reader) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (LeafReaderContext leaf : reader.leaves()) {
+            LeafReader leafReader = FilterLeafReader.unwrap(leaf.reader());
+            if (!(leafReader instanceof SegmentReader)) {
+                return null;
+            }
+            byte[] id = ((SegmentReader) leafReader).getSegmentInfo().info.getId();
+            if (id == null) {
+                return null;
+            }
+            digest.update(id);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(leafReader.maxDoc()).array());
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,558 @@
+package lucene;
+
+import help.TopK;
+import help.Utilities;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Report of the statistics of a paragraph index: its documents and segments, and for every field the number of terms
+ * and the bytes of its postings (terms dictionary, postings and positions), norms, stored values and doc values,
+ * along with the entities mentioned by the most paragraphs.
+ * The files of a segment (or the files inside its compound file) give the exact bytes of every part of the segment,
+ * but the codec writes the parts of all fields to the same files. So the bytes of a field are measured by reading all
+ * of its data through a directory which counts the bytes read from the files of every segment. This works the same for
+ * compound files and for any codec, but it is the bytes read when going through the whole field and not an exact
+ * share of the files (e.g. the part of the terms index which is read when the index is opened is not counted).
+ * The stored fields of a document are compressed together, so the stored bytes of a field are the bytes of its values
+ * before compression.
+ * The segments are read in parallel, one task per segment.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class IndexStats {
+
+    private IndexStats() {
+    }
+
+    /**
+     * Statistics of a field in a segment, or in the whole index (the sum of the segments).
+     */
+    private static final class FieldStats {
+        private final String name;
+        private long terms;
+        private long sumDocFreq;
+        private long sumTotalTermFreq;
+        private long postingsBytes;
+        private long normsBytes;
+        private long storedBytes;
+        private long docValuesBytes;
+
+        private FieldStats(String name) {
+            this.name = name;
+        }
+
+        private void add(@NotNull FieldStats other) {
+            terms += other.terms;
+            sumDocFreq += other.sumDocFreq;
+            sumTotalTermFreq += other.sumTotalTermFreq;
+            postingsBytes += other.postingsBytes;
+            normsBytes += other.normsBytes;
+            storedBytes += other.storedBytes;
+            docValuesBytes += other.docValuesBytes;
+        }
+
+        private long bytes() {
+            return postingsBytes + normsBytes + storedBytes + docValuesBytes;
+        }
+    }
+
+    /**
+     * Parts of a segment, by the extensions of their files.
+     */
+    private enum Part {
+        POSTINGS("tim", "tip", "tmd", "doc", "pos", "pay"),
+        NORMS("nvd", "nvm"),
+        STORED("fdt", "fdx", "fdm"),
+        DOC_VALUES("dvd", "dvm"),
+        OTHER;
+
+        private final Set<String> extensions;
+
+        Part(String... extensions) {
+            this.extensions = new HashSet<>(Arrays.asList(extensions));
+        }
+
+        private static Part of(String file) {
+            String extension = IndexFileNames.getExtension(file);
+            for (Part part : values()) {
+                if (part.extensions.contains(extension)) {
+                    return part;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Statistics of a segment.
+     */
+    private static final class SegmentStats {
+        private final String name;
+        private final int maxDoc;
+        private final int numDocs;
+        private final long sizeInBytes;
+        private final boolean compound;
+        private final long[] parts = new long[Part.values().length];
+        private final Map<String, FieldStats> fields = new TreeMap<>();
+        private final Map<String, Integer> entities = new HashMap<>();
+
+        private SegmentStats(String name, int maxDoc, int numDocs, long sizeInBytes, boolean compound) {
+            this.name = name;
+            this.maxDoc = maxDoc;
+            this.numDocs = numDocs;
+            this.sizeInBytes = sizeInBytes;
+            this.compound = compound;
+        }
+
+        private FieldStats field(String field) {
+            return fields.computeIfAbsent(field, FieldStats::new);
+        }
+    }
+
+    /**
+     * Compute the statistics of a paragraph index and print them.
+     * @param indexDir String Path to the paragraph index.
+     * @param entityField String Name of the stored entity field of the paragraph index.
+     * @param k Integer Number of most frequent entities to report.
+     * @param executor ExecutorService Executor to read the segments on.
+     * @throws IOException IOException
+     */
+    public static void report(String indexDir,
+                              String entityField,
+                              int k,
+                              @NotNull ExecutorService executor) throws IOException {
+        CountingDirectory dir = new CountingDirectory(FSDirectory.open(Paths.get(indexDir)));
+        try (IndexReader reader = DirectoryReader.open(dir)) {
+            System.out.print("Reading " + reader.leaves().size() + " segments...");
+            long start = System.nanoTime();
+            List<Future<SegmentStats>> futures = new ArrayList<>();
+            for (LeafReaderContext leaf : reader.leaves()) {
+                futures.add(executor.submit(() -> segment(leaf.reader(), dir, entityField)));
+            }
+            List<SegmentStats> segments = new ArrayList<>();
+            for (Future<SegmentStats> future : futures) {
+                segments.add(EntityDictionary.get(future));
+            }
+            System.out.println("[Done] in " + (System.nanoTime() - start) / 1000000 + " ms.");
+            print(indexDir, reader, segments, entityField, k);
+        }
+    }
+
+    /**
+     * Compute the statistics of one segment.
+     */
+    @NotNull
+    private static SegmentStats segment(@NotNull LeafReader reader,
+                                        @NotNull CountingDirectory dir,
+                                        String entityField) throws IOException {
+        SegmentReader segmentReader = (SegmentReader) FilterLeafReader.unwrap(reader);
+        String name = segmentReader.getSegmentName();
+        SegmentStats stats = new SegmentStats(name, reader.maxDoc(), reader.numDocs(),
+                segmentReader.getSegmentInfo().sizeInBytes(), segmentReader.getSegmentInfo().info.getUseCompoundFile());
+        readFiles(segmentReader.getSegmentInfo().info, stats);
+        LongAdder bytesRead = dir.counter(name);
+
+        for (FieldInfo fieldInfo : reader.getFieldInfos()) {
+            FieldStats field = stats.field(fieldInfo.name);
+            if (fieldInfo.getIndexOptions() != IndexOptions.NONE) {
+                long before = bytesRead.sum();
+                readPostings(reader, fieldInfo, field);
+                field.postingsBytes = bytesRead.sum() - before;
+            }
+            if (fieldInfo.hasNorms()) {
+                long before = bytesRead.sum();
+                readNorms(reader, fieldInfo.name);
+                field.normsBytes = bytesRead.sum() - before;
+            }
+            if (fieldInfo.getDocValuesType() != DocValuesType.NONE) {
+                long before = bytesRead.sum();
+                readDocValues(reader, fieldInfo);
+                field.docValuesBytes = bytesRead.sum() - before;
+            }
+        }
+
+        readStoredFields(reader, stats, entityField);
+        return stats;
+    }
+
+    /**
+     * Add up the sizes of the files of a segment (or of the files inside its compound file) by part.
+     * The rest of the size of the segment (e.g. its deletions, or the compound file itself) is counted as other.
+     */
+    private static void readFiles(@NotNull SegmentInfo info, @NotNull SegmentStats stats) throws IOException {
+        if (info.getUseCompoundFile()) {
+            try (Directory cfs = info.getCodec().compoundFormat().getCompoundReader(info.dir, info, IOContext.READONCE)) {
+                for (String file : cfs.listAll()) {
+                    stats.parts[Part.of(file).ordinal()] += cfs.fileLength(file);
+                }
+            }
+        } else {
+            for (String file : info.files()) {
+                stats.parts[Part.of(file).ordinal()] += info.dir.fileLength(file);
+            }
+        }
+        long known = 0;
+        for (Part part : Part.values()) {
+            if (part != Part.OTHER) {
+                known += stats.parts[part.ordinal()];
+            }
+        }
+        stats.parts[Part.OTHER.ordinal()] = Math.max(0, stats.sizeInBytes - known);
+    }
+
+    /**
+     * Read every term and every posting (with its positions, if the field has them) of a field.
+     */
+    private static void readPostings(@NotNull LeafReader reader,
+                                     @NotNull FieldInfo fieldInfo,
+                                     @NotNull FieldStats field) throws IOException {
+        Terms terms = reader.terms(fieldInfo.name);
+        if (terms == null) {
+            return;
+        }
+        boolean positions = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+        while (termsEnum.next() != null) {
+            field.terms++;
+            postings = termsEnum.postings(postings, positions ? PostingsEnum.ALL : PostingsEnum.FREQS);
+            while (postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                if (positions) {
+                    for (int i = postings.freq(); i > 0; i--) {
+                        postings.nextPosition();
+                    }
+                }
+            }
+        }
+        field.sumDocFreq = terms.getSumDocFreq();
+        field.sumTotalTermFreq = terms.getSumTotalTermFreq();
+    }
+
+    private static void readNorms(@NotNull LeafReader reader, String field) throws IOException {
+        NumericDocValues norms = reader.getNormValues(field);
+        while (norms != null && norms.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            norms.longValue();
+        }
+    }
+
+    /**
+     * Read every value of the doc values of a field (and every distinct value of sorted doc values, in order, so that
+     * the blocks of the values are read once).
+     */
+    private static void readDocValues(@NotNull LeafReader reader, @NotNull FieldInfo fieldInfo) throws IOException {
+        String field = fieldInfo.name;
+        switch (fieldInfo.getDocValuesType()) {
+            case NUMERIC:
+                NumericDocValues numeric = reader.getNumericDocValues(field);
+                while (numeric.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    numeric.longValue();
+                }
+                break;
+            case BINARY:
+                BinaryDocValues binary = reader.getBinaryDocValues(field);
+                while (binary.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    binary.binaryValue();
+                }
+                break;
+            case SORTED:
+                SortedDocValues sorted = reader.getSortedDocValues(field);
+                while (sorted.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    sorted.ordValue();
+                }
+                readTerms(sorted.termsEnum());
+                break;
+            case SORTED_NUMERIC:
+                SortedNumericDocValues sortedNumeric = reader.getSortedNumericDocValues(field);
+                while (sortedNumeric.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    for (int i = sortedNumeric.docValueCount(); i > 0; i--) {
+                        sortedNumeric.nextValue();
+                    }
+                }
+                break;
+            case SORTED_SET:
+                SortedSetDocValues sortedSet = reader.getSortedSetDocValues(field);
+                while (sortedSet.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    while (sortedSet.nextOrd() != SortedSetDocValues.NO_MORE_ORDS) {
+                        // Only reading the ords
+                    }
+                }
+                readTerms(sortedSet.termsEnum());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void readTerms(@NotNull TermsEnum termsEnum) throws IOException {
+        while (termsEnum.next() != null) {
+            // Only reading the terms
+        }
+    }
+
+    /**
+     * Read the stored fields of every live document, adding up the bytes of the values of every field and counting
+     * the paragraphs which mention every entity.
+     */
+    private static void readStoredFields(@NotNull LeafReader reader,
+                                         @NotNull SegmentStats stats,
+                                         String entityField) throws IOException {
+        Bits liveDocs = reader.getLiveDocs();
+        StoredFieldVisitor visitor = new StoredFieldVisitor() {
+            @Override
+            public Status needsField(FieldInfo fieldInfo) {
+                return Status.YES;
+            }
+
+            @Override
+            public void binaryField(FieldInfo fieldInfo, byte[] value) {
+                stats.field(fieldInfo.name).storedBytes += value.length;
+            }
+
+            @Override
+            public void stringField(FieldInfo fieldInfo, byte[] value) {
+                stats.field(fieldInfo.name).storedBytes += value.length;
+                if (fieldInfo.name.equals(entityField)) {
+                    String[] entities = Utilities.clean(new String(value, StandardCharsets.UTF_8).split(" "));
+                    // Count every entity once per paragraph
+                    for (String entity : new HashSet<>(Arrays.asList(entities))) {
+                        stats.entities.merge(entity, 1, Integer::sum);
+                    }
+                }
+            }
+
+            @Override
+            public void intField(FieldInfo fieldInfo, int value) {
+                stats.field(fieldInfo.name).storedBytes += Integer.BYTES;
+            }
+
+            @Override
+            public void longField(FieldInfo fieldInfo, long value) {
+                stats.field(fieldInfo.name).storedBytes += Long.BYTES;
+            }
+
+            @Override
+            public void floatField(FieldInfo fieldInfo, float value) {
+                stats.field(fieldInfo.name).storedBytes += Float.BYTES;
+            }
+
+            @Override
+            public void doubleField(FieldInfo fieldInfo, double value) {
+                stats.field(fieldInfo.name).storedBytes += Double.BYTES;
+            }
+        };
+        for (int doc = 0; doc < reader.maxDoc(); doc++) {
+            if (liveDocs == null || liveDocs.get(doc)) {
+                reader.document(doc, visitor);
+            }
+        }
+    }
+
+    /**
+     * Print the statistics of the index, of every field (the sums over the segments) and of every segment.
+     */
+    private static void print(String indexDir,
+                              @NotNull IndexReader reader,
+                              @NotNull List<SegmentStats> segments,
+                              String entityField,
+                              int k) {
+        long size = 0;
+        long[] parts = new long[Part.values().length];
+        int compound = 0;
+        Map<String, FieldStats> fields = new TreeMap<>();
+        Map<String, Integer> entities = new HashMap<>();
+        for (SegmentStats segment : segments) {
+            size += segment.sizeInBytes;
+            for (int p = 0; p < parts.length; p++) {
+                parts[p] += segment.parts[p];
+            }
+            compound += segment.compound ? 1 : 0;
+            for (FieldStats field : segment.fields.values()) {
+                fields.computeIfAbsent(field.name, FieldStats::new).add(field);
+            }
+            segment.entities.forEach((entity, count) -> entities.merge(entity, count, Integer::sum));
+        }
+
+        System.out.println();
+        System.out.println("Index: " + indexDir);
+        System.out.println("Documents: " + reader.numDocs() + " (maxDoc = " + reader.maxDoc() + ", deleted = "
+                + reader.numDeletedDocs() + ")");
+        System.out.println("Segments: " + segments.size() + " (" + compound + " compound), size on disk: " + bytes(size));
+        System.out.println("Postings: " + bytes(parts[Part.POSTINGS.ordinal()])
+                + ", norms: " + bytes(parts[Part.NORMS.ordinal()])
+                + ", stored fields: " + bytes(parts[Part.STORED.ordinal()])
+                + ", doc values: " + bytes(parts[Part.DOC_VALUES.ordinal()])
+                + ", other: " + bytes(parts[Part.OTHER.ordinal()]));
+
+        System.out.println();
+        System.out.println("Fields (terms are summed over the segments, postings, norms and doc values are the bytes read, "
+                + "stored bytes are before compression):");
+        System.out.println(String.format("%-20s %12s %14s %14s %10s %10s %10s %10s",
+                "Field", "Terms", "SumDocFreq", "SumTermFreq", "Postings", "Norms", "Stored", "DocValues"));
+        List<FieldStats> byBytes = new ArrayList<>(fields.values());
+        byBytes.sort((a, b) -> Long.compare(b.bytes(), a.bytes()));
+        for (FieldStats f : byBytes) {
+            System.out.println(String.format("%-20s %12d %14d %14d %10s %10s %10s %10s",
+                    f.name, f.terms, f.sumDocFreq, f.sumTotalTermFreq, bytes(f.postingsBytes), bytes(f.normsBytes),
+                    bytes(f.storedBytes), bytes(f.docValuesBytes)));
+        }
+
+        System.out.println();
+        System.out.println("Segments:");
+        System.out.println(String.format("%-10s %10s %10s %10s %10s %10s %10s %10s %10s",
+                "Segment", "Docs", "Deleted", "Size", "Postings", "Norms", "Stored", "DocValues", "Other"));
+        for (SegmentStats s : segments) {
+            System.out.println(String.format("%-10s %10d %10d %10s %10s %10s %10s %10s %10s",
+                    s.name, s.numDocs, s.maxDoc - s.numDocs, bytes(s.sizeInBytes), bytes(s.parts[Part.POSTINGS.ordinal()]),
+                    bytes(s.parts[Part.NORMS.ordinal()]), bytes(s.parts[Part.STORED.ordinal()]),
+                    bytes(s.parts[Part.DOC_VALUES.ordinal()]), bytes(s.parts[Part.OTHER.ordinal()])));
+        }
+
+        System.out.println();
+        if (entities.isEmpty()) {
+            System.out.println("No entities in the field " + entityField + ".");
+            return;
+        }
+        System.out.println("Entities: " + entities.size() + ". Top " + Math.min(k, entities.size())
+                + " by number of paragraphs:");
+        for (Map.Entry<String, Integer> entry : TopK.topEntries(entities, k)) {
+            System.out.println(String.format("%10d  %s", entry.getValue(), entry.getKey()));
+        }
+    }
+
+    /**
+     * Format a number of bytes (e.g. "1.5 MB").
+     */
+    @NotNull
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KB", "MB", "GB", "TB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
+    /**
+     * Directory which counts the bytes read from the files of every segment.
+     */
+    private static final class CountingDirectory extends FilterDirectory {
+        private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+        private CountingDirectory(@NotNull Directory in) {
+            super(in);
+        }
+
+        private LongAdder counter(String segment) {
+            return counters.computeIfAbsent(segment, s -> new LongAdder());
+        }
+
+        @Override
+        public IndexInput openInput(String name, IOContext context) throws IOException {
+            return new CountingInput(in.openInput(name, context), counter(IndexFileNames.parseSegmentName(name)));
+        }
+    }
+
+    /**
+     * Input which counts the bytes read from it, and from its clones and slices.
+     */
+    private static final class CountingInput extends IndexInput {
+        private final IndexInput in;
+        private final LongAdder counter;
+
+        private CountingInput(@NotNull IndexInput in, @NotNull LongAdder counter) {
+            super("CountingInput(" + in + ")");
+            this.in = in;
+            this.counter = counter;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            counter.increment();
+            return in.readByte();
+        }
+
+        @Override
+        public void readBytes(byte[] b, int offset, int len) throws IOException {
+            counter.add(len);
+            in.readBytes(b, offset, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long getFilePointer() {
+            return in.getFilePointer();
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            in.seek(pos);
+        }
+
+        @Override
+        public long length() {
+            return in.length();
+        }
+
+        @Override
+        public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+            return new CountingInput(in.slice(sliceDescription, offset, length), counter);
+        }
+
+        @Override
+        public IndexInput clone() {
+            return new CountingInput(in.clone(), counter);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package lucene;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class to read a (possibly larger than 2GB) binary file which is memory-mapped in chunks of 1GB.
+ * The file is written in big-endian order (e.g. using a DataOutputStream) and every int and long in it
+ * must be aligned to its size, so that no value crosses the border between two chunks.
+ * Single bytes (e.g. variable-length encoded ints) can be anywhere.
+ * Reads are absolute, so one instance can be shared between threads.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class MappedFile implements Closeable {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long length;
+
+    /**
+     * Constructor.
+     * @param path Path Path to the file.
+     * @throws IOException IOException
+     */
+    public MappedFile(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.length = channel.size();
+            int n = (int) ((length + CHUNK_MASK) >>> CHUNK_BITS);
+            this.chunks = new MappedByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << CHUNK_BITS, length - start));
+            }
+        }
+    }
+
+    /**
+     * Size of the file in bytes.
+     * @return Long
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Read the byte at the given offset.
+     * @param offset Long Byte offset.
+     * @return Byte
+     */
+    public byte getByte(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Read the int at the given byte offset.
+     * @param offset Long Byte offset (a multiple of 4).
+     * @return Integer
+     */
+    public int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Read the long at the given byte offset.
+     * @param offset Long Byte offset (a multiple of 8).
+     * @return Long
+     */
+    public long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Read consecutive ints starting at the given byte offset.
+     * @param offset Long Byte offset (a multiple of 4).
+     * @param dst int[] Array to read into.
+     * @param n Integer Number of ints to read.
+     */
+    public void getInts(long offset, @NotNull int[] dst, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = getInt(offset + 4L * i);
+        }
+    }
+
+    /**
+     * Read consecutive bytes starting at the given offset.
+     * @param offset Long Byte offset.
+     * @param dst byte[] Array to read into.
+     * @param n Integer Number of bytes to read.
+     */
+    public void getBytes(long offset, @NotNull byte[] dst, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = getByte(offset + i);
+        }
+    }
+
+    /**
+     * Move a file which has been written completely to its place, replacing the file there.
+     * The move is atomic if the file system supports it, so that a file which is mapped never has only part of
+     * its contents (e.g. after a crash while writing it).
+     * @param temp Path Path to the written file.
+     * @param path Path Path to move it to.
+     * @throws IOException IOException
+     */
+    public static void moveIntoPlace(@NotNull Path temp, @NotNull Path path) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The mapping is released by the garbage collector once the file is no longer referenced.
+     */
+    @Override
+    public void close() {
+    }
+}
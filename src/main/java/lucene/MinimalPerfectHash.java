@@ -0,0 +1,169 @@
+package lucene;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Minimal perfect hash function over a set of keys, by hashing and displacement.
+ * Every key is hashed to 64 bits. The hash picks a bucket (on average {@link #BUCKET_SIZE} keys per bucket), and
+ * every bucket has a pilot: the hash mixed with the pilot gives the position of the key in [0, n). The pilots are
+ * found when building, the largest buckets first, so that the n keys take the n positions without collisions.
+ * Looking up a key is then one hash, one read of the pilot of its bucket and one mix, whatever the number of keys.
+ * A key which is not in the set also gets a position, so the key at that position must be compared with it.
+ * The pilots are a plain int array, so they can be written to a file and read from it (see
+ * {@link ParagraphIdColumn}).
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class MinimalPerfectHash {
+    public static final int BUCKET_SIZE = 4;
+
+    private MinimalPerfectHash() {
+    }
+
+    /**
+     * Hash a key (FNV-1a, with the bits mixed at the end).
+     * @param key byte[] Key (e.g. a paragraph ID in UTF-8).
+     * @param seed Long Seed.
+     * @return Long
+     */
+    public static long hash(@NotNull byte[] key, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (byte b : key) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Number of buckets for a number of keys.
+     * @param n Integer Number of keys.
+     * @return Integer
+     */
+    public static int buckets(int n) {
+        return Math.max(1, (n + BUCKET_SIZE - 1) / BUCKET_SIZE);
+    }
+
+    /**
+     * Bucket of a hash.
+     * @param hash Long Hash of the key.
+     * @param buckets Integer Number of buckets.
+     * @return Integer
+     */
+    public static int bucket(long hash, int buckets) {
+        return (int) (((hash & 0xFFFFFFFFL) * buckets) >>> 32);
+    }
+
+    /**
+     * Position of a hash given the pilot of its bucket.
+     * @param hash Long Hash of the key.
+     * @param pilot Integer Pilot of the bucket of the key.
+     * @param n Integer Number of keys.
+     * @return Integer Position in [0, n).
+     */
+    public static int position(long hash, int pilot, int n) {
+        return (int) (((mix(hash ^ mix(pilot + 0x9E3779B97F4A7C15L)) >>> 32) * n) >>> 32);
+    }
+
+    /**
+     * Find the pilots of the buckets.
+     * @param hashes long[] Hashes of the keys (they are reordered).
+     * @return int[] The pilot of every bucket.
+     * @throws IllegalArgumentException If two keys have the same hash (try another seed).
+     */
+    @NotNull
+    public static int[] build(@NotNull long[] hashes) {
+        int n = hashes.length;
+        int buckets = buckets(n);
+
+        // Sort the hashes by bucket
+        int[] start = new int[buckets + 1];
+        for (long h : hashes) {
+            start[bucket(h, buckets) + 1]++;
+        }
+        int maxSize = 0;
+        for (int b = 0; b < buckets; b++) {
+            maxSize = Math.max(maxSize, start[b + 1]);
+            start[b + 1] += start[b];
+        }
+        long[] sorted = new long[n];
+        int[] next = Arrays.copyOf(start, buckets);
+        for (long h : hashes) {
+            sorted[next[bucket(h, buckets)]++] = h;
+        }
+        for (int b = 0; b < buckets; b++) {
+            Arrays.sort(sorted, start[b], start[b + 1]);
+            for (int i = start[b] + 1; i < start[b + 1]; i++) {
+                if (sorted[i] == sorted[i - 1]) {
+                    throw new IllegalArgumentException("Two keys have the same hash");
+                }
+            }
+        }
+
+        // Place the largest buckets first, while most positions are still free
+        int[] bySize = new int[maxSize + 2];
+        for (int b = 0; b < buckets; b++) {
+            bySize[maxSize - (start[b + 1] - start[b]) + 1]++;
+        }
+        for (int s = 0; s <= maxSize; s++) {
+            bySize[s + 1] += bySize[s];
+        }
+        int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[bySize[maxSize - (start[b + 1] - start[b])]++] = b;
+        }
+
+        int[] pilots = new int[buckets];
+        long[] taken = new long[(n + 63) >>> 6];
+        int[] positions = new int[Math.max(1, maxSize)];
+        for (int b : order) {
+            int size = start[b + 1] - start[b];
+            if (size == 0) {
+                break;
+            }
+            for (int pilot = 0; ; pilot++) {
+                if (fits(sorted, start[b], size, pilot, n, taken, positions)) {
+                    for (int j = 0; j < size; j++) {
+                        taken[positions[j] >>> 6] |= 1L << positions[j];
+                    }
+                    pilots[b] = pilot;
+                    break;
+                }
+            }
+        }
+        return pilots;
+    }
+
+    /**
+     * Check whether the keys of a bucket take free and distinct positions with a pilot.
+     */
+    private static boolean fits(long[] sorted, int from, int size, int pilot, int n, long[] taken, int[] positions) {
+        for (int j = 0; j < size; j++) {
+            int p = position(sorted[from + j], pilot, n);
+            if ((taken[p >>> 6] & (1L << p)) != 0) {
+                return false;
+            }
+            for (int k = 0; k < j; k++) {
+                if (positions[k] == p) {
+                    return false;
+                }
+            }
+            positions[j] = p;
+        }
+        return true;
+    }
+
+    /**
+     * Mix the bits of a long (the finalizer of MurmurHash3).
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,300 @@
+package lucene;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Column of the paragraph IDs of a paragraph index, in both directions.
+ * From docID to paragraph ID, the column is an array of offsets into the concatenated paragraph IDs, so making the
+ * run strings of the hits of a search reads a few bytes per hit instead of decoding the stored fields. From paragraph
+ * ID to docID, a {@link MinimalPerfectHash} of the paragraph IDs gives the position of the docID in an int array,
+ * so finding a paragraph by its ID does not search the terms of the index.
+ *
+ * The column is stored in the file "paraids.bin" in the index directory (big-endian), which is memory-mapped when
+ * opened: int magic, int version, int maxDoc, int numDocs, int numBuckets, int fieldLength, long seed,
+ * byte[32] {@link IndexIdentity} of the index, the name of the ID field padded to 8 bytes, long[maxDoc + 1] offset of the paragraph ID of every docID,
+ * int[numBuckets] pilots, int[numDocs] docIDs by position, and the paragraph IDs (UTF-8).
+ * A deleted document has an empty paragraph ID.
+ * The column is written by {@link Index.Build} after building the index, or for an existing index using
+ * "paraid-column". The docIDs are those of the index the column was built from, so the column must be built again
+ * whenever the index changes (including building it again or merging it, which reorders the docIDs). The identity,
+ * maxDoc and numDocs of the index are stored to catch this. The file is written to a temporary file which is then
+ * renamed, so a build which fails part way leaves no column behind.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class ParagraphIdColumn {
+    public static final String FILE_NAME = "paraids.bin";
+    private static final int MAGIC = 0x50494443;
+    private static final int VERSION = 2;
+    private static final long HEADER = 32 + IndexIdentity.BYTES;
+    private static final int SEEDS = 4;
+
+    private final MappedFile file;
+    private final int maxDoc;
+    private final int numDocs;
+    private final int numBuckets;
+    private final long seed;
+    private final String field;
+    private final byte[] identity;
+    private final long offsetStart;
+    private final long pilotStart;
+    private final long docStart;
+    private final long idStart;
+
+    private ParagraphIdColumn(@NotNull MappedFile file) throws IOException {
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+            throw new IOException("Not a paragraph ID column (or wrong version)");
+        }
+        this.file = file;
+        this.maxDoc = file.getInt(8);
+        this.numDocs = file.getInt(12);
+        this.numBuckets = file.getInt(16);
+        int fieldLength = file.getInt(20);
+        this.seed = file.getLong(24);
+        this.identity = new byte[IndexIdentity.BYTES];
+        file.getBytes(32, identity, IndexIdentity.BYTES);
+        byte[] name = new byte[fieldLength];
+        file.getBytes(HEADER, name, fieldLength);
+        this.field = new String(name, StandardCharsets.UTF_8);
+        this.offsetStart = HEADER + pad(fieldLength);
+        this.pilotStart = offsetStart + 8L * (maxDoc + 1);
+        this.docStart = pilotStart + 4L * numBuckets;
+        this.idStart = docStart + 4L * numDocs;
+    }
+
+    /**
+     * Open the paragraph ID column of an index.
+     * @param indexDir String Path to the paragraph index.
+     * @return ParagraphIdColumn
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static ParagraphIdColumn open(String indexDir) throws IOException {
+        return new ParagraphIdColumn(new MappedFile(Paths.get(indexDir).resolve(FILE_NAME)));
+    }
+
+    /**
+     * Check whether an index has a paragraph ID column.
+     * @param indexDir String Path to the paragraph index.
+     * @return Boolean
+     */
+    public static boolean exists(String indexDir) {
+        return Files.exists(Paths.get(indexDir).resolve(FILE_NAME));
+    }
+
+    /**
+     * Name of the paragraph ID field the column was built from.
+     * @return String
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Check whether the column was built from an index: the same segments (see {@link IndexIdentity}) with the same
+     * deleted documents.
+     * @param reader IndexReader Reader of the index.
+     * @return Boolean
+     */
+    public boolean matches(@NotNull IndexReader reader) {
+        return reader.maxDoc() == maxDoc && reader.numDocs() == numDocs && IndexIdentity.matches(reader, identity);
+    }
+
+    /**
+     * Get the paragraph ID of a document.
+     * @param doc Integer DocID.
+     * @return String The paragraph ID, or null if the document is deleted.
+     */
+    @Nullable
+    public String get(int doc) {
+        long start = file.getLong(offsetStart + 8L * doc);
+        int length = (int) (file.getLong(offsetStart + 8L * (doc + 1)) - start);
+        if (length == 0) {
+            return null;
+        }
+        byte[] id = new byte[length];
+        file.getBytes(idStart + start, id, length);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the docID of a paragraph.
+     * @param paraId String Paragraph ID.
+     * @return Integer The docID, or -1 if the paragraph is not in the index.
+     */
+    public int docId(@NotNull String paraId) {
+        if (numDocs == 0) {
+            return -1;
+        }
+        byte[] id = paraId.getBytes(StandardCharsets.UTF_8);
+        long hash = MinimalPerfectHash.hash(id, seed);
+        int pilot = file.getInt(pilotStart + 4L * MinimalPerfectHash.bucket(hash, numBuckets));
+        int doc = file.getInt(docStart + 4L * MinimalPerfectHash.position(hash, pilot, numDocs));
+
+        // Any string gets a position, so check that the paragraph there is the one asked for
+        long start = file.getLong(offsetStart + 8L * doc);
+        if (file.getLong(offsetStart + 8L * (doc + 1)) - start != id.length) {
+            return -1;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (file.getByte(idStart + start + i) != id[i]) {
+                return -1;
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * Build the paragraph ID column of an index and write it to the index directory.
+     * The paragraph IDs are read from the sorted doc values of the ID field if the index has them, otherwise from
+     * the stored field.
+     * @param indexDir String Path to the paragraph index.
+     * @param field String Name of the paragraph ID field.
+     * @throws IOException IOException
+     */
+    public static void build(String indexDir, String field) throws IOException {
+        Path path = Paths.get(indexDir).resolve(FILE_NAME);
+        Path data = path.resolveSibling(FILE_NAME + ".data");
+        Path temp = path.resolveSibling(FILE_NAME + ".tmp");
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexDir)))) {
+            byte[] identity = IndexIdentity.of(reader);
+            if (identity == null) {
+                throw new IOException("The segments of the index have no IDs");
+            }
+            int maxDoc = reader.maxDoc();
+            int numDocs = reader.numDocs();
+            System.out.print("Reading the paragraph IDs of " + numDocs + " paragraphs...");
+            long[] offsets = new long[maxDoc + 1];
+            int[] docs = new int[numDocs];
+            long[] hashes = new long[numDocs];
+            int n = 0;
+            long position = 0;
+            try (BufferedOutputStream bos = new BufferedOutputStream(Files.newOutputStream(data), 1 << 20)) {
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    LeafReader leafReader = leaf.reader();
+                    Bits liveDocs = leafReader.getLiveDocs();
+                    SortedDocValues values = leafReader.getSortedDocValues(field);
+                    for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+                        int docId = leaf.docBase + doc;
+                        offsets[docId] = position;
+                        if (liveDocs != null && !liveDocs.get(doc)) {
+                            continue;
+                        }
+                        String id = values != null && values.advanceExact(doc)
+                                ? values.binaryValue().utf8ToString()
+                                : ParagraphIds.stored(reader, docId, field);
+                        if (id == null) {
+                            throw new IOException("Paragraph " + docId + " has no field " + field);
+                        }
+                        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                        bos.write(bytes);
+                        position += bytes.length;
+                        docs[n] = docId;
+                        hashes[n++] = MinimalPerfectHash.hash(bytes, 0);
+                    }
+                }
+                offsets[maxDoc] = position;
+            }
+            System.out.println("[Done].");
+
+            System.out.print("Building the minimal perfect hash of the paragraph IDs...");
+            int[] pilots = null;
+            long seed = 0;
+            for (; pilots == null && seed < SEEDS; seed++) {
+                if (seed > 0) {
+                    rehash(new MappedFile(data), offsets, docs, n, seed, hashes);
+                }
+                try {
+                    pilots = MinimalPerfectHash.build(Arrays.copyOf(hashes, n));
+                } catch (IllegalArgumentException e) {
+                    // Two paragraph IDs with the same hash: try again with another seed
+                }
+            }
+            if (pilots == null) {
+                throw new IOException("The index has the same paragraph ID more than once");
+            }
+            seed--;
+            int[] byPosition = new int[n];
+            for (int i = 0; i < n; i++) {
+                long hash = hashes[i];
+                int pilot = pilots[MinimalPerfectHash.bucket(hash, pilots.length)];
+                byPosition[MinimalPerfectHash.position(hash, pilot, n)] = docs[i];
+            }
+            System.out.println("[Done].");
+
+            System.out.print("Writing the paragraph ID column...");
+            byte[] name = field.getBytes(StandardCharsets.UTF_8);
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 20))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeInt(maxDoc);
+                dos.writeInt(n);
+                dos.writeInt(pilots.length);
+                dos.writeInt(name.length);
+                dos.writeLong(seed);
+                dos.write(identity);
+                dos.write(name);
+                dos.write(new byte[(int) (pad(name.length) - name.length)]);
+                for (long offset : offsets) {
+                    dos.writeLong(offset);
+                }
+                for (int pilot : pilots) {
+                    dos.writeInt(pilot);
+                }
+                for (int doc : byPosition) {
+                    dos.writeInt(doc);
+                }
+                Files.copy(data, dos);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println("[Done].");
+        } finally {
+            Files.deleteIfExists(data);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Hash the paragraph IDs again with another seed, reading them from the data file.
+     */
+    private static void rehash(@NotNull MappedFile data,
+                               @NotNull long[] offsets,
+                               @NotNull int[] docs,
+                               int n,
+                               long seed,
+                               @NotNull long[] hashes) {
+        for (int i = 0; i < n; i++) {
+            long start = offsets[docs[i]];
+            byte[] id = new byte[(int) (offsets[docs[i] + 1] - start)];
+            data.getBytes(start, id, id.length);
+            hashes[i] = MinimalPerfectHash.hash(id, seed);
+        }
+    }
+
+    private static long pad(int length) {
+        return (length + 7L) & ~7L;
+    }
+}
@@ -0,0 +1,114 @@
+package lucene;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lookup of the paragraph IDs of the hits of a search.
+ * The run strings only need the paragraph ID of a hit, but loading the document decodes all of its stored fields,
+ * including the whole text of the paragraph. If the index has a {@link ParagraphIdColumn}, the IDs are read from it.
+ * Else, if the index has the paragraph ID as a sorted doc values field (as the indexes built by {@link Index.Build}
+ * have), the IDs are read from the doc values. Either way the stored fields are not touched at all. Otherwise only
+ * the stored ID field is loaded, and the rest of the document is skipped.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class ParagraphIds {
+
+    private ParagraphIds() {
+    }
+
+    /**
+     * Get the paragraph IDs of the hits of a search.
+     * @param hits ScoreDoc[] Hits.
+     * @param field String Name of the ID field (e.g. "id").
+     * @param searcher IndexSearcher Searcher of the index the hits are from.
+     * @return String[] The paragraph ID of every hit (null for a hit without one), in the order of the hits.
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static String[] get(@NotNull ScoreDoc[] hits,
+                               @NotNull String field,
+                               @NotNull IndexSearcher searcher) throws IOException {
+        String[] ids = new String[hits.length];
+        if (hits.length == 0) {
+            return ids;
+        }
+        ParagraphIdColumn column = Index.paraIdColumn(searcher);
+        if (column != null && column.getField().equals(field)) {
+            for (int i = 0; i < hits.length; i++) {
+                ids[i] = column.get(hits[i].doc);
+            }
+            return ids;
+        }
+        IndexReader reader = searcher.getIndexReader();
+        List<LeafReaderContext> leaves = reader.leaves();
+
+        // Doc values are read forwards, so go through the hits in the order of their docIDs
+        Integer[] order = new Integer[hits.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> hits[i].doc));
+
+        int leaf = -1;
+        LeafReaderContext context = null;
+        SortedDocValues values = null;
+        for (int i : order) {
+            int doc = hits[i].doc;
+            while (context == null || doc >= context.docBase + context.reader().maxDoc()) {
+                context = leaves.get(++leaf);
+                values = context.reader().getSortedDocValues(field);
+            }
+            if (values != null) {
+                ids[i] = values.advanceExact(doc - context.docBase)
+                        ? values.binaryValue().utf8ToString()
+                        : null;
+            } else {
+                ids[i] = stored(reader, doc, field);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Get the paragraph ID of a document from its stored fields, without loading the other fields.
+     * @param reader IndexReader Reader of the index.
+     * @param doc Integer DocID.
+     * @param field String Name of the ID field.
+     * @return String The paragraph ID, or null if the document does not have one.
+     * @throws IOException IOException
+     */
+    @Nullable
+    public static String stored(@NotNull IndexReader reader, int doc, @NotNull String field) throws IOException {
+        String[] id = new String[1];
+        reader.document(doc, new StoredFieldVisitor() {
+            @Override
+            public Status needsField(FieldInfo fieldInfo) {
+                if (id[0] != null) {
+                    return Status.STOP;
+                }
+                return fieldInfo.name.equals(field) ? Status.YES : Status.NO;
+            }
+
+            @Override
+            public void stringField(FieldInfo fieldInfo, byte[] value) {
+                id[0] = new String(value, StandardCharsets.UTF_8);
+            }
+        });
+        return id[0];
+    }
+}
@@ -0,0 +1,161 @@
+package lucene;
+
+import help.Metrics;
+import help.Options;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of the results of the searches of the index with expanded queries.
+ * The query expansion features often search with the same (or almost the same) expanded query for several entities
+ * of a query, and again in every run of a parameter sweep. The results are cached by the canonical form of the
+ * query, in which the clauses are sorted and the boosts are rounded to "--query-cache-digits=N" significant digits
+ * (DEFAULT = 6), together with the number of results, the similarity and the index.
+ * The cache is switched on with "--query-cache=N", which is the number of results kept (DEFAULT = 0, off); the
+ * least recently used results are evicted. With fewer digits, queries which differ only a little in their boosts
+ * share their results, so the scores of a run may differ slightly from those of a run without the cache.
+ * The hits, misses and evictions are counted by {@link Metrics}.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class QueryCache {
+    private static final int SIZE = Options.getInt("query-cache", 0);
+    private static final MathContext DIGITS = new MathContext(Math.max(1, Options.getInt("query-cache-digits", 6)));
+    private static final Map<Key, TopDocs> CACHE = Collections.synchronizedMap(new LinkedHashMap<Key, TopDocs>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, TopDocs> eldest) {
+            if (size() > SIZE) {
+                Metrics.count(Metrics.Counter.QUERY_CACHE_EVICTIONS, 1);
+                return true;
+            }
+            return false;
+        }
+    });
+
+    /**
+     * A search: the index, the similarity, the number of results and the canonical query.
+     */
+    public static final class Key {
+        private final IndexReader reader;
+        private final String similarity;
+        private final int n;
+        private final String query;
+        private final int hash;
+
+        private Key(IndexReader reader, String similarity, int n, String query) {
+            this.reader = reader;
+            this.similarity = similarity;
+            this.n = n;
+            this.query = query;
+            this.hash = Objects.hash(System.identityHashCode(reader), similarity, n, query);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return reader == key.reader && n == key.n && similarity.equals(key.similarity) && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private QueryCache() {
+    }
+
+    /**
+     * Check whether the cache is switched on.
+     * @return Boolean
+     */
+    public static boolean enabled() {
+        return SIZE > 0;
+    }
+
+    /**
+     * Make the key of a search.
+     * @param query Query
+     * @param n Integer Number of results.
+     * @param searcher IndexSearcher
+     * @return Key The key, or null if the cache is switched off.
+     */
+    @Nullable
+    public static Key key(@NotNull Query query, int n, @NotNull IndexSearcher searcher) {
+        if (SIZE <= 0) {
+            return null;
+        }
+        return new Key(searcher.getIndexReader(), searcher.getSimilarity().toString(), n, canonical(query));
+    }
+
+    /**
+     * Get the cached results of a search.
+     * @param key Key
+     * @return TopDocs The results, or null if they are not cached.
+     */
+    @Nullable
+    public static TopDocs get(@NotNull Key key) {
+        TopDocs tds = CACHE.get(key);
+        Metrics.count(tds == null ? Metrics.Counter.QUERY_CACHE_MISSES : Metrics.Counter.QUERY_CACHE_HITS, 1);
+        return tds;
+    }
+
+    /**
+     * Cache the results of a search.
+     * @param key Key
+     * @param tds TopDocs
+     */
+    public static void put(@NotNull Key key, @NotNull TopDocs tds) {
+        CACHE.put(key, tds);
+    }
+
+    /**
+     * The canonical form of a query: the clauses of a Boolean query are sorted and the boosts are rounded.
+     * @param query Query
+     * @return String
+     */
+    @NotNull
+    public static String canonical(@NotNull Query query) {
+        if (query instanceof BoostQuery) {
+            BoostQuery boostQuery = (BoostQuery) query;
+            return canonical(boostQuery.getQuery()) + "^" + quantize(boostQuery.getBoost());
+        }
+        if (query instanceof BooleanQuery) {
+            BooleanQuery booleanQuery = (BooleanQuery) query;
+            List<String> clauses = new ArrayList<>(booleanQuery.clauses().size());
+            for (BooleanClause clause : booleanQuery.clauses()) {
+                clauses.add(clause.getOccur().toString() + canonical(clause.getQuery()));
+            }
+            Collections.sort(clauses);
+            return "(" + String.join(" ", clauses) + ")~" + booleanQuery.getMinimumNumberShouldMatch();
+        }
+        return query.toString();
+    }
+
+    @NotNull
+    private static String quantize(float boost) {
+        return new BigDecimal(boost).round(DIGITS).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,180 @@
+package lucene;
+
+import help.Metrics;
+import help.Options;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pruning of the expanded queries before they are searched.
+ * An expanded query has a SHOULD clause for every query term and every expansion term; the query expanded with
+ * entities has one for every token of the name of every expansion entity, so the same term often occurs several times
+ * with a low weight. Every clause is another posting list to go through. With "--prune=true" the query is pruned:
+ * (1) the clauses of the same term are merged into one whose boost is the sum of their boosts (which gives the same
+ * scores), and terms which do not occur in the index are dropped; (2) terms whose weight is below
+ * "--prune-min-weight=F" times the largest weight are dropped (DEFAULT = 0); (3) the terms are taken in order of
+ * their weight up to "--prune-max-clauses=N" clauses (DEFAULT = 64), skipping a term whose posting list (its docFreq)
+ * would take the postings of the query over "--prune-postings=N" (DEFAULT = 0, no limit).
+ * The number of clauses and of postings before and after pruning are counted by {@link Metrics}. With
+ * "--prune-check=true" the unpruned query is searched as well and the share of its top hits which the pruned query
+ * also finds is reported, so that the loss of effectiveness can be weighed against the time saved.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public final class QueryPruner {
+    private static final boolean ENABLED = Boolean.parseBoolean(Options.get("prune", "false"));
+    private static final boolean CHECK = Boolean.parseBoolean(Options.get("prune-check", "false"));
+    private static final float MIN_WEIGHT = Float.parseFloat(Options.get("prune-min-weight", "0"));
+    private static final int MAX_CLAUSES = Math.max(1, Options.getInt("prune-max-clauses", 64));
+    private static final long MAX_POSTINGS = Long.parseLong(Options.get("prune-postings", "0"));
+
+    private QueryPruner() {
+    }
+
+    /**
+     * Check whether the queries are pruned.
+     * @return Boolean
+     */
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Prune a query.
+     * Clauses which are not SHOULD clauses of a (boosted) term query are kept as they are.
+     * @param query BooleanQuery Query to prune.
+     * @param reader IndexReader Index which is searched (for the docFreq of the terms). The pruned query may only be
+     *               used to search this index.
+     * @return BooleanQuery The pruned query.
+     * @throws IOException
+     */
+    @NotNull
+    public static BooleanQuery prune(@NotNull BooleanQuery query, @NotNull IndexReader reader) throws IOException {
+        long start = Metrics.start();
+
+        // Merge the clauses of the same term (in the order in which the terms first occur)
+        Map<Term, Float> weights = new LinkedHashMap<>();
+        List<BooleanClause> others = new ArrayList<>();
+        for (BooleanClause clause : query.clauses()) {
+            Query q = clause.getQuery();
+            float boost = 1.0f;
+            if (q instanceof BoostQuery) {
+                boost = ((BoostQuery) q).getBoost();
+                q = ((BoostQuery) q).getQuery();
+            }
+            if (clause.getOccur() == BooleanClause.Occur.SHOULD && q instanceof TermQuery) {
+                weights.merge(((TermQuery) q).getTerm(), boost, Float::sum);
+            } else {
+                others.add(clause);
+            }
+        }
+
+        // Drop the terms which are not in the index or whose weight is too low
+        float max = 0.0f;
+        for (float weight : weights.values()) {
+            max = Math.max(max, weight);
+        }
+        List<Map.Entry<Term, Float>> candidates = new ArrayList<>();
+        Map<Term, TermStates> states = new LinkedHashMap<>();
+        long postingsIn = 0;
+        for (Map.Entry<Term, Float> entry : weights.entrySet()) {
+            // The terms are looked up in the index once: the search uses the same states
+            TermStates termStates = TermStates.build(reader.getContext(), entry.getKey(), true);
+            postingsIn += termStates.docFreq();
+            if (termStates.docFreq() > 0 && entry.getValue() >= MIN_WEIGHT * max) {
+                candidates.add(entry);
+                states.put(entry.getKey(), termStates);
+            }
+        }
+
+        // Take the terms with the largest weights within the budget of clauses and postings
+        candidates.sort((e1, e2) -> Float.compare(e2.getValue(), e1.getValue()));
+        Set<Term> kept = new HashSet<>();
+        long postingsOut = 0;
+        for (Map.Entry<Term, Float> entry : candidates) {
+            if (kept.size() + others.size() >= MAX_CLAUSES) {
+                break;
+            }
+            int docFreq = states.get(entry.getKey()).docFreq();
+            if (MAX_POSTINGS > 0 && postingsOut + docFreq > MAX_POSTINGS && !kept.isEmpty()) {
+                continue;
+            }
+            kept.add(entry.getKey());
+            postingsOut += docFreq;
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.setMinimumNumberShouldMatch(query.getMinimumNumberShouldMatch());
+        for (Map.Entry<Term, Float> entry : weights.entrySet()) {
+            if (kept.contains(entry.getKey())) {
+                builder.add(new BoostQuery(new TermQuery(entry.getKey(), states.get(entry.getKey())), entry.getValue()),
+                        BooleanClause.Occur.SHOULD);
+            }
+        }
+        for (BooleanClause clause : others) {
+            builder.add(clause);
+        }
+        BooleanQuery pruned = builder.build();
+
+        Metrics.stop(Metrics.Stage.PRUNE, start);
+        Metrics.count(Metrics.Counter.CLAUSES_IN, query.clauses().size());
+        Metrics.count(Metrics.Counter.CLAUSES_OUT, pruned.clauses().size());
+        Metrics.count(Metrics.Counter.POSTINGS_IN, postingsIn);
+        Metrics.count(Metrics.Counter.POSTINGS_OUT, postingsOut);
+        return pruned;
+    }
+
+    /**
+     * Check whether the pruned queries are compared with the unpruned ones.
+     * @return Boolean
+     */
+    public static boolean checking() {
+        return ENABLED && CHECK;
+    }
+
+    /**
+     * Search the index with the unpruned query and count how many of its top hits are among the hits of the
+     * pruned query.
+     * @param query BooleanQuery The unpruned query.
+     * @param pruned TopDocs The hits of the pruned query.
+     * @param n Integer Number of hits.
+     * @param searcher IndexSearcher Searcher of the index.
+     * @throws IOException
+     */
+    public static void check(@NotNull BooleanQuery query,
+                             @NotNull TopDocs pruned,
+                             int n,
+                             @NotNull IndexSearcher searcher) throws IOException {
+        Set<Integer> found = new HashSet<>();
+        for (ScoreDoc scoreDoc : pruned.scoreDocs) {
+            found.add(scoreDoc.doc);
+        }
+        ScoreDoc[] expected = searcher.search(query, n).scoreDocs;
+        int kept = 0;
+        for (ScoreDoc scoreDoc : expected) {
+            if (found.contains(scoreDoc.doc)) {
+                kept++;
+            }
+        }
+        Metrics.count(Metrics.Counter.PRUNE_CHECKED_HITS, expected.length);
+        Metrics.count(Metrics.Counter.PRUNE_KEPT_HITS, kept);
+    }
+}
@@ -1,5 +1,7 @@
 package lucene;
 
+import help.Events;
+import help.Metrics;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
@@ -11,8 +13,8 @@ import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.RAMDirectory;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
@@ -23,14 +25,16 @@ import java.util.List;
 
 /**
  * Class to make a RAM index.
- * This class uses the Lucene 7.7.0 RAMDirectory to create in-memory indices.
- * NOTE: Use caution in the use of this class! The RAMDirectory class has been marked as deprecated by the developers.
+ * This class uses the Lucene ByteBuffersDirectory to create in-memory indices.
  * @author Shubham Chatterjee
  * @version 03/11/2019
  */
 public class RAMIndex {
 
     public static HashMap<Document, Float> searchIndex(String query, int n, IndexSearcher is, QueryParser qp) {
+        long start = Metrics.start();
+        Events.LuceneSearch event = new Events.LuceneSearch();
+        event.begin();
         HashMap<Document,Float> results = new HashMap<>();
         // Parse the query
         Query q = null;
@@ -57,6 +61,8 @@ public class RAMIndex {
                 e.printStackTrace();
             }
         }
+        Metrics.stop(Metrics.Stage.SEARCH, start);
+        Events.luceneSearch(event, "ram", q, tds);
         return results;
     }
     /**
@@ -67,6 +73,9 @@ public class RAMIndex {
      * @return HashMap where Key = Document and Value = Score
      */
     public static HashMap<Document,Float> searchIndex(BooleanQuery query, int n, @NotNull IndexSearcher is) {
+        long start = Metrics.start();
+        Events.LuceneSearch event = new Events.LuceneSearch();
+        event.begin();
         HashMap<Document,Float> results = new HashMap<>();
 
         // Search the query
@@ -87,6 +96,8 @@ public class RAMIndex {
                 e.printStackTrace();
             }
         }
+        Metrics.stop(Metrics.Stage.SEARCH, start);
+        Events.luceneSearch(event, "ram", query, tds);
         return results;
     }
 
@@ -96,6 +107,7 @@ public class RAMIndex {
      * @throws IOException
      */
     public static void createIndex(@NotNull List<Document> documents, IndexWriter iw) throws IOException {
+        long start = Metrics.start();
         for (Document d : documents) {
             try {
                 iw.addDocument(d);
@@ -105,19 +117,19 @@ public class RAMIndex {
         }
         iw.commit();
         iw.close();
+        Metrics.stop(Metrics.Stage.RAM_INDEX, start);
     }
 
     /**
      * Get the IndexWriter.
-     * This method uses the lucene RAMDirectory which has been marked deprecated.
-     * The reason for its use is that we want to maintain an in-memory index of relevant documents for
-     * every query and there was no other tool in Lucene 7.7.0 that I am aware of that does this.
-     * The problem with using RAMDirectory is that I cannot use parraelStreams in Java since this method
-     * has been marked as not thread-safe by the developers.
+     * This method uses the lucene ByteBuffersDirectory, which replaces the deprecated RAMDirectory, to maintain
+     * an in-memory index of relevant documents for every query.
+     * Every call creates a new directory, so tasks running in parallel may each build and search their
+     * own in-memory index. A single writer must not be shared between threads.
      * @return IndexWriter
      */
     public static IndexWriter createWriter(Analyzer analyzer) {
-        Directory dir = new RAMDirectory();
+        Directory dir = new ByteBuffersDirectory();
         IndexWriterConfig conf = new IndexWriterConfig(analyzer);
         conf.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
         IndexWriter iw = null;
@@ -0,0 +1,614 @@
+package lucene;
+
+import help.IdSet;
+import help.Interner;
+import help.Options;
+import help.Utilities;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.FSDirectory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class for a precomputed workload: everything the features work out about a query before scoring passages.
+ * For every query which has both an entity ranking and entity ground truth, the workload holds
+ *  - the normalized query text (see {@link Utilities#processQuery(String)}),
+ *  - the query tokens as produced by the analyzer the workload was compiled with,
+ *  - the retrieved entities in the order of the ranking, and those which are also relevant,
+ *  - the paragraphs retrieved for the query in the order of the ranking, with their scores and Lucene docIDs.
+ * A feature or baseline given the workload with "--workload=DIR" does not read the run files and the ground truth.
+ * The features which can load the candidate paragraphs by docID do so instead of searching the index for every
+ * paragraph ID.
+ *
+ * The workload is stored in the file "workload.bin" (big-endian), which is memory-mapped when opened:
+ *  int magic, int version, int numQueries, int numEntities, int maxDoc, int unused,
+ *  byte[32] {@link IndexIdentity} of the index, long[numQueries + 1] start,
+ *  followed by the name of the analyzer, the (sorted) entity IDs and one record per query:
+ *  query ID, query text, tokens, retrieved entity IDs, deltas of the numbers of the relevant ones, then the
+ *  paragraph ID, docID + 1 and score (8 bytes, unaligned) of every candidate paragraph. Strings are written as
+ *  their UTF-8 length followed by the bytes and all other numbers as variable-length ints (7 bits per byte).
+ * The docIDs are those of the index the workload was compiled against, so the workload must be compiled again
+ * whenever the index changes (including building it again or merging it, which reorders the docIDs). The identity
+ * and the maxDoc of the index are stored to catch this. The file is written to a temporary file and renamed when
+ * complete.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class Workload {
+    public static final String FILE_NAME = "workload.bin";
+    private static final int MAGIC = 0x574b4c44;
+    private static final int VERSION = 3;
+    private static final long HEADER = 24 + IndexIdentity.BYTES;
+
+    private static volatile Workload shared = null;
+    private static volatile boolean sharedLoaded = false;
+
+    private final MappedFile file;
+    private final int numQueries;
+    private final int maxDoc;
+    private final byte[] identity;
+    private final String analyzer;
+    private final Interner entityIds;
+    private final Map<String, Integer> queryIndex;
+    private final List<String> queries;
+
+    private Workload(@NotNull MappedFile file) throws IOException {
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+            throw new IOException("Not a workload file (or wrong version)");
+        }
+        this.file = file;
+        this.numQueries = file.getInt(8);
+        int numEntities = file.getInt(12);
+        this.maxDoc = file.getInt(16);
+        this.identity = new byte[IndexIdentity.BYTES];
+        file.getBytes(24, identity, IndexIdentity.BYTES);
+
+        Reader reader = new Reader(file, HEADER + 8L * (numQueries + 1));
+        this.analyzer = reader.readString();
+        List<String> entities = new ArrayList<>(numEntities);
+        for (int i = 0; i < numEntities; i++) {
+            entities.add(reader.readString());
+        }
+        this.entityIds = Interner.of(Collections.singletonList(entities));
+
+        this.queryIndex = new HashMap<>(numQueries * 2);
+        List<String> queries = new ArrayList<>(numQueries);
+        for (int i = 0; i < numQueries; i++) {
+            String queryId = new Reader(file, start(i)).readString();
+            queryIndex.put(queryId, i);
+            queries.add(queryId);
+        }
+        this.queries = Collections.unmodifiableList(queries);
+    }
+
+    /**
+     * Open the workload in a directory.
+     * @param dir String Directory containing the workload.
+     * @return Workload
+     * @throws IOException IOException
+     */
+    @NotNull
+    public static Workload open(String dir) throws IOException {
+        return new Workload(new MappedFile(Paths.get(dir).resolve(FILE_NAME)));
+    }
+
+    /**
+     * Get the workload given by the option "--workload=DIR", if any.
+     * The workload is opened once and shared by all threads.
+     * @return Workload The workload, or null if the option is not set or the workload could not be opened.
+     */
+    @Nullable
+    public static Workload shared() {
+        if (!sharedLoaded) {
+            synchronized (Workload.class) {
+                if (!sharedLoaded) {
+                    String dir = Options.get("workload", null);
+                    if (dir != null) {
+                        try {
+                            shared = open(dir);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    sharedLoaded = true;
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Get the workload given by the option "--workload=DIR" if it was compiled against the index of the searcher.
+     * @param searcher IndexSearcher Searcher of the paragraph index.
+     * @return Workload The workload, or null if it is not given, could not be opened or was compiled against another
+     * index.
+     */
+    @Nullable
+    public static Workload shared(@NotNull IndexSearcher searcher) {
+        Workload workload = shared();
+        if (workload != null && !workload.matches(searcher)) {
+            System.out.println("The workload was compiled against a different index. Not using it.");
+            return null;
+        }
+        if (workload != null) {
+            System.out.println("Using the workload of " + workload.queries().size() + " queries.");
+        }
+        return workload;
+    }
+
+    /**
+     * The queries in the workload, in sorted order.
+     * @return List
+     */
+    @NotNull
+    public List<String> queries() {
+        return queries;
+    }
+
+    /**
+     * Check whether the workload was compiled against the index of the searcher (the same segments, see
+     * {@link IndexIdentity}).
+     * @param searcher IndexSearcher
+     * @return Boolean
+     */
+    public boolean matches(@NotNull IndexSearcher searcher) {
+        IndexReader reader = searcher.getIndexReader();
+        return reader.maxDoc() == maxDoc && IndexIdentity.matches(reader, identity);
+    }
+
+    /**
+     * Check whether the query tokens were made by the same kind of analyzer.
+     * @param analyzer Analyzer
+     * @return Boolean
+     */
+    public boolean analyzedWith(@NotNull Analyzer analyzer) {
+        return this.analyzer.equals(analyzer.getClass().getName());
+    }
+
+    /**
+     * Get the precomputed work of a query.
+     * @param queryId String
+     * @return Query The work of the query, or null if the query is not in the workload.
+     */
+    @Nullable
+    public Query query(String queryId) {
+        Integer i = queryIndex.get(queryId);
+        if (i == null) {
+            return null;
+        }
+        Reader reader = new Reader(file, start(i));
+        String id = reader.readString();
+        String text = reader.readString();
+        List<String> tokens = reader.readStrings();
+        List<String> rankedEntities = reader.readStrings();
+        int[] entities = new int[reader.readVInt()];
+        int entity = 0;
+        for (int j = 0; j < entities.length; j++) {
+            entity += reader.readVInt();
+            entities[j] = entity;
+        }
+        int n = reader.readVInt();
+        ArrayList<String> paraList = new ArrayList<>(n);
+        int[] docIds = new int[n];
+        double[] paraScores = new double[n];
+        for (int j = 0; j < n; j++) {
+            paraList.add(reader.readString());
+            docIds[j] = reader.readVInt() - 1;
+            paraScores[j] = reader.readDouble();
+        }
+        return new Query(id, text, tokens, rankedEntities, IdSet.of(entityIds, entities), paraList, paraScores, docIds);
+    }
+
+    private long start(int i) {
+        return file.getLong(HEADER + 8L * i);
+    }
+
+    /**
+     * Class for the work done for a query before its passages are scored.
+     */
+    public static class Query {
+        private final String queryId;
+        private final String text;
+        private final List<String> tokens;
+        private final List<String> rankedEntities;
+        private final IdSet entities;
+        private final ArrayList<String> paraList;
+        private final double[] paraScores;
+        private final int[] docIds;
+
+        private Query(String queryId,
+                      String text,
+                      @Nullable List<String> tokens,
+                      @NotNull List<String> rankedEntities,
+                      @NotNull IdSet entities,
+                      @NotNull ArrayList<String> paraList,
+                      @Nullable double[] paraScores,
+                      @Nullable int[] docIds) {
+            this.queryId = queryId;
+            this.text = text;
+            this.tokens = tokens;
+            this.rankedEntities = rankedEntities;
+            this.entities = entities;
+            this.paraList = paraList;
+            this.paraScores = paraScores;
+            this.docIds = docIds;
+        }
+
+        /**
+         * Do the work of a query from the rankings.
+         * This is what every feature does for a query when it is not given a workload.
+         * @param queryId String
+         * @param entityRankings Map Map where Key = queryID and Value = list of entities retrieved for the query.
+         * @param paraRankings Map Map where Key = queryID and Value = list of paragraphs retrieved for the query.
+         * @param entityQrels Map Map where Key = queryID and Value = list of entities relevant for the query.
+         * @param entityIds Interner Interner of the relevant entities.
+         * @param analyzer Analyzer Analyzer to make the query tokens with (or null to leave them out).
+         * @param searcher IndexSearcher Searcher to find the docIDs of the paragraphs with (or null to leave them out).
+         * @return Query The work of the query, or null if the query has no entity ranking or ground truth.
+         * @throws IOException IOException
+         */
+        @Nullable
+        public static Query compile(String queryId,
+                                    @NotNull Map<String, ? extends List<String>> entityRankings,
+                                    @NotNull Map<String, ? extends List<String>> paraRankings,
+                                    @NotNull Map<String, ? extends List<String>> entityQrels,
+                                    @NotNull Interner entityIds,
+                                    @Nullable Analyzer analyzer,
+                                    @Nullable IndexSearcher searcher) throws IOException {
+            return compile(queryId, entityRankings, paraRankings, null, entityQrels, entityIds, analyzer, searcher);
+        }
+
+        /**
+         * Do the work of a query from the rankings, keeping the scores of the paragraphs.
+         * @param queryId String
+         * @param entityRankings Map Map where Key = queryID and Value = list of entities retrieved for the query.
+         * @param paraRankings Map Map where Key = queryID and Value = list of paragraphs retrieved for the query.
+         * @param paraScores Map Map where Key = queryID and Value = scores of the paragraphs retrieved for the query
+         *                   (see {@link Utilities#getScoredRankings(String, HashMap)}), or null to leave them out.
+         * @param entityQrels Map Map where Key = queryID and Value = list of entities relevant for the query.
+         * @param entityIds Interner Interner of the relevant entities.
+         * @param analyzer Analyzer Analyzer to make the query tokens with (or null to leave them out).
+         * @param searcher IndexSearcher Searcher to find the docIDs of the paragraphs with (or null to leave them out).
+         * @return Query The work of the query, or null if the query has no entity ranking or ground truth.
+         * @throws IOException IOException
+         */
+        @Nullable
+        public static Query compile(String queryId,
+                                    @NotNull Map<String, ? extends List<String>> entityRankings,
+                                    @NotNull Map<String, ? extends List<String>> paraRankings,
+                                    @Nullable Map<String, double[]> paraScores,
+                                    @NotNull Map<String, ? extends List<String>> entityQrels,
+                                    @NotNull Interner entityIds,
+                                    @Nullable Analyzer analyzer,
+                                    @Nullable IndexSearcher searcher) throws IOException {
+            if (!entityRankings.containsKey(queryId) || !entityQrels.containsKey(queryId)) {
+                return null;
+            }
+            List<String> rankedEntities = entityRankings.get(queryId);
+            // Finding support passage for non-relevant entities makes no sense!!
+            IdSet entities = IdSet.of(entityIds, rankedEntities).and(IdSet.of(entityIds, entityQrels.get(queryId)));
+            List<String> paras = paraRankings.get(queryId);
+            ArrayList<String> paraList = paras == null ? new ArrayList<>() : new ArrayList<>(paras);
+            double[] scores = paraScores == null ? null
+                    : paras == null ? new double[0] : paraScores.get(queryId);
+            String text = Utilities.processQuery(queryId);
+            List<String> tokens = analyzer == null ? null : tokenize(text, analyzer);
+            int[] docIds = searcher == null ? null : EntityPostings.lookup(paraList, Options.idField(), searcher);
+            return new Query(queryId, text, tokens, rankedEntities, entities, paraList, scores, docIds);
+        }
+
+        public String getQueryId() {
+            return queryId;
+        }
+
+        /**
+         * The normalized query text.
+         * @return String
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * The analyzed tokens of the query text.
+         * @return List The tokens, or null if they were not made.
+         */
+        @Nullable
+        public List<String> getTokens() {
+            return tokens;
+        }
+
+        /**
+         * The entities retrieved for the query, in the order of the ranking.
+         * @return List
+         */
+        @NotNull
+        public List<String> getRankedEntities() {
+            return rankedEntities;
+        }
+
+        /**
+         * The retrieved entities which are also relevant, iterated in sorted order.
+         * @return IdSet
+         */
+        @NotNull
+        public IdSet getEntities() {
+            return entities;
+        }
+
+        /**
+         * The paragraphs retrieved for the query, in the order of the ranking.
+         * @return ArrayList
+         */
+        @NotNull
+        public ArrayList<String> getParaList() {
+            return paraList;
+        }
+
+        /**
+         * The scores of the paragraphs retrieved for the query in the paragraph ranking (in the same order).
+         * @return double[] The scores, or null if they were not kept.
+         */
+        @Nullable
+        public double[] getParaScores() {
+            return paraScores;
+        }
+
+        /**
+         * Whether the query has a paragraph ranking.
+         * @return Boolean
+         */
+        public boolean hasParagraphs() {
+            return !paraList.isEmpty();
+        }
+
+        /**
+         * The docIDs of the paragraphs retrieved for the query (in the same order), or -1 if a paragraph
+         * is not in the index.
+         * @return int[] The docIDs, or null if they were not looked up.
+         */
+        @Nullable
+        public int[] getDocIds() {
+            return docIds;
+        }
+    }
+
+    /**
+     * Compile the workload of a set of queries.
+     * The queries are compiled in parallel.
+     * @param indexDir String Path to the paragraph index.
+     * @param paraRunFile String Path to the paragraph run file.
+     * @param entityRunFile String Path to the entity run file.
+     * @param entityQrelFile String Path to the entity ground truth file.
+     * @param analyzer Analyzer Analyzer to make the query tokens with.
+     * @param outDir String Directory to write the workload to.
+     * @param executor ExecutorService Executor to compile the queries on.
+     * @throws IOException IOException
+     */
+    public static void build(String indexDir,
+                             String paraRunFile,
+                             String entityRunFile,
+                             String entityQrelFile,
+                             @NotNull Analyzer analyzer,
+                             String outDir,
+                             @NotNull ExecutorService executor) throws IOException {
+        Path out = Paths.get(outDir);
+        Files.createDirectories(out);
+
+        System.out.print("Reading entity rankings...");
+        HashMap<String, ArrayList<String>> entityRankings = Utilities.getRankings(entityRunFile);
+        System.out.println("[Done].");
+
+        System.out.print("Reading paragraph rankings...");
+        HashMap<String, double[]> paraScores = new HashMap<>();
+        HashMap<String, ArrayList<String>> paraRankings = Utilities.getScoredRankings(paraRunFile, paraScores);
+        System.out.println("[Done].");
+
+        System.out.print("Reading entity ground truth...");
+        HashMap<String, ArrayList<String>> entityQrels = Utilities.getRankings(entityQrelFile);
+        Interner entityIds = Interner.ofValues(entityQrels);
+        System.out.println("[Done].");
+
+        try (IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(indexDir)))) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            Set<String> querySet = new TreeSet<>(entityRankings.keySet());
+            querySet.retainAll(entityQrels.keySet());
+
+            System.out.print("Compiling " + querySet.size() + " queries...");
+            List<Future<Query>> futures = new ArrayList<>();
+            for (String queryId : querySet) {
+                // Token streams are reused per thread by the analyzer, so one analyzer can be shared
+                futures.add(executor.submit(() -> Query.compile(queryId, entityRankings, paraRankings, paraScores,
+                        entityQrels, entityIds, analyzer, searcher)));
+            }
+            List<byte[]> records = new ArrayList<>(futures.size());
+            for (Future<Query> future : futures) {
+                records.add(encode(EntityDictionary.get(future), entityIds));
+            }
+            System.out.println("[Done].");
+
+            System.out.print("Writing workload...");
+            byte[] identity = IndexIdentity.of(reader);
+            if (identity == null) {
+                throw new IOException("The segments of the index have no IDs");
+            }
+            // Written to a temporary file first, so that a run which fails on the way leaves no truncated workload
+            Path temp = out.resolve(FILE_NAME + ".tmp");
+            try {
+                write(temp, analyzer.getClass().getName(), entityIds, reader.maxDoc(), identity, records);
+                MappedFile.moveIntoPlace(temp, out.resolve(FILE_NAME));
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            System.out.println("[Done].");
+        }
+    }
+
+    @NotNull
+    private static List<String> tokenize(String text, @NotNull Analyzer analyzer) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream("text", new StringReader(text))) {
+            CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            tokenStream.end();
+        }
+        return tokens;
+    }
+
+    @NotNull
+    private static byte[] encode(@NotNull Query query, @NotNull Interner entityIds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeString(out, query.queryId);
+        writeString(out, query.text);
+        writeVInt(out, query.tokens.size());
+        for (String token : query.tokens) {
+            writeString(out, token);
+        }
+        writeVInt(out, query.rankedEntities.size());
+        for (String entity : query.rankedEntities) {
+            writeString(out, entity);
+        }
+        int[] entities = query.entities.toArray();
+        writeVInt(out, entities.length);
+        int previous = 0;
+        for (int entity : entities) {
+            writeVInt(out, entity - previous);
+            previous = entity;
+        }
+        writeVInt(out, query.paraList.size());
+        for (int i = 0; i < query.paraList.size(); i++) {
+            writeString(out, query.paraList.get(i));
+            writeVInt(out, query.docIds[i] + 1);
+            long bits = Double.doubleToRawLongBits(query.paraScores[i]);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (bits >>> shift));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(@NotNull Path path,
+                              String analyzer,
+                              @NotNull Interner entityIds,
+                              int maxDoc,
+                              @NotNull byte[] identity,
+                              @NotNull List<byte[]> records) throws IOException {
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        writeString(table, analyzer);
+        for (int i = 0; i < entityIds.size(); i++) {
+            writeString(table, entityIds.value(i));
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 20))) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(records.size());
+            dos.writeInt(entityIds.size());
+            dos.writeInt(maxDoc);
+            dos.writeInt(0);
+            dos.write(identity);
+            long position = HEADER + 8L * (records.size() + 1) + table.size();
+            for (byte[] record : records) {
+                dos.writeLong(position);
+                position += record.length;
+            }
+            dos.writeLong(position);
+            table.writeTo(dos);
+            for (byte[] record : records) {
+                dos.write(record);
+            }
+        }
+    }
+
+    private static void writeString(@NotNull ByteArrayOutputStream out, @NotNull String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVInt(@NotNull ByteArrayOutputStream out, int i) {
+        while ((i & ~0x7F) != 0) {
+            out.write((i & 0x7F) | 0x80);
+            i >>>= 7;
+        }
+        out.write(i);
+    }
+
+    /**
+     * Sequential reader of the strings and variable-length ints of the workload file.
+     */
+    private static class Reader {
+        private final MappedFile file;
+        private long position;
+
+        Reader(@NotNull MappedFile file, long position) {
+            this.file = file;
+            this.position = position;
+        }
+
+        int readVInt() {
+            int i = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = file.getByte(position++);
+                i |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return i;
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (file.getByte(position++) & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        @NotNull
+        String readString() {
+            byte[] bytes = new byte[readVInt()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = file.getByte(position++);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @NotNull
+        List<String> readStrings() {
+            int n = readVInt();
+            List<String> strings = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                strings.add(readString());
+            }
+            return strings;
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package salience;
 
+import help.Events;
+import help.IdSet;
+import help.Interner;
+import help.Limits;
+import help.Options;
 import help.PseudoDocument;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.Scorer;
+import help.TaskRunner;
 import help.Utilities;
 import lucene.Index;
+import lucene.Workload;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.search.IndexSearcher;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class class scores passages in a pseudo-document about an entity using the salience score of the entity.
@@ -20,15 +32,19 @@ import java.util.*;
  * @version 02/25/2019
  */
 
-public class Experiment1 {
+public class Experiment1 implements Scorer {
     private IndexSearcher searcher;
     //HashMap where Key = queryID and Value = list of paragraphs relevant for the queryID
-    private HashMap<String, LinkedHashMap<String, Double>> paraRankings;
+    private HashMap<String, ArrayList<String>> paraRankings;
+    // HashMap where Key = queryID and Value = scores of the paragraphs relevant for the queryID (in the same order)
+    private HashMap<String, double[]> paraScores;
     //HashMap where Key = queryID and Value = list of entities relevant for the queryID
-    private HashMap<String,LinkedHashMap<String, Double>> entityRankings;
-    // ArrayList of run strings
-    private ArrayList<String> runStrings;
+    private HashMap<String,ArrayList<String>> entityRankings;
     private HashMap<String, ArrayList<String>> entityQrels;
+    // Dense IDs of the relevant entities
+    private Interner entityIds;
+    // Precomputed work of the queries (or null to work it out from the run files)
+    private Workload workload;
     private HashMap<String, Map<String, Double>> salientEntityMap;
 
     /**
@@ -53,30 +69,55 @@ public class Experiment1 {
                        String entityQrelFilePath,
                        String swatFile) {
 
-        this.runStrings = new ArrayList<>();
-        this.entityRankings = new HashMap<>();
-        this.paraRankings = new HashMap<>();
+        this(indexDir,
+                trecCarDir + "/" + dataDir + "/" + passageRunFile,
+                trecCarDir + "/" + dataDir + "/" + entityRunFile,
+                entityQrelFilePath,
+                swatFile);
 
-        String entityRunFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
-        String passageRunFilePath = trecCarDir + "/" + dataDir + "/" + passageRunFile;
         String outputRunFilePath = trecCarDir + "/" + outputDir + "/" + outputRunFile;
 
-        System.out.print("Setting up index for use...");
-        searcher = new Index.Setup(indexDir).getSearcher();
-        System.out.println("[Done].");
+        feature(outputRunFilePath);
 
-        System.out.print("Reading entity rankings...");
-        Utilities.getRankings(entityRunFilePath, entityRankings);
-        System.out.println("[Done].");
+    }
 
-        System.out.print("Reading paragraph rankings...");
-        Utilities.getRankings(passageRunFilePath, paraRankings);
-        System.out.println("[Done].");
+    /**
+     * Constructor which only loads the rankings (or the workload), the annotations and the index, to score query-entity pairs on
+     * request (see {@link #score(String, String, RunLineFormatter)}).
+     * @param indexDir String Path to the index directory.
+     * @param passageRunFilePath String Path to the passage run file.
+     * @param entityRunFilePath String Path to the entity run file.
+     * @param entityQrelFilePath String Path to the entity ground truth file.
+     * @param swatFile String Path to the swat annotation file.
+     */
 
-        System.out.print("Reading entity ground truth...");
-        entityQrels = Utilities.getRankings(entityQrelFilePath);
+    public Experiment1(String indexDir,
+                       String passageRunFilePath,
+                       String entityRunFilePath,
+                       String entityQrelFilePath,
+                       String swatFile) {
+
+        System.out.print("Setting up index for use...");
+        searcher = new Index.Setup(indexDir).getSearcher();
         System.out.println("[Done].");
 
+        workload = Workload.shared(searcher);
+        if (workload == null) {
+            System.out.print("Reading entity rankings...");
+            entityRankings = Utilities.getRankings(entityRunFilePath);
+            System.out.println("[Done].");
+
+            System.out.print("Reading paragraph rankings...");
+            paraScores = new HashMap<>();
+            paraRankings = Utilities.getScoredRankings(passageRunFilePath, paraScores);
+            System.out.println("[Done].");
+
+            System.out.print("Reading entity ground truth...");
+            entityQrels = Utilities.getRankings(entityQrelFilePath);
+            entityIds = Interner.ofValues(entityQrels);
+            System.out.println("[Done].");
+        }
+
         System.out.print("Reading the SWAT annotations...");
         try {
             this.salientEntityMap = Utilities.readMap(swatFile);
@@ -84,65 +125,94 @@ public class Experiment1 {
             e.printStackTrace();
         }
         System.out.println("[Done].");
-
-        feature(outputRunFilePath);
-
     }
     /**
-     * Works in parallel using Java 8 parallelStreams.
-     * DEFAULT THREAD POOL SIE = NUMBER OF PROCESSORS
-     * USE : System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "N") to set the thread pool size
+     * Every query is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      */
 
     private   void feature(String outputRunFilePath){
 
         //Get the set of queries
-        Set<String> querySet = entityRankings.keySet();
+        // Sorted so that the run file is in query order
+        Collection<String> querySet = workload != null ? workload.queries() : new TreeSet<>(entityRankings.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
 
-        // Do in parallel
-        querySet.parallelStream().forEach(this::doTask);
+        for (String q : querySet) {
+            tasks.add(Events.query(q, null, runStrings -> doTask(q, null, runStrings)));
+        }
+
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("sal-exp-1");
+        try (RunWriter writer = new RunWriter(outputRunFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
 
-        // Create the run file
-        System.out.print("Writing to run file....");
-        Utilities.writeFile(runStrings, outputRunFilePath);
-        System.out.println("[Done].");
         System.out.println("Run file written at: " + outputRunFilePath);
     }
 
+    /**
+     * Score the support passages of a query-entity pair.
+     * Only the relevant entities retrieved for the query have support passages, as when writing a run file.
+     * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
+     */
+
+    @Override
+    public void score(String queryId, String entityId, RunLineFormatter runStrings) throws IOException {
+        doTask(queryId, entityId, runStrings);
+    }
+
     /**
      * Helper method.
      * For every relevant entity retrieved for the query, find the passages mentioning the entity.
      * For every such passage, the score of the passage is equal to the salience score of the entity if the entity is
      * salient in the passage and zero otherwise.
      * @param queryId String
+     * @param onlyEntityId String Only score this entity (or null to score all the entities of the query).
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     * @throws IOException IOException
      */
 
 
-    private void doTask(String queryId)  {
+    private void doTask(String queryId, @Nullable String onlyEntityId, RunLineFormatter runStrings) throws IOException {
+        Workload.Query work = workload != null
+                ? workload.query(queryId)
+                : Workload.Query.compile(queryId, entityRankings, paraRankings, paraScores, entityQrels, entityIds,
+                        null, null);
+        if (work == null || !work.hasParagraphs()) {
+            return;
+        }
         System.out.println("========================================================================================");
         System.out.println("Query: " + queryId);
         System.out.println("-------------------------------------------------------------");
 
-        // Get the ranking of entities for the query
-        LinkedHashMap<String, Double> entityMap = entityRankings.get(queryId);
+        // Get the ranking of paragraphs for the query
+        // A paragraph retrieved twice keeps its first rank and its last score
+        LinkedHashMap<String, Double> paraRanking = new LinkedHashMap<>();
+        double[] scores = work.getParaScores();
+        for (int i = 0; i < scores.length; i++) {
+            paraRanking.put(work.getParaList().get(i), scores[i]);
+        }
         // Get the list of paragraphs retrieved for the query
-        ArrayList<String> paraList = new ArrayList<>(paraRankings.get(queryId).keySet());
+        ArrayList<String> paraList = new ArrayList<>(paraRanking.keySet());
 
-        // Get the set of entities retrieved for the query
-        Set<String> retEntitySet = new HashSet<>(entityRankings.get(queryId).keySet());
-
-        // Get the set of entities relevant for the query
-        Set<String> relEntitySet = new HashSet<>(entityQrels.get(queryId));
-
-        // Get the number of retrieved entities which are also relevant
+        // Get the retrieved entities which are also relevant
         // Finding support passage for non-relevant entities makes no sense!!
-
-        retEntitySet.retainAll(relEntitySet);
+        IdSet retEntitySet = work.getEntities();
         ArrayList<PseudoDocument> pseudoDocuments = new ArrayList<>();
         HashMap<String, HashMap<String, Double>> entityParaMap = new HashMap<>();
 
         // For every entity in this list of relevant entities do
         for (String entityId : retEntitySet) {
+            if (onlyEntityId != null && !onlyEntityId.equals(entityId)) {
+                continue;
+            }
 
             // This map is will store the score of the entity for each passage mentioning it.
             HashMap<String, Double> paraMap = new HashMap<>();
@@ -157,7 +227,9 @@ public class Experiment1 {
         }
 
         // Now score the passages in the pseudo-documents
-        scorePassage(queryId, pseudoDocuments, entityParaMap);
+        try (Limits.Permit ignored = Limits.enter(Limits.Stage.SCORING)) {
+            scorePassage(queryId, paraRanking, pseudoDocuments, entityParaMap, runStrings);
+        }
         System.out.println("-------------------------------------------------------------");
         System.out.println("Done");
 
@@ -190,7 +262,7 @@ public class Experiment1 {
             for (Document document : documents) {
 
                 //Get the id of the document
-                String paraID = document.get("id");
+                String paraID = document.get(Options.idField());
 
                 // Get the salient entities in the document
                 Map<String, Double> saliencyMap = salientEntityMap.get(paraID);
@@ -203,7 +275,7 @@ public class Experiment1 {
                 // Otherwise check if the entity is salient to the document
                 // If it is, then the score of the document is the salience score of the entity
                 // Otherwise it is zero
-                paraMap.put(document.get("id"), saliencyMap.getOrDefault(Utilities.process(entityID), 0.0d));
+                paraMap.put(document.get(Options.idField()), saliencyMap.getOrDefault(Utilities.process(entityID), 0.0d));
             }
         }
 
@@ -212,16 +284,20 @@ public class Experiment1 {
     /**
      * Score th passages in the pseudo-document.
      * @param queryId String QueryID
+     * @param paraRanking Map Map of (paraID, score) where score = Score(p|q), in the order of the ranking.
      * @param pseudoDocuments List List of pseudo-documents
      * @param entityParaMap Map
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
     private void scorePassage(String queryId,
+                              @NotNull Map<String, Double> paraRanking,
                               @NotNull ArrayList<PseudoDocument> pseudoDocuments,
-                              HashMap<String, HashMap<String, Double>> entityParaMap ) {
+                              HashMap<String, HashMap<String, Double>> entityParaMap,
+                              RunLineFormatter runStrings) {
 
 
         // Normalize the document scores to get a distribution
-        LinkedHashMap<String, Double> normalizedParaRankings = normalize(paraRankings.get(queryId));
+        LinkedHashMap<String, Double> normalizedParaRankings = normalize(paraRanking);
         double score;
 
         // For every pseudo-document do
@@ -242,7 +318,7 @@ public class Experiment1 {
             for (Document document : documents) {
 
                 // Get the paragraph id of the document
-                String paraId = document.getField("id").stringValue();
+                String paraId = document.getField(Options.idField()).stringValue();
 
                 // Get the score of the document
                 // P(p|e,q) = P(p|q) * P(p|e)
@@ -258,7 +334,7 @@ public class Experiment1 {
                 scoreMap.put(paraId, score);
             }
             // Make the run file strings for query-entity and document
-            makeRunStrings(queryId, entityId, scoreMap);
+            makeRunStrings(queryId, entityId, scoreMap, runStrings);
         }
     }
 
@@ -288,18 +364,19 @@ public class Experiment1 {
      * @param queryId String
      * @param entityId String
      * @param scoreMap Map
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
-    private void makeRunStrings(String queryId, String entityId, HashMap<String, Double> scoreMap) {
+    private void makeRunStrings(String queryId,
+                                String entityId,
+                                HashMap<String, Double> scoreMap,
+                                RunLineFormatter runStrings) {
         LinkedHashMap<String, Double> paraScore = Utilities.sortByValueDescending(scoreMap);
-        String runFileString;
         int rank = 0;
 
         for (String paraId : paraScore.keySet()) {
             double score = paraScore.get(paraId);
             if (score > 0) {
-                runFileString = queryId + "+" +entityId + " Q0 " + paraId + " " + rank
-                        + " " + score + " " + "Exp-2-salience";
-                runStrings.add(runFileString);
+                runStrings.line(queryId, entityId, paraId, rank, score, "Exp-2-salience");
                 rank++;
             }
         }
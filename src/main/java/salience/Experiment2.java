@@ -1,13 +1,20 @@
 package salience;
 
+import help.Events;
+import help.RunLineFormatter;
+import help.RunWriter;
+import help.Scorer;
+import help.TaskRunner;
 import help.Utilities;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
  * This class re-ranks the support passages obtained using method "Entity Context Neighbors" (see paper and appendix)
@@ -19,12 +26,11 @@ import java.util.*;
  * @version 02/25/2019
  */
 
-public class Experiment2 {
+public class Experiment2 implements Scorer {
 
     private Map<String, Map<String, Map<String, Double>>> supportPsgRunFileMap;
     private HashMap<String,LinkedHashMap<String, Double>> entityRankings;
     private HashMap<String, Map<String, Double>> salientEntityMap;
-    private ArrayList<String> runStrings;
 
     /**
      * Constructor.
@@ -45,15 +51,32 @@ public class Experiment2 {
                           String outFile,
                           String swatFile) {
 
-        this.runStrings = new ArrayList<>();
+        this(trecCarDir + "/" + dataDir + "/" + supportPsgRunFile,
+                trecCarDir + "/" + dataDir + "/" + entityRunFile,
+                swatFile);
+
+        String outFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
+
+        experiment(outFilePath);
+
+    }
+
+    /**
+     * Constructor which only loads the run files and the annotations, to score query-entity pairs on request
+     * (see {@link #score(String, String, RunLineFormatter)}).
+     * @param supportPsgRunFilePath String Path to the support passage run file.
+     * @param entityRunFilePath String Path to the entity run file.
+     * @param swatFile String Path to the swat annotation file.
+     */
+
+    public Experiment2(String supportPsgRunFilePath,
+                       String entityRunFilePath,
+                       String swatFile) {
+
         this.supportPsgRunFileMap = new LinkedHashMap<>();
         this.entityRankings = new LinkedHashMap<>();
         this.supportPsgRunFileMap = new HashMap<>();
 
-        String supportPsgRunFilePath = trecCarDir + "/" + dataDir + "/" + supportPsgRunFile;
-        String entityRunFilePath = trecCarDir + "/" + dataDir + "/" + entityRunFile;
-        String outFilePath = trecCarDir + "/" + outputDir + "/" + outFile;
-
         System.out.print("Reading provided passage run file...");
         getRunFileMap(supportPsgRunFilePath, supportPsgRunFileMap);
         System.out.println("[Done].");
@@ -69,44 +92,64 @@ public class Experiment2 {
             e.printStackTrace();
         }
         System.out.println("[Done].");
-
-        experiment(outFilePath);
-
     }
 
     /**
-     * Works in parallel using Java 8 parallelStreams.
-     * DEFAULT THREAD POOL SIE = NUMBER OF PROCESSORS
-     * USE : System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "N") to set the thread pool size
+     * Every query is a separate task. The tasks run on an executor whose size is set
+     * using the option "--threads=N" (DEFAULT = NUMBER OF PROCESSORS).
      */
     private void experiment(String outFilePath) {
         //Get the set of queries
-        Set<String> querySet = supportPsgRunFileMap.keySet();
-
-        // Do in parallel
-
-        querySet.parallelStream().forEach(this::doTask);
+        // Sorted so that the run file is in query order
+        Set<String> querySet = new TreeSet<>(supportPsgRunFileMap.keySet());
+        List<TaskRunner.Task> tasks = new ArrayList<>();
 
+        for (String q : querySet) {
+            tasks.add(Events.query(q, null, runStrings -> doTask(q, null, runStrings)));
+        }
 
+        // Do in parallel and write the run file as the tasks finish
+        ExecutorService executor = TaskRunner.newExecutor("sal-exp-2");
+        try (RunWriter writer = new RunWriter(outFilePath)) {
+            TaskRunner.run(tasks, executor, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        executor.shutdown();
 
-        // Create the run file
-        System.out.print("Writing to run file....");
-        Utilities.writeFile(runStrings, outFilePath);
-        System.out.println("[Done].");
         System.out.println("Run file written at: " + outFilePath);
     }
 
+    /**
+     * Score the support passages of a query-entity pair.
+     * Only the pairs in the support passage run file have support passages, as when writing a run file.
+     * @param queryId String
+     * @param entityId String
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
+     */
+    @Override
+    public void score(String queryId, String entityId, RunLineFormatter runStrings) {
+        if (supportPsgRunFileMap.containsKey(queryId)) {
+            doTask(queryId, entityId, runStrings);
+        }
+    }
+
     /**
      * Do the actual work.
      * @param queryID String query
+     * @param onlyEntityID String Only score this entity (or null to score all the entities of the query).
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
-    private void doTask(String queryID) {
+    private void doTask(String queryID, @Nullable String onlyEntityID, RunLineFormatter runStrings) {
 
         // Get the list of entities for the query
         Map<String, Map<String, Double>> entityToParaMap = supportPsgRunFileMap.get(queryID);
-        Set<String> entitySet = entityToParaMap.keySet();
+        Set<String> entitySet = new TreeSet<>(entityToParaMap.keySet());
 
         for (String entityID : entitySet) {
+            if (onlyEntityID != null && !onlyEntityID.equals(entityID)) {
+                continue;
+            }
             Map<String, Double> paraToScoreMap = entityToParaMap.get(entityID);
             Set<String> paraSet = paraToScoreMap.keySet();
             // This is a Map of paragraphs and their scores (P(p|e))
@@ -127,7 +170,7 @@ public class Experiment2 {
                 Map<String, Double> scores = new HashMap<>();
                 scoreParas(queryID, entityID, normalizedParaMap, scores);
                 scoreMap.put(queryID + "+" + entityID, scores);
-                makeRunStrings(scoreMap);
+                makeRunStrings(scoreMap, runStrings);
             }
         }
 
@@ -247,18 +290,17 @@ public class Experiment2 {
     /**
      * Make the run file strings.
      * @param scoreMap Map
+     * @param runStrings RunLineFormatter Buffer into which the run strings are formatted.
      */
 
-    private void makeRunStrings(@NotNull Map<String, Map<String, Double>> scoreMap) {
-        String runFileString;
+    private void makeRunStrings(@NotNull Map<String, Map<String, Double>> scoreMap,
+                                RunLineFormatter runStrings) {
         for (String query : scoreMap.keySet()) {
             int rank = 1;
             HashMap<String, Double> sortedScoreMap = Utilities.sortByValueDescending(scoreMap.get(query));
             for (String paraId : sortedScoreMap.keySet()) {
                 double score = sortedScoreMap.get(paraId);
-                runFileString = query + " Q0 " + paraId + " " + rank
-                        + " " + score + " " + "Exp-1-salience";
-                runStrings.add(runFileString);
+                runStrings.line(query, paraId, rank, score, "Exp-1-salience");
                 rank++;
             }
         }
@@ -0,0 +1,394 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import features.EntityContextNeighbors;
+import features.PseudoDocRetScore;
+import features.QEEntities;
+import features.QEWords;
+import help.Events;
+import help.Metrics;
+import help.Options;
+import help.RunLineFormatter;
+import help.Scorer;
+import help.TaskRunner;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.similarities.Similarity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import salience.Experiment1;
+import salience.Experiment2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Long-running server which scores support passages on request, so that the index, the rankings and the caches
+ * stay loaded between requests. It listens on a local HTTP port ("--port=N", DEFAULT = 8080; "--host=ADDRESS",
+ * DEFAULT = loopback) and answers with JSON:
+ *
+ *      GET /passages?query=QUERY_ID&entity=ENTITY_ID&method=METHOD&k=K
+ *          The top K (DEFAULT = 10) support passages of the query-entity pair using the method ("ecn", "pdrs",
+ *          "qee", "qew", "sal-exp-1" or "sal-exp-2"). The parameters may also be sent form-encoded in a POST.
+ *          The passages are exactly those the method writes to a run file for the pair.
+ *      GET /health
+ *          The status of the server and of its methods.
+ *
+ * Every method loads its own rankings and index when the server starts (in the background), and a request for a
+ * method which is still loading waits for it. Requests are handled concurrently; the scoring runs on an executor
+ * with "--serve-threads=N" (or "--threads=N") threads, or on virtual threads with "--virtual-threads=true".
+ * A request which takes longer than "--timeout-ms=N" milliseconds (DEFAULT = 30000) is answered with 504, and its
+ * scoring thread is interrupted, which stops the scoring at the next stage (see {@link help.Limits}).
+ * A query which is not in the rankings has no passages. The passages of the last "--cache=N" (DEFAULT = 1024)
+ * query-entity pairs are cached.
+ * @author Shubham Chatterjee
+ * @version 10/19/2026
+ */
+public class SupportPassageServer {
+    private static final int DEFAULT_K = 10;
+
+    private final Map<String, Supplier<Scorer>> factories = new LinkedHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Scorer>> scorers = new ConcurrentHashMap<>();
+    private final Map<String, List<Passage>> cache;
+    private final ExecutorService loader = Executors.newCachedThreadPool(daemon("scorer-loader"));
+    private final ExecutorService scoring = TaskRunner.newExecutor("serve");
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final long timeoutMs = Options.getInt("timeout-ms", 30000);
+    private final long started = System.nanoTime();
+    private HttpServer server;
+
+    /**
+     * A support passage of a query-entity pair.
+     */
+    private static final class Passage {
+        private final String paraId;
+        private final String score;
+
+        private Passage(String paraId, String score) {
+            this.paraId = paraId;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Constructor.
+     * The methods "qee" and "qew" use the values of the paper, which can be changed using "--take-k-entities=N"
+     * (DEFAULT = 20), "--take-k-terms=N" (DEFAULT = 50), "--take-k-docs=N" (DEFAULT = 100) and "--omit=true|false"
+     * (DEFAULT = false).
+     * @param indexDir String Path to the index directory.
+     * @param paraRunFilePath String Path to the passage run file.
+     * @param entityRunFilePath String Path to the entity run file.
+     * @param entityQrelFilePath String Path to the entity ground truth file.
+     * @param analyzer Analyzer Analyzer for "qee" and "qew".
+     * @param similarity Similarity Similarity for "qee" and "qew".
+     * @param swatFile String Path to the swat annotation file (or null if the salience methods are not served).
+     * @param supportPsgRunFilePath String Path to the support passage run file re-ranked by "sal-exp-2" (or null).
+     */
+    public SupportPassageServer(String indexDir,
+                                String paraRunFilePath,
+                                String entityRunFilePath,
+                                String entityQrelFilePath,
+                                Analyzer analyzer,
+                                Similarity similarity,
+                                @Nullable String swatFile,
+                                @Nullable String supportPsgRunFilePath) {
+        int takeKEntities = Options.getInt("take-k-entities", 20);
+        int takeKTerms = Options.getInt("take-k-terms", 50);
+        int takeKDocs = Options.getInt("take-k-docs", 100);
+        boolean omit = Boolean.parseBoolean(Options.get("omit", "false"));
+
+        factories.put("ecn", () -> {
+            try {
+                return new EntityContextNeighbors(indexDir, paraRunFilePath, entityRunFilePath, entityQrelFilePath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        factories.put("pdrs", () -> {
+            try {
+                return new PseudoDocRetScore(indexDir, paraRunFilePath, entityRunFilePath, entityQrelFilePath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        factories.put("qee", () -> new QEEntities(indexDir, paraRunFilePath, entityRunFilePath, entityQrelFilePath,
+                takeKEntities, omit, analyzer, similarity));
+        factories.put("qew", () -> new QEWords(indexDir, paraRunFilePath, entityRunFilePath, entityQrelFilePath,
+                takeKTerms, takeKDocs, omit, analyzer, similarity));
+        if (swatFile != null) {
+            factories.put("sal-exp-1", () -> new Experiment1(indexDir, paraRunFilePath, entityRunFilePath,
+                    entityQrelFilePath, swatFile));
+            if (supportPsgRunFilePath != null) {
+                factories.put("sal-exp-2", () -> new Experiment2(supportPsgRunFilePath, entityRunFilePath, swatFile));
+            }
+        }
+
+        int cacheSize = Options.getInt("cache", 1024);
+        cache = Collections.synchronizedMap(new LinkedHashMap<String, List<Passage>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Passage>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Start loading the methods and start listening. The server runs until the program is stopped.
+     * @throws IOException IOException
+     */
+    public void start() throws IOException {
+        for (String method : factories.keySet()) {
+            scorer(method);
+        }
+        String host = Options.get("host", null);
+        int port = Options.getInt("port", 8080);
+        InetSocketAddress address = host == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(host, port);
+        server = HttpServer.create(address, 0);
+        server.createContext("/passages", this::passages);
+        server.createContext("/health", this::health);
+        // The requests wait for the scoring executor, so there are more request threads than scoring threads
+        // ("--serve-http-threads=N", DEFAULT = 2 * threads)
+        server.setExecutor(TaskRunner.newExecutor("serve-http", 2 * Options.threads()));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(0), "server-stop"));
+        System.out.println("Serving " + factories.keySet() + " at http://" + address.getHostString() + ":"
+                + server.getAddress().getPort() + "/passages");
+    }
+
+    /**
+     * Get (and start loading if needed) the scorer of a method.
+     */
+    @NotNull
+    private CompletableFuture<Scorer> scorer(String method) {
+        return scorers.computeIfAbsent(method, m -> CompletableFuture.supplyAsync(factories.get(m), loader));
+    }
+
+    private void passages(@NotNull HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, error("Use GET or POST."));
+                return;
+            }
+            Map<String, String> params = parameters(exchange);
+            String queryId = params.get("query");
+            String entityId = params.get("entity");
+            String method = params.getOrDefault("method", "");
+            int k;
+            try {
+                k = Integer.parseInt(params.getOrDefault("k", String.valueOf(DEFAULT_K)));
+            } catch (NumberFormatException e) {
+                k = -1;
+            }
+            if (queryId == null || entityId == null || k < 1) {
+                send(exchange, 400, error("Give the parameters query, entity, method and k (k > 0)."));
+                return;
+            }
+            if (!factories.containsKey(method)) {
+                send(exchange, 400, error("Unknown method \"" + method + "\". Available: " + factories.keySet() + "."));
+                return;
+            }
+
+            String key = method + "\t" + queryId + "\t" + entityId;
+            List<Passage> passages = cache.get(key);
+            boolean cached = passages != null;
+            if (passages == null) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+                Future<List<Passage>> result = null;
+                try {
+                    // The scorer is shared by all requests, so it is not cancelled if this request times out
+                    Scorer scorer = scorer(method).get(timeoutMs, TimeUnit.MILLISECONDS);
+                    // A FutureTask on the scoring executor, so that cancelling it interrupts the scoring thread
+                    result = scoring.submit(() -> score(scorer, queryId, entityId));
+                    passages = result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (result != null) {
+                        result.cancel(true);
+                    }
+                    send(exchange, 504, error("Timed out after " + timeoutMs + " ms."));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    send(exchange, 503, error("The server is shutting down."));
+                    return;
+                } catch (InterruptedException e) {
+                    if (result != null) {
+                        result.cancel(true);
+                    }
+                    Thread.currentThread().interrupt();
+                    send(exchange, 503, error("Interrupted."));
+                    return;
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    send(exchange, 500, error(String.valueOf(e.getCause())));
+                    return;
+                }
+                cache.put(key, passages);
+            }
+
+            StringBuilder json = new StringBuilder();
+            json.append("{\"query\":").append(quote(queryId))
+                    .append(",\"entity\":").append(quote(entityId))
+                    .append(",\"method\":").append(quote(method))
+                    .append(",\"k\":").append(k)
+                    .append(",\"cached\":").append(cached)
+                    .append(",\"tookMs\":").append(String.format(Locale.ROOT, "%.3f", (System.nanoTime() - start) / 1e6))
+                    .append(",\"passages\":[");
+            for (int i = 0; i < Math.min(k, passages.size()); i++) {
+                Passage p = passages.get(i);
+                json.append(i == 0 ? "" : ",")
+                        .append("{\"rank\":").append(i + 1)
+                        .append(",\"paraId\":").append(quote(p.paraId))
+                        .append(",\"score\":").append(p.score).append('}');
+            }
+            json.append("]}");
+            send(exchange, 200, json.toString());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Score a query-entity pair and pick its passages out of the run strings.
+     */
+    @NotNull
+    private List<Passage> score(@NotNull Scorer scorer, String queryId, String entityId) {
+        RunLineFormatter runStrings = new RunLineFormatter(1 << 12);
+        long start = Metrics.start();
+        try {
+            Events.query(queryId, entityId, buffer -> scorer.score(queryId, entityId, buffer)).run(runStrings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            Metrics.stop(Metrics.Stage.TASK, start);
+            Metrics.count(Metrics.Counter.TASKS, 1);
+        }
+        // Run strings: "queryId+entityId Q0 paraId rank score method", in rank order
+        String pair = queryId + "+" + entityId;
+        List<Passage> passages = new ArrayList<>();
+        for (String line : runStrings.toString().split("\n")) {
+            String[] fields = line.split(" ");
+            if (fields.length >= 5 && fields[0].equals(pair)) {
+                passages.add(new Passage(fields[2], fields[4]));
+            }
+        }
+        return passages;
+    }
+
+    private void health(@NotNull HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"status\":\"ok\"")
+                .append(",\"uptimeSeconds\":").append((System.nanoTime() - started) / 1_000_000_000L)
+                .append(",\"inFlight\":").append(inFlight.get())
+                .append(",\"cached\":").append(cache.size())
+                .append(",\"methods\":{");
+        int i = 0;
+        for (String method : factories.keySet()) {
+            CompletableFuture<Scorer> scorer = scorers.get(method);
+            String status = scorer == null || !scorer.isDone() ? "loading"
+                    : scorer.isCompletedExceptionally() ? "failed" : "ready";
+            json.append(i++ == 0 ? "" : ",").append(quote(method)).append(':').append(quote(status));
+        }
+        json.append("}}");
+        send(exchange, 200, json.toString());
+    }
+
+    @NotNull
+    private static Map<String, String> parameters(@NotNull HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parse(exchange.getRequestURI().getRawQuery(), params);
+        if (exchange.getRequestMethod().equals("POST")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    body.write(buf, 0, n);
+                }
+                parse(new String(body.toByteArray(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parse(@Nullable String query, Map<String, String> params) {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                // Entity and query IDs contain "%20", which is sent as "%2520"
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static void send(@NotNull HttpExchange exchange, int status, @NotNull String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @NotNull
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    @NotNull
+    private static String quote(@NotNull String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    @NotNull
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}